@@ -19,14 +19,26 @@
  */
 package org.shredzone.pdbconverter;
 
+import org.shredzone.pdbconverter.handler.AddressCsvHandler;
+import org.shredzone.pdbconverter.handler.AddressNdJsonHandler;
 import org.shredzone.pdbconverter.handler.AddressXmlHandler;
 import org.shredzone.pdbconverter.handler.ExportHandler;
+import org.shredzone.pdbconverter.handler.FreeBusyHandler;
 import org.shredzone.pdbconverter.handler.ICalendarHandler;
+import org.shredzone.pdbconverter.handler.JCalendarHandler;
+import org.shredzone.pdbconverter.handler.JCardHandler;
 import org.shredzone.pdbconverter.handler.MdbICalendarHandler;
+import org.shredzone.pdbconverter.handler.MemoNdJsonHandler;
 import org.shredzone.pdbconverter.handler.MemoXmlHandler;
 import org.shredzone.pdbconverter.handler.NotepadHandler;
+import org.shredzone.pdbconverter.handler.ScheduleCsvHandler;
+import org.shredzone.pdbconverter.handler.TodoCsvHandler;
+import org.shredzone.pdbconverter.handler.TodoNdJsonHandler;
 import org.shredzone.pdbconverter.handler.TodoXmlHandler;
+import org.shredzone.pdbconverter.handler.VCard4Handler;
 import org.shredzone.pdbconverter.handler.VCardHandler;
+import org.shredzone.pdbconverter.handler.VCardZipHandler;
+import org.shredzone.pdbconverter.handler.XCalendarHandler;
 import org.shredzone.pdbconverter.handler.ZipHandler;
 
 /**
@@ -37,13 +49,25 @@ import org.shredzone.pdbconverter.handler.ZipHandler;
 public final class ConverterRegister {
 
     private static final ExportHandler[] HANDLERS = {
+        new AddressCsvHandler(),
+        new AddressNdJsonHandler(),
         new AddressXmlHandler(),
+        new FreeBusyHandler(),
         new ICalendarHandler(),
+        new JCalendarHandler(),
+        new JCardHandler(),
         new MdbICalendarHandler(),
+        new MemoNdJsonHandler(),
         new MemoXmlHandler(),
         new NotepadHandler(),
+        new ScheduleCsvHandler(),
+        new TodoCsvHandler(),
+        new TodoNdJsonHandler(),
         new TodoXmlHandler(),
         new VCardHandler(),
+        new VCard4Handler(),
+        new VCardZipHandler(),
+        new XCalendarHandler(),
         new ZipHandler(),
     };
 
@@ -21,10 +21,13 @@ package org.shredzone.pdbconverter;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.zip.Deflater;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -34,8 +37,15 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.shredzone.commons.pdb.CalendarFactory;
+import org.shredzone.pdbconverter.export.AddressDeduplicator;
+import org.shredzone.pdbconverter.export.FieldClassifier;
+import org.shredzone.pdbconverter.export.ImageEncoder;
+import org.shredzone.pdbconverter.handler.Compression;
 import org.shredzone.pdbconverter.handler.ExportHandler;
 import org.shredzone.pdbconverter.handler.ExportOptions;
+import org.shredzone.pdbconverter.handler.ICalendarHandler;
+import org.shredzone.pdbconverter.handler.SplitPeriod;
+import org.shredzone.pdbconverter.util.DateMath;
 
 /**
  * PdbConverter's main class.
@@ -46,19 +56,29 @@ public class PdbConverter {
 
     private static final String OPT_CATEGORY = "category";
     private static final String OPT_SPLIT = "split";
+    private static final String OPT_SPLIT_BY = "split-by";
+    private static final String OPT_SPLIT_REPEAT = "split-repeat";
     private static final String OPT_FROM = "from";
     private static final String OPT_UNTIL = "until";
+    private static final String OPT_GREP = "grep";
+    private static final String OPT_GREP_FILE = "grep-file";
+    private static final String OPT_IGNORE_CASE = "ignore-case";
+    private static final String OPT_STREAM = "stream";
+    private static final String OPT_THREADS = "threads";
+    private static final String OPT_VALIDATE = "validate";
+    private static final String OPT_TIMING = "timing";
+    private static final String OPT_COMPACT = "compact";
+    private static final String OPT_BIRTHDAY_FORMAT = "birthday-format";
+    private static final String OPT_MERGE = "merge";
+    private static final String OPT_DUPLICATES = "duplicates";
+    private static final String OPT_FIELDS = "fields";
+    private static final String OPT_COMPRESS = "compress";
+    private static final String OPT_COMPRESS_THREADS = "compress-threads";
+    private static final String OPT_LEVEL = "level";
+    private static final String OPT_IMAGE_FORMAT = "image-format";
+    private static final String OPT_PNG_FILTER = "png-filter";
     private static final String OPT_HELP = "help";
 
-    private static final DateFormat yearDateFmt = new SimpleDateFormat("yyyy");
-    private static final DateFormat monthDateFmt = new SimpleDateFormat("yyyy-MM");
-    private static final DateFormat dayDateFmt = new SimpleDateFormat("yyyy-MM-dd");
-    static {
-        yearDateFmt.setLenient(true);
-        monthDateFmt.setLenient(true);
-        dayDateFmt.setLenient(true);
-    }
-
     private static final Options CLI_OPTIONS = new Options();
     static {
         CLI_OPTIONS.addOption(Option.builder("i")
@@ -96,6 +116,20 @@ public class PdbConverter {
                 .desc("write each category into a separate file")
                 .build());
 
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_SPLIT_BY)
+                .argName("period")
+                .desc("write each period of time into a separate file (year, month)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_SPLIT_REPEAT)
+                .argName("mode")
+                .desc("write repeating records into the period of their first occurrence, or into all periods they occur in (first, all)")
+                .hasArg()
+                .build());
+
         CLI_OPTIONS.addOption(Option.builder("f")
                 .longOpt(OPT_FROM)
                 .argName("date")
@@ -110,6 +144,117 @@ public class PdbConverter {
                 .hasArg()
                 .build());
 
+        CLI_OPTIONS.addOption(Option.builder("g")
+                .longOpt(OPT_GREP)
+                .argName("terms")
+                .desc("only output records containing one of these comma separated terms")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_GREP_FILE)
+                .argName("file")
+                .desc("only output records containing one of the terms in this file, one per line")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_IGNORE_CASE)
+                .desc("ignore case when searching for terms")
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_STREAM)
+                .desc("write the output directly, without building an object model first")
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_THREADS)
+                .argName("count")
+                .desc("number of threads for rendering the output, 0 for all processors (implies --stream for iCalendar)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_VALIDATE)
+                .argName("n")
+                .desc("validate every n-th iCalendar event, 0 to disable validation (default: 1, not with --stream or --threads)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_TIMING)
+                .desc("print the time spent for validating the iCalendar output")
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_COMPACT)
+                .desc("write compact output, omitting redundant data")
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_BIRTHDAY_FORMAT)
+                .argName("formats")
+                .desc("detect birthdays in custom vCard fields, using these comma separated date formats (e.g. dd.MM.yyyy)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_MERGE)
+                .argName("files")
+                .desc("comma separated pdb files of the same type, whose records are added to the input file")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_DUPLICATES)
+                .argName("mode")
+                .desc("flag duplicate contacts in the output (flag)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_FIELDS)
+                .argName("names")
+                .desc("comma separated names of the columns to be written, in that order (CSV converters only)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_COMPRESS)
+                .argName("format")
+                .desc("compress the output files (gzip)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_COMPRESS_THREADS)
+                .argName("count")
+                .desc("number of threads for compressing the output files, 0 for all processors (independent of --threads)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_LEVEL)
+                .argName("n")
+                .desc("compression level of ZIP entries and compressed output files, 0 (store) to 9 (best)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_IMAGE_FORMAT)
+                .argName("format")
+                .desc("format of Notepad images (png, pbm, tiff)")
+                .hasArg()
+                .build());
+
+        CLI_OPTIONS.addOption(Option.builder()
+                .longOpt(OPT_PNG_FILTER)
+                .argName("filter")
+                .desc("re-encode Notepad png images with --level and this filter (none, sub, up, average, paeth, adaptive)")
+                .hasArg()
+                .build());
+
         CLI_OPTIONS.addOption(Option.builder("?")
                 .longOpt(OPT_HELP)
                 .desc("show this help and exit")
@@ -177,12 +322,37 @@ public class PdbConverter {
 
             ExportOptions options = new ExportOptions();
             options.setSplit(cmd.hasOption(OPT_SPLIT));
+            options.setSplitPeriod(parseSplitPeriod(cmd.getOptionValue(OPT_SPLIT_BY)));
+            options.setSplitAllOccurrences(parseSplitRepeat(cmd.getOptionValue(OPT_SPLIT_REPEAT)));
             options.setCategory(cmd.getOptionValue(OPT_CATEGORY));
             options.setFrom(parseDate(cmd.getOptionValue(OPT_FROM)));
             options.setUntil(parseDate(cmd.getOptionValue(OPT_UNTIL)));
+            options.setGrepTerms(parseTerms(cmd.getOptionValue(OPT_GREP), cmd.getOptionValue(OPT_GREP_FILE)));
+            options.setIgnoreCase(cmd.hasOption(OPT_IGNORE_CASE));
+            options.setStreaming(cmd.hasOption(OPT_STREAM));
+            options.setThreads(parseThreads(cmd.getOptionValue(OPT_THREADS)));
+            options.setValidationInterval(parseCount(cmd.getOptionValue(OPT_VALIDATE), 1));
+            if (cmd.hasOption(OPT_VALIDATE) && (options.isStreaming() || options.getThreads() > 1)) {
+                throw new ParseException("--validate cannot be used with --stream or --threads");
+            }
+            options.setCompact(cmd.hasOption(OPT_COMPACT));
+            options.setBirthdayFormats(parseBirthdayFormats(cmd.getOptionValue(OPT_BIRTHDAY_FORMAT)));
+            options.setMergeFiles(parseFiles(cmd.getOptionValue(OPT_MERGE)));
+            options.setDuplicateMode(parseDuplicateMode(cmd.getOptionValue(OPT_DUPLICATES)));
+            options.setFields(parseFields(cmd.getOptionValue(OPT_FIELDS)));
+            options.setCompression(parseCompression(cmd.getOptionValue(OPT_COMPRESS)));
+            options.setCompressThreads(parseThreads(cmd.getOptionValue(OPT_COMPRESS_THREADS)));
+            options.setLevel(parseLevel(cmd.getOptionValue(OPT_LEVEL)));
+            options.setImageFormat(parseImageFormat(cmd.getOptionValue(OPT_IMAGE_FORMAT)));
+            options.setPngFilter(parsePngFilter(cmd.getOptionValue(OPT_PNG_FILTER)));
 
             handler.export(in, out, options);
 
+            if (cmd.hasOption(OPT_TIMING) && handler instanceof ICalendarHandler) {
+                long time = ((ICalendarHandler) handler).getValidationTime();
+                System.out.println("Validation took " + time + " ms");
+            }
+
         } catch (IOException ex) {
             System.err.println("Could not convert: " + ex.getMessage());
 
@@ -193,37 +363,334 @@ public class PdbConverter {
     }
 
     /**
-     * Parses a date string.
+     * Parses a date string. The formats "yyyy-MM-dd", "yyyy-MM" and "yyyy" are
+     * accepted, with years from 0 to 9999. The date is returned at midnight of the
+     * default time zone.
      *
      * @param str
      *            Date string to be parsed. May be {@code null}.
      * @return {@link Calendar} object, or {@code null} if a null was passed in.
      * @throws ParseException
-     *             The date string could not be parsed
+     *             The date string could not be parsed, or the date does not exist
      */
     private static Calendar parseDate(String str) throws ParseException {
         if (str == null) return null;
 
-        Date result;
-        try {
-            result = dayDateFmt.parse(str);
-        } catch (java.text.ParseException ex) {
-            try {
-                result = monthDateFmt.parse(str);
-            } catch (java.text.ParseException ex2) {
-                try {
-                    result = yearDateFmt.parse(str);
-                } catch (java.text.ParseException ex3) {
-                    throw new ParseException("Bad date format: " + str);
-                }
+        int[] parts = { 0, 1, 1 };
+        int count = 0;
+        int digits = 0;
+        for (int ix = 0; ix < str.length(); ix++) {
+            char ch = str.charAt(ix);
+            if (ch >= '0' && ch <= '9' && digits < 9) {
+                parts[count] = (digits == 0 ? 0 : parts[count] * 10) + (ch - '0');
+                digits++;
+            } else if (ch == '-' && digits > 0 && count < 2) {
+                count++;
+                digits = 0;
+            } else {
+                throw new ParseException("Bad date format: " + str);
             }
         }
+        if (digits == 0) {
+            throw new ParseException("Bad date format: " + str);
+        }
+        if (parts[0] > 9999 || parts[1] < 1 || parts[1] > 12
+                || parts[2] < 1 || parts[2] > DateMath.lengthOfMonth(parts[0], parts[1])) {
+            throw new ParseException("Bad date: " + str);
+        }
 
+        int day = DateMath.epochDay(parts[0], parts[1], parts[2]);
         Calendar cal = CalendarFactory.getInstance().create();
-        cal.setTime(result);
+        cal.setTimeInMillis(DateMath.toMillis(day, 0, TimeZone.getDefault()));
         return cal;
     }
 
+    /**
+     * Parses the period of time to split the output by.
+     *
+     * @param str
+     *            Period name. May be {@code null}.
+     * @return {@link SplitPeriod}, or {@code null} if a null was passed in.
+     * @throws ParseException
+     *             The period name is unknown
+     */
+    private static SplitPeriod parseSplitPeriod(String str) throws ParseException {
+        if (str == null) return null;
+
+        try {
+            return SplitPeriod.valueOf(str.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Bad split period: " + str);
+        }
+    }
+
+    /**
+     * Parses how to split repeating records.
+     *
+     * @param str
+     *            "first" or "all". May be {@code null}.
+     * @return {@code true} for "all", {@code false} for "first" or if a null was
+     *         passed in.
+     * @throws ParseException
+     *             The mode is unknown
+     */
+    private static boolean parseSplitRepeat(String str) throws ParseException {
+        if (str == null || "first".equalsIgnoreCase(str.trim())) return false;
+        if ("all".equalsIgnoreCase(str.trim())) return true;
+        throw new ParseException("Bad split repeat mode: " + str);
+    }
+
+    /**
+     * Parses the number of threads.
+     *
+     * @param str
+     *            Number of threads. May be {@code null}.
+     * @return Number of threads, 1 if {@code null} was passed in, or the number of
+     *         available processors if 0 was passed in.
+     * @throws ParseException
+     *             The number could not be parsed
+     */
+    private static int parseThreads(String str) throws ParseException {
+        int result = parseCount(str, 1);
+        if (result == 0) {
+            result = Runtime.getRuntime().availableProcessors();
+        }
+        return result;
+    }
+
+    /**
+     * Parses a non-negative number.
+     *
+     * @param str
+     *            Number string to be parsed. May be {@code null}.
+     * @param defaultValue
+     *            Value to be returned if {@code null} was passed in
+     * @return Number that was parsed
+     * @throws ParseException
+     *             The number could not be parsed, or was negative
+     */
+    private static int parseCount(String str, int defaultValue) throws ParseException {
+        if (str == null) return defaultValue;
+
+        int result;
+        try {
+            result = Integer.parseInt(str.trim());
+        } catch (NumberFormatException ex) {
+            throw new ParseException("Bad number: " + str);
+        }
+
+        if (result < 0) {
+            throw new ParseException("Bad number: " + str);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses the birthday date formats.
+     *
+     * @param str
+     *            Comma separated date formats. May be {@code null}.
+     * @return List of date formats, or {@code null} if a null was passed in.
+     * @throws ParseException
+     *             A date format is invalid
+     */
+    private static List<String> parseBirthdayFormats(String str) throws ParseException {
+        if (str == null) return null;
+
+        List<String> result = new ArrayList<>();
+        for (String format : str.split(",")) {
+            if (!format.trim().isEmpty()) {
+                result.add(format.trim());
+            }
+        }
+
+        try {
+            new FieldClassifier().setDateFormats(result);
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException(ex.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses a list of file names.
+     *
+     * @param str
+     *            Comma separated file names. May be {@code null}.
+     * @return List of files, or {@code null} if a null was passed in.
+     */
+    private static List<File> parseFiles(String str) {
+        if (str == null) return null;
+
+        List<File> result = new ArrayList<>();
+        for (String name : str.split(",")) {
+            if (!name.trim().isEmpty()) {
+                result.add(new File(name.trim()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses how to handle duplicate contacts.
+     *
+     * @param str
+     *            "flag". May be {@code null}.
+     * @return {@link AddressDeduplicator.Mode}, or {@code null} if a null was passed in.
+     * @throws ParseException
+     *             The mode is unknown
+     */
+    private static AddressDeduplicator.Mode parseDuplicateMode(String str) throws ParseException {
+        if (str == null) return null;
+
+        try {
+            return AddressDeduplicator.Mode.valueOf(str.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Bad duplicate mode: " + str);
+        }
+    }
+
+    /**
+     * Parses the compression format.
+     *
+     * @param str
+     *            Compression format name. May be {@code null}.
+     * @return {@link Compression}, or {@code null} if a null was passed in.
+     * @throws ParseException
+     *             The compression format is unknown
+     */
+    private static Compression parseCompression(String str) throws ParseException {
+        if (str == null) return null;
+
+        try {
+            return Compression.valueOf(str.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Bad compression format: " + str);
+        }
+    }
+
+    /**
+     * Parses the compression level.
+     *
+     * @param str
+     *            Compression level. May be {@code null}.
+     * @return Compression level, or {@link Deflater#DEFAULT_COMPRESSION} if a null
+     *         was passed in.
+     * @throws ParseException
+     *             The level could not be parsed, or is out of range
+     */
+    private static int parseLevel(String str) throws ParseException {
+        int result = parseCount(str, Deflater.DEFAULT_COMPRESSION);
+        if (result > Deflater.BEST_COMPRESSION) {
+            throw new ParseException("Bad compression level: " + str);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the image format.
+     *
+     * @param str
+     *            Image format name. May be {@code null}.
+     * @return {@link ImageEncoder.Format}, or {@link ImageEncoder.Format#PNG} if a null
+     *         was passed in.
+     * @throws ParseException
+     *             The image format is unknown
+     */
+    private static ImageEncoder.Format parseImageFormat(String str) throws ParseException {
+        if (str == null) return ImageEncoder.Format.PNG;
+
+        try {
+            return ImageEncoder.Format.valueOf(str.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Bad image format: " + str);
+        }
+    }
+
+    /**
+     * Parses the PNG filter strategy.
+     *
+     * @param str
+     *            PNG filter name. May be {@code null}.
+     * @return {@link ImageEncoder.Filter}, or {@code null} if a null was passed in.
+     * @throws ParseException
+     *             The PNG filter is unknown
+     */
+    private static ImageEncoder.Filter parsePngFilter(String str) throws ParseException {
+        if (str == null) return null;
+
+        try {
+            return ImageEncoder.Filter.valueOf(str.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ParseException("Bad png filter: " + str);
+        }
+    }
+
+    /**
+     * Parses a list of column names.
+     *
+     * @param str
+     *            Comma separated column names. May be {@code null}.
+     * @return List of column names, or {@code null} if a null was passed in.
+     * @throws ParseException
+     *             No column name was given
+     */
+    private static List<String> parseFields(String str) throws ParseException {
+        if (str == null) return null;
+
+        List<String> result = new ArrayList<>();
+        for (String name : str.split(",")) {
+            if (!name.trim().isEmpty()) {
+                result.add(name.trim());
+            }
+        }
+
+        if (result.isEmpty()) {
+            throw new ParseException("No fields given: " + str);
+        }
+
+        return result;
+    }
+
+    /**
+     * Collects the search terms.
+     *
+     * @param terms
+     *            Comma separated search terms. May be {@code null}.
+     * @param termFile
+     *            Name of a file containing one search term per line. May be
+     *            {@code null}.
+     * @return List of search terms, or {@code null} if neither terms nor a term file
+     *         was passed in.
+     * @throws IOException
+     *             The term file could not be read
+     */
+    private static List<String> parseTerms(String terms, String termFile) throws IOException {
+        if (terms == null && termFile == null) return null;
+
+        List<String> result = new ArrayList<>();
+
+        if (terms != null) {
+            for (String term : terms.split(",")) {
+                if (!term.trim().isEmpty()) {
+                    result.add(term.trim());
+                }
+            }
+        }
+
+        if (termFile != null) {
+            for (String term : Files.readAllLines(new File(termFile).toPath(), StandardCharsets.UTF_8)) {
+                if (!term.trim().isEmpty()) {
+                    result.add(term.trim());
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Outputs a help page.
      */
@@ -0,0 +1,180 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo.Category;
+import org.shredzone.commons.pdb.record.Record;
+
+/**
+ * Abstract superclass for exporters writing CSV files.
+ * <p>
+ * The first line contains the column names. It is followed by one line per accepted
+ * record. All records have an "id", "category" and "secret" column, followed by the
+ * columns of the record type. A projection of the columns can be set, so record
+ * fields that are not requested are neither read nor written.
+ *
+ * @author Richard "Shred" Körber
+ */
+public abstract class AbstractCsvExporter<T extends Record, U extends CategoryAppInfo>
+extends AbstractExporter<T, U> {
+
+    private static final String[] COMMON_COLUMNS = { "id", "category", "secret" };
+
+    private List<String> fields;
+
+    /**
+     * Sets the columns to be written, in that order. Column names are case
+     * insensitive. {@code null} (the default) writes all columns.
+     *
+     * @param fields
+     *            List of column names, or {@code null}
+     */
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public void export(PdbDatabase<T, U> database, OutputStream out) throws IOException {
+        String[] columns = getColumns();
+        int[] projection = project(columns);
+
+        CsvWriter csv = new CsvWriter(out);
+
+        for (int col : projection) {
+            csv.field(col < COMMON_COLUMNS.length
+                            ? COMMON_COLUMNS[col]
+                            : columns[col - COMMON_COLUMNS.length]);
+        }
+        csv.endRecord();
+
+        List<Category> categories = database.getAppInfo().getCategories();
+        List<T> records = database.getRecords();
+        for (int ix = 0; ix < records.size(); ix++) {
+            T record = records.get(ix);
+            if (!isAccepted(record)) continue;
+
+            for (int col : projection) {
+                switch (col) {
+                    case 0:
+                        csv.field(ix);
+                        break;
+
+                    case 1:
+                        int index = record.getCategoryIndex();
+                        Category cat = (index >= 0 && index < categories.size() ? categories.get(index) : null);
+                        csv.field(cat != null ? cat.getName() : null);
+                        break;
+
+                    case 2:
+                        csv.field(record.isSecret());
+                        break;
+
+                    default:
+                        writeColumn(record, col - COMMON_COLUMNS.length, csv);
+                }
+            }
+            csv.endRecord();
+        }
+
+        csv.flush();
+    }
+
+    /**
+     * Gets the names of the columns of the record type, in their default order.
+     *
+     * @return Array of lowercase column names
+     */
+    protected abstract String[] getColumns();
+
+    /**
+     * Writes a column of a record.
+     *
+     * @param record
+     *            Record to be written
+     * @param column
+     *            Index of the column in {@link #getColumns()}
+     * @param csv
+     *            {@link CsvWriter} to write the field to
+     */
+    protected abstract void writeColumn(T record, int column, CsvWriter csv) throws IOException;
+
+    /**
+     * Resolves the column names that were set to column indexes. Indexes below the
+     * number of common columns refer to the common columns, all others refer to
+     * {@link #getColumns()}.
+     *
+     * @param columns
+     *            Columns of the record type
+     * @return Column indexes to be written
+     * @throws IOException
+     *             if a column name is unknown
+     */
+    private int[] project(String[] columns) throws IOException {
+        int count = COMMON_COLUMNS.length + columns.length;
+
+        if (fields == null) {
+            int[] result = new int[count];
+            for (int ix = 0; ix < count; ix++) {
+                result[ix] = ix;
+            }
+            return result;
+        }
+
+        int[] result = new int[fields.size()];
+        for (int ix = 0; ix < result.length; ix++) {
+            String field = fields.get(ix).trim();
+            int col = indexOf(COMMON_COLUMNS, field);
+            if (col < 0) {
+                col = indexOf(columns, field);
+                if (col < 0) {
+                    throw new IOException("Unknown field: " + field);
+                }
+                col += COMMON_COLUMNS.length;
+            }
+            result[ix] = col;
+        }
+        return result;
+    }
+
+    /**
+     * Finds a column name, ignoring the case.
+     *
+     * @param columns
+     *            Column names
+     * @param name
+     *            Name to find
+     * @return Index of the column, or -1 if there is no such column
+     */
+    private static int indexOf(String[] columns, String name) {
+        for (int ix = 0; ix < columns.length; ix++) {
+            if (columns[ix].equalsIgnoreCase(name)) {
+                return ix;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -19,6 +19,9 @@
  */
 package org.shredzone.pdbconverter.export;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.shredzone.commons.pdb.appinfo.AppInfo;
 import org.shredzone.commons.pdb.record.Record;
 import org.shredzone.pdbconverter.export.filter.ExportFilter;
@@ -37,6 +40,15 @@ public abstract class AbstractExporter<T extends Record, U extends AppInfo> impl
         this.filter = filter;
     }
 
+    /**
+     * Gets the current filter.
+     *
+     * @return {@link ExportFilter}, or {@code null} if all records are accepted
+     */
+    protected ExportFilter<T> getFilter() {
+        return filter;
+    }
+
     /**
      * Checks if the current filter accepts the given record.
      *
@@ -48,4 +60,24 @@ public abstract class AbstractExporter<T extends Record, U extends AppInfo> impl
         return (filter == null || filter.accepts(record));
     }
 
+    /**
+     * Selects all records that are accepted by the current filter. Exporters that
+     * need to iterate over the accepted records more than once should use the
+     * selection, so the filter is only invoked once per record.
+     *
+     * @param records
+     *            List of records
+     * @return Indexes of the accepted records, in ascending order
+     */
+    protected int[] selectAccepted(List<T> records) {
+        int[] result = new int[records.size()];
+        int count = 0;
+        for (int ix = 0; ix < result.length; ix++) {
+            if (isAccepted(records.get(ix))) {
+                result[count++] = ix;
+            }
+        }
+        return (count == result.length ? result : Arrays.copyOf(result, count));
+    }
+
 }
@@ -0,0 +1,181 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.List;
+
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo.Category;
+import org.shredzone.commons.pdb.record.Record;
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * Abstract superclass for exporters writing newline delimited JSON (NDJSON).
+ * <p>
+ * The first line is a header object with the database information and the
+ * categories. It is followed by one object per accepted record, carrying the record
+ * "id", "category" and "secret" attributes, and the record fields. The output is
+ * streamed, so it can be piped directly into bulk loaders.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://ndjson.org/">NDJSON</a>
+ */
+public abstract class AbstractNdJsonExporter<T extends Record, U extends CategoryAppInfo>
+extends AbstractExporter<T, U> {
+
+    @Override
+    public void export(PdbDatabase<T, U> database, OutputStream out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+
+        json.beginObject();
+        writeDatabase(database, json);
+        writeCategories(database, json);
+        writeHeader(database, json);
+        json.endObject().newLine();
+
+        writeRecords(database.getRecords(), json);
+
+        json.flush();
+    }
+
+    /**
+     * Writes further members of the header object. By default, nothing is written.
+     *
+     * @param database
+     *            {@link PdbDatabase} to be written
+     * @param json
+     *            {@link JsonWriter} to write to
+     */
+    protected void writeHeader(PdbDatabase<T, U> database, JsonWriter json) throws IOException {
+        // nothing to write by default
+    }
+
+    /**
+     * Writes all accepted records, one per line.
+     *
+     * @param records
+     *            Records to be written
+     * @param json
+     *            {@link JsonWriter} to write to
+     */
+    protected void writeRecords(List<T> records, JsonWriter json) throws IOException {
+        for (int ix = 0; ix < records.size(); ix++) {
+            T record = records.get(ix);
+            if (isAccepted(record)) {
+                beginRecord(ix, record, json);
+                writeRecord(record, json);
+                json.endObject().newLine();
+            }
+        }
+    }
+
+    /**
+     * Starts a record object, and writes the "id", "category" and "secret" members.
+     *
+     * @param ix
+     *            Record index
+     * @param record
+     *            Record to be written
+     * @param json
+     *            {@link JsonWriter} to write to
+     */
+    protected void beginRecord(int ix, T record, JsonWriter json) throws IOException {
+        json.beginObject()
+            .name("id").value(ix)
+            .name("category").value(record.getCategoryIndex())
+            .name("secret").value(record.isSecret());
+    }
+
+    /**
+     * Writes the fields of a record, as members of the record object.
+     *
+     * @param record
+     *            Record to be written
+     * @param json
+     *            {@link JsonWriter} to write to
+     */
+    protected abstract void writeRecord(T record, JsonWriter json) throws IOException;
+
+    /**
+     * Writes a date as RFC 3339 timestamp.
+     *
+     * @param key
+     *            Member name
+     * @param date
+     *            Date to be written
+     * @param json
+     *            {@link JsonWriter} to write to
+     */
+    protected void writeDate(String key, Calendar date, JsonWriter json) throws IOException {
+        json.name(key).value(DateMath.formatTimestamp(date.getTimeInMillis()));
+    }
+
+    /**
+     * Writes the informal part of the database, as "database" object.
+     *
+     * @param database
+     *            {@link PdbDatabase} to be written
+     * @param json
+     *            {@link JsonWriter} to write to
+     */
+    private void writeDatabase(PdbDatabase<T, U> database, JsonWriter json) throws IOException {
+        json.name("database").beginObject()
+            .name("name").value(database.getName())
+            .name("type").value(database.getType())
+            .name("creator").value(database.getCreator());
+        writeDate("created", database.getCreationTime(), json);
+        writeDate("modified", database.getModificationTime(), json);
+        if (database.getBackupTime() != null) {
+            writeDate("backup", database.getBackupTime(), json);
+        }
+        json.endObject();
+    }
+
+    /**
+     * Writes all categories, as "categories" array.
+     *
+     * @param database
+     *            {@link PdbDatabase} to be written
+     * @param json
+     *            {@link JsonWriter} to write to
+     */
+    private void writeCategories(PdbDatabase<T, U> database, JsonWriter json) throws IOException {
+        json.name("categories").beginArray();
+
+        List<Category> categories = database.getAppInfo().getCategories();
+        for (int ix = 0; ix < categories.size(); ix++) {
+            Category cat = categories.get(ix);
+            if (cat != null) {
+                json.beginObject()
+                    .name("id").value(ix)
+                    .name("key").value(cat.getKey())
+                    .name("name").value(cat.getName())
+                    .endObject();
+            }
+        }
+
+        json.endArray();
+    }
+
+}
@@ -0,0 +1,345 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.component.VTimeZone;
+
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * Base class for {@link CalendarWriter} that write structured calendar
+ * representations, like jCal and xCal.
+ * <p>
+ * Property and component names are converted to lower case. Values are converted to
+ * the extended ISO 8601 format (e.g. "2009-12-31T10:30:00Z"), and are passed to the
+ * implementation together with their value type. VTIMEZONE components are converted
+ * from the ical4j definitions.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc6321">RFC 6321</a>
+ * @see <a href="http://tools.ietf.org/html/rfc7265">RFC 7265</a>
+ */
+public abstract class AbstractStructuredCalendarWriter implements CalendarWriter {
+
+    /**
+     * Writes a property with a single value.
+     *
+     * @param name
+     *            Property name, in lower case
+     * @param tzid
+     *            Time zone ID parameter, or {@code null} if there is none
+     * @param type
+     *            Value type, like "text" or "date-time"
+     * @param value
+     *            Value to write
+     */
+    protected abstract void property(String name, String tzid, String type, String value)
+    throws IOException;
+
+    /**
+     * Writes a property with multiple values of the same type.
+     *
+     * @param name
+     *            Property name, in lower case
+     * @param type
+     *            Value type, like "text" or "date-time"
+     * @param values
+     *            Array of values
+     * @param count
+     *            Number of values to be used from the array
+     */
+    protected abstract void properties(String name, String type, String[] values, int count)
+    throws IOException;
+
+    /**
+     * Writes a recurrence rule property.
+     *
+     * @param name
+     *            Property name, in lower case
+     * @param parts
+     *            Rule parts, mapping the lower case part name to its value. Values may
+     *            be comma separated lists. See {@link #isNumericRulePart(String)}.
+     */
+    protected abstract void recurProperty(String name, Map<String, String> parts)
+    throws IOException;
+
+    @Override
+    public void text(String name, String value) throws IOException {
+        property(lower(name), null, "text", (value != null ? value : ""));
+    }
+
+    @Override
+    public void textListItem(String name, String value) throws IOException {
+        property(lower(name), null, "text", value);
+    }
+
+    @Override
+    public void date(String name, int epochDay) throws IOException {
+        property(lower(name), null, "date", formatDate(epochDay));
+    }
+
+    @Override
+    public void dates(String name, int[] epochDays, int count) throws IOException {
+        String[] values = new String[count];
+        for (int ix = 0; ix < count; ix++) {
+            values[ix] = formatDate(epochDays[ix]);
+        }
+        properties(lower(name), "date", values, count);
+    }
+
+    @Override
+    public void localDateTime(String name, String tzid, long localMillis) throws IOException {
+        property(lower(name), tzid, "date-time", formatDateTime(localMillis, false));
+    }
+
+    @Override
+    public void utcDateTime(String name, long millis) throws IOException {
+        property(lower(name), null, "date-time", formatDateTime(millis, true));
+    }
+
+    @Override
+    public void duration(String name, String duration) throws IOException {
+        property(lower(name), null, "duration", duration);
+    }
+
+    @Override
+    public void recur(String name, String rule) throws IOException {
+        Map<String, String> parts = new LinkedHashMap<>();
+        for (String part : rule.split(";")) {
+            int pos = part.indexOf('=');
+            if (pos < 0) {
+                throw new IllegalArgumentException("invalid recurrence rule " + rule);
+            }
+            String key = lower(part.substring(0, pos));
+            String value = part.substring(pos + 1);
+            if ("until".equals(key)) {
+                value = extendedDateTime(value);
+            }
+            parts.put(key, value);
+        }
+        recurProperty(lower(name), parts);
+    }
+
+    @Override
+    public void timeZone(String tzid, boolean compact) throws IOException {
+        VTimeZone vTimeZone = (compact
+                        ? TimeZoneCache.getCompactVTimeZoneComponent(tzid)
+                        : TimeZoneCache.getTimeZone(tzid).getVTimeZone());
+        writeComponent(vTimeZone);
+    }
+
+    /**
+     * Checks if the values of a recurrence rule part are numeric.
+     *
+     * @param part
+     *            Rule part name, in lower case
+     * @return {@code true} if the values are integers
+     */
+    protected static boolean isNumericRulePart(String part) {
+        return !("freq".equals(part) || "until".equals(part)
+                        || "wkst".equals(part) || "byday".equals(part));
+    }
+
+    /**
+     * Writes an ical4j VTIMEZONE component, or one of its observances.
+     *
+     * @param component
+     *            {@link Component} to write
+     */
+    private void writeComponent(Component component) throws IOException {
+        begin(component.getName());
+
+        for (Object property : component.getProperties()) {
+            writeTimeZoneProperty((Property) property);
+        }
+
+        if (component instanceof VTimeZone) {
+            for (Object observance : ((VTimeZone) component).getObservances()) {
+                writeComponent((Component) observance);
+            }
+        }
+
+        end(component.getName());
+    }
+
+    /**
+     * Writes a property of a VTIMEZONE component, converting its value.
+     *
+     * @param property
+     *            ical4j {@link Property} to write
+     */
+    private void writeTimeZoneProperty(Property property) throws IOException {
+        String name = property.getName();
+        String value = property.getValue();
+
+        switch (name) {
+            case Property.DTSTART:
+            case Property.LAST_MODIFIED:
+                property(lower(name), null, valueType(value), extendedDateTime(value));
+                break;
+
+            case Property.RDATE: {
+                String[] values = value.split(",");
+                for (int ix = 0; ix < values.length; ix++) {
+                    values[ix] = extendedDateTime(values[ix]);
+                }
+                properties(lower(name), valueType(value), values, values.length);
+                break;
+            }
+
+            case Property.TZOFFSETFROM:
+            case Property.TZOFFSETTO:
+                property(lower(name), null, "utc-offset", extendedOffset(value));
+                break;
+
+            case Property.TZURL:
+                property(lower(name), null, "uri", value);
+                break;
+
+            case Property.RRULE:
+                recur(name, value);
+                break;
+
+            default:
+                property(lower(name), null, (name.startsWith("X-") ? "unknown" : "text"), value);
+        }
+    }
+
+    /**
+     * Converts a name to lower case.
+     */
+    private static String lower(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Returns the value type of a DATE or DATE-TIME value in basic format.
+     */
+    private static String valueType(String value) {
+        return (value.indexOf('T') >= 0 ? "date-time" : "date");
+    }
+
+    /**
+     * Formats an epoch day as date in extended format.
+     *
+     * @param epochDay
+     *            Epoch day
+     * @return Formatted date, like "2009-12-31"
+     */
+    private static String formatDate(int epochDay) {
+        StringBuilder sb = new StringBuilder(20);
+        appendDate(sb, epochDay);
+        return sb.toString();
+    }
+
+    /**
+     * Formats milliseconds since epoch as date-time in extended format.
+     *
+     * @param millis
+     *            Milliseconds since epoch
+     * @param utc
+     *            {@code true} to append the UTC designator
+     * @return Formatted date-time, like "2009-12-31T10:30:00Z"
+     */
+    private static String formatDateTime(long millis, boolean utc) {
+        StringBuilder sb = new StringBuilder(20);
+        appendDate(sb, DateMath.epochDayOf(millis));
+        int second = DateMath.secondOfDayOf(millis);
+        sb.append('T');
+        appendDigits(sb, second / 3600, 2);
+        sb.append(':');
+        appendDigits(sb, second / 60 % 60, 2);
+        sb.append(':');
+        appendDigits(sb, second % 60, 2);
+        if (utc) {
+            sb.append('Z');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Converts a DATE or DATE-TIME value from basic to extended format.
+     *
+     * @param value
+     *            Value in basic format, like "20091231T103000Z"
+     * @return Value in extended format, like "2009-12-31T10:30:00Z"
+     */
+    private static String extendedDateTime(String value) {
+        if (value.length() < 8) {
+            throw new IllegalArgumentException("invalid date " + value);
+        }
+
+        StringBuilder sb = new StringBuilder(20);
+        sb.append(value, 0, 4).append('-').append(value, 4, 6).append('-').append(value, 6, 8);
+        if (value.length() >= 15 && value.charAt(8) == 'T') {
+            sb.append('T').append(value, 9, 11).append(':').append(value, 11, 13)
+              .append(':').append(value, 13, 15);
+            sb.append(value, 15, value.length());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Converts an UTC offset from basic to extended format.
+     *
+     * @param value
+     *            UTC offset in basic format, like "+0100"
+     * @return UTC offset in extended format, like "+01:00"
+     */
+    private static String extendedOffset(String value) {
+        StringBuilder sb = new StringBuilder(9);
+        sb.append(value, 0, 3).append(':').append(value, 3, 5);
+        if (value.length() >= 7) {
+            sb.append(':').append(value, 5, 7);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends an epoch day as date in extended format.
+     */
+    private static void appendDate(StringBuilder sb, int epochDay) {
+        int packed = DateMath.packedDate(epochDay);
+        appendDigits(sb, DateMath.year(packed), 4);
+        sb.append('-');
+        appendDigits(sb, DateMath.month(packed), 2);
+        sb.append('-');
+        appendDigits(sb, DateMath.day(packed), 2);
+    }
+
+    /**
+     * Appends a non-negative number, padded with leading zeros.
+     */
+    private static void appendDigits(StringBuilder sb, int value, int width) {
+        int start = sb.length();
+        sb.append(value);
+        while (sb.length() - start < width) {
+            sb.insert(start, '0');
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+
+import org.shredzone.commons.pdb.appinfo.AddressAppInfo;
+import org.shredzone.commons.pdb.record.AddressRecord;
+import org.shredzone.commons.pdb.record.AddressRecord.Field;
+
+/**
+ * Writes an {@link AddressRecord} database as CSV file. There is a column for each
+ * {@link Field}, named like the field in lowercase.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class AddressCsvExporter extends AbstractCsvExporter<AddressRecord, AddressAppInfo> {
+
+    private static final Field[] FIELDS = Field.values();
+    private static final String[] COLUMNS = new String[FIELDS.length];
+    static {
+        for (int ix = 0; ix < FIELDS.length; ix++) {
+            COLUMNS[ix] = FIELDS[ix].name().toLowerCase();
+        }
+    }
+
+    @Override
+    protected String[] getColumns() {
+        return COLUMNS;
+    }
+
+    @Override
+    protected void writeColumn(AddressRecord record, int column, CsvWriter csv) throws IOException {
+        csv.field(record.getField(FIELDS[column]));
+    }
+
+}
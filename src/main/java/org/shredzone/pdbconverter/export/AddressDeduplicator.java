@@ -0,0 +1,460 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.shredzone.commons.pdb.record.AddressRecord;
+import org.shredzone.commons.pdb.record.AddressRecord.Field;
+import org.shredzone.pdbconverter.export.FieldClassifier.Type;
+import org.shredzone.pdbconverter.export.filter.ExportFilter;
+
+/**
+ * Finds duplicate contacts, without comparing each pair of contacts.
+ * <p>
+ * Contacts are added one by one. Each contact is indexed by its lower-cased email
+ * addresses and the digits of its phone numbers, and is only compared with the
+ * contacts sharing one of these keys. A shared key alone is not sufficient, as a
+ * switchboard number or a family email address may belong to several people. The
+ * contacts are only joined if their names are also similar. For that, a MinHash
+ * signature of the name is computed, regardless of the order of its words. Contacts
+ * without a name or company are never joined.
+ * <p>
+ * Groups are transitive, so if A and B share a phone number, and B and C share an
+ * email address, and all three names are similar, A, B and C are duplicates. The
+ * contact with the largest weight represents the group. This class is not
+ * thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class AddressDeduplicator {
+
+    private static final int MIN_PHONE_DIGITS = 6;
+    private static final int HASHES = 16;
+    private static final int[] SEEDS = new int[HASHES];
+
+    static {
+        int seed = 0x9E3779B9;
+        for (int ix = 0; ix < HASHES; ix++) {
+            seed = mix(seed + ix);
+            SEEDS[ix] = seed;
+        }
+    }
+
+    private final FieldClassifier classifier = new FieldClassifier();
+    private final Map<String, List<Integer>> keys = new HashMap<>();
+    private final StringBuilder sb = new StringBuilder();
+    private double similarity = 0.8;
+
+    private int[] parent = new int[64];
+    private int[] weights = new int[64];
+    private int[][] signatures = new int[64][];
+    private int size = 0;
+
+    /**
+     * Duplicate handling modes. Duplicates are never dropped automatically, as each
+     * of them may contain data that the other contacts of the group do not have.
+     */
+    public static enum Mode {
+        /**
+         * All contacts are exported, duplicates are marked.
+         */
+        FLAG;
+    }
+
+    /**
+     * Sets the minimum estimated similarity of the names of two contacts sharing a
+     * phone number or email address to be regarded as duplicates. Default is 0.8.
+     *
+     * @param similarity
+     *            Similarity, between 0.0 and 1.0
+     */
+    public void setSimilarity(double similarity) {
+        this.similarity = similarity;
+    }
+
+    /**
+     * Finds the duplicates of a list of {@link AddressRecord}.
+     *
+     * @param records
+     *            List of {@link AddressRecord}
+     * @param filter
+     *            {@link ExportFilter} of the records to be regarded, or {@code null}
+     *            for all records
+     * @return Array containing the index of the representative of each record, or -1
+     *         if the record was not accepted by the filter
+     */
+    public static int[] findDuplicates(List<AddressRecord> records,
+            ExportFilter<AddressRecord> filter) {
+        AddressDeduplicator dedup = new AddressDeduplicator();
+
+        int[] index = new int[records.size()];
+        for (int ix = 0; ix < records.size(); ix++) {
+            AddressRecord record = records.get(ix);
+            if (filter == null || filter.accepts(record)) {
+                index[dedup.add(record)] = ix;
+            }
+        }
+
+        int[] groups = dedup.findGroups();
+        int[] result = new int[records.size()];
+        Arrays.fill(result, -1);
+        for (int ix = 0; ix < groups.length; ix++) {
+            result[index[ix]] = index[groups[ix]];
+        }
+        return result;
+    }
+
+    /**
+     * Finds the records to be flagged as duplicates.
+     *
+     * @param duplicates
+     *            Result of {@link #findDuplicates(List, ExportFilter)}
+     * @return Array containing the index of the representative of each record having
+     *         duplicates, or -1 if the record has no duplicates or was not accepted
+     */
+    public static int[] flagDuplicates(int[] duplicates) {
+        int[] result = new int[duplicates.length];
+        Arrays.fill(result, -1);
+        for (int ix = 0; ix < duplicates.length; ix++) {
+            int rep = duplicates[ix];
+            if (rep >= 0 && rep != ix) {
+                result[ix] = rep;
+                result[rep] = rep;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds an {@link AddressRecord}. Its weight is the number of fields that are set.
+     *
+     * @param address
+     *            {@link AddressRecord} to add
+     * @return Index of the contact
+     */
+    public int add(AddressRecord address) {
+        int weight = 0;
+        for (Field field : Field.values()) {
+            if (address.getField(field) != null) {
+                weight++;
+            }
+        }
+
+        return add(
+            address.getField(Field.FIRST_NAME),
+            address.getField(Field.NAME),
+            address.getField(Field.COMPANY),
+            weight,
+            address.getField(Field.PHONE1),
+            address.getField(Field.PHONE2),
+            address.getField(Field.PHONE3),
+            address.getField(Field.PHONE4),
+            address.getField(Field.PHONE5),
+            address.getField(Field.CUSTOM1),
+            address.getField(Field.CUSTOM2),
+            address.getField(Field.CUSTOM3),
+            address.getField(Field.CUSTOM4)
+        );
+    }
+
+    /**
+     * Adds a contact.
+     *
+     * @param firstName
+     *            First name, or {@code null}
+     * @param name
+     *            Last name, or {@code null}
+     * @param company
+     *            Company, or {@code null}
+     * @param weight
+     *            Weight of the contact. The contact with the largest weight represents
+     *            the group.
+     * @param values
+     *            Phone numbers and email addresses. Other values and {@code null} are
+     *            ignored.
+     * @return Index of the contact
+     */
+    public int add(String firstName, String name, String company, int weight, String... values) {
+        int ix = size++;
+        if (ix == parent.length) {
+            parent = Arrays.copyOf(parent, ix * 2);
+            weights = Arrays.copyOf(weights, ix * 2);
+            signatures = Arrays.copyOf(signatures, ix * 2);
+        }
+        parent[ix] = ix;
+        weights[ix] = weight;
+
+        String normFirst = normalize(firstName);
+        String normName = normalize(name);
+        String normCompany = normalize(company);
+
+        String fullName;
+        if (!normFirst.isEmpty() && !normName.isEmpty()) {
+            fullName = normFirst + ' ' + normName;
+        } else if (!normName.isEmpty() || !normFirst.isEmpty()) {
+            fullName = normFirst + normName;
+        } else {
+            fullName = normCompany;
+        }
+        if (fullName.isEmpty()) {
+            return ix;
+        }
+        signatures[ix] = signature(sortWords(fullName));
+
+        for (String value : values) {
+            if (value == null) continue;
+
+            Type type = classifier.classify(value);
+            if (type == Type.EMAIL) {
+                link("e:" + value.trim().toLowerCase(Locale.ENGLISH), ix);
+            } else if (type == Type.PHONE) {
+                String digits = digits(value);
+                if (digits.length() >= MIN_PHONE_DIGITS) {
+                    link("p:" + digits, ix);
+                }
+            }
+        }
+
+        return ix;
+    }
+
+    /**
+     * Returns the number of contacts that have been added.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the groups of duplicates.
+     *
+     * @return Array containing the index of the representative of each contact. A
+     *         contact without duplicates represents itself.
+     */
+    public int[] findGroups() {
+        int[] best = new int[size];
+        Arrays.fill(best, -1);
+        for (int ix = 0; ix < size; ix++) {
+            int root = find(ix);
+            if (best[root] < 0 || weights[ix] > weights[best[root]]) {
+                best[root] = ix;
+            }
+        }
+
+        int[] result = new int[size];
+        for (int ix = 0; ix < size; ix++) {
+            result[ix] = best[find(ix)];
+        }
+        return result;
+    }
+
+    /**
+     * Normalizes a string. Diacritics are removed, letters are converted to lower case,
+     * and all sequences of other characters than letters and digits are replaced by a
+     * single space.
+     *
+     * @param str
+     *            String to normalize, may be {@code null}
+     * @return Normalized string, empty if {@code null} was passed in
+     */
+    static String normalize(String str) {
+        if (str == null) {
+            return "";
+        }
+
+        String decomposed = Normalizer.normalize(str, Normalizer.Form.NFD);
+        StringBuilder result = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int ix = 0; ix < decomposed.length(); ix++) {
+            char ch = decomposed.charAt(ix);
+            if (Character.isLetterOrDigit(ch)) {
+                if (space && result.length() > 0) {
+                    result.append(' ');
+                }
+                result.append(Character.toLowerCase(ch));
+                space = false;
+            } else if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+                space = true;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Sorts the words of a normalized string, so "smith john" and "john smith" give
+     * the same result.
+     *
+     * @param str
+     *            Normalized string
+     * @return String with sorted words
+     */
+    static String sortWords(String str) {
+        if (str.indexOf(' ') < 0) {
+            return str;
+        }
+
+        String[] words = str.split(" ");
+        Arrays.sort(words);
+        StringBuilder result = new StringBuilder(str.length());
+        for (String word : words) {
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(word);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the digits of a phone number.
+     *
+     * @param phone
+     *            Phone number
+     * @return Digits of the phone number
+     */
+    private String digits(String phone) {
+        sb.setLength(0);
+        for (int ix = 0; ix < phone.length(); ix++) {
+            char ch = phone.charAt(ix);
+            if (ch >= '0' && ch <= '9') {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Joins a contact with all contacts having the same key and a similar name.
+     *
+     * @param key
+     *            Normalized key
+     * @param ix
+     *            Index of the contact
+     */
+    private void link(String key, int ix) {
+        List<Integer> others = keys.get(key);
+        if (others == null) {
+            others = new ArrayList<>(1);
+            keys.put(key, others);
+        }
+
+        for (int other : others) {
+            if (find(other) != find(ix) && estimate(signatures[other], signatures[ix]) >= similarity) {
+                union(other, ix);
+            }
+        }
+
+        if (others.isEmpty() || others.get(others.size() - 1) != ix) {
+            others.add(ix);
+        }
+    }
+
+    /**
+     * Computes the MinHash signature of the character trigrams of a name.
+     *
+     * @param name
+     *            Normalized name
+     * @return MinHash signature
+     */
+    private static int[] signature(String name) {
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        // Trigrams of the name, padded by a space on both sides
+        int len = name.length() + 2;
+        for (int pos = 0; pos + 3 <= len; pos++) {
+            int shingle = (charAt(name, pos) * 31 + charAt(name, pos + 1)) * 31 + charAt(name, pos + 2);
+            for (int h = 0; h < HASHES; h++) {
+                int value = mix(shingle ^ SEEDS[h]);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+
+        return signature;
+    }
+
+    /**
+     * Gets a character of a string padded by a space on both sides.
+     */
+    private static char charAt(String str, int pos) {
+        return (pos == 0 || pos > str.length() ? ' ' : str.charAt(pos - 1));
+    }
+
+    /**
+     * Estimates the Jaccard similarity of two MinHash signatures.
+     */
+    private static double estimate(int[] sig1, int[] sig2) {
+        int equal = 0;
+        for (int ix = 0; ix < HASHES; ix++) {
+            if (sig1[ix] == sig2[ix]) {
+                equal++;
+            }
+        }
+        return (double) equal / HASHES;
+    }
+
+    /**
+     * Finds the root of a group, halving the path.
+     */
+    private int find(int ix) {
+        int current = ix;
+        while (parent[current] != current) {
+            parent[current] = parent[parent[current]];
+            current = parent[current];
+        }
+        return current;
+    }
+
+    /**
+     * Joins the groups of two contacts.
+     */
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Scrambles the bits of a hash value (MurmurHash3 finalizer).
+     */
+    private static int mix(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+}
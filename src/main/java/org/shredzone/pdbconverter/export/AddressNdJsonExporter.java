@@ -0,0 +1,120 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.AddressAppInfo;
+import org.shredzone.commons.pdb.record.AddressRecord;
+import org.shredzone.commons.pdb.record.AddressRecord.Field;
+import org.shredzone.commons.pdb.record.AddressRecord.Label;
+
+/**
+ * Writes an {@link AddressRecord} database as newline delimited JSON. The header
+ * contains the country and the label names, like {@link AddressXmlExporter}.
+ * <p>
+ * If a duplicate mode is set, duplicate contacts are either skipped, or flagged by a
+ * "duplicateGroup" member.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class AddressNdJsonExporter extends AbstractNdJsonExporter<AddressRecord, AddressAppInfo> {
+
+    private AddressDeduplicator.Mode duplicateMode;
+
+    /**
+     * Sets how duplicate contacts are handled. {@code null} (the default) exports all
+     * contacts without checking for duplicates.
+     *
+     * @param duplicateMode
+     *            {@link AddressDeduplicator.Mode}, or {@code null}
+     */
+    public void setDuplicateMode(AddressDeduplicator.Mode duplicateMode) {
+        this.duplicateMode = duplicateMode;
+    }
+
+    @Override
+    protected void writeHeader(PdbDatabase<AddressRecord, AddressAppInfo> database, JsonWriter json)
+    throws IOException {
+        AddressAppInfo appInfo = database.getAppInfo();
+
+        json.name("country").value(appInfo.getCountry());
+
+        json.name("labels").beginObject();
+        for (Label label : Label.values()) {
+            json.name(label.name()).value(appInfo.getLabel(label));
+        }
+        json.endObject();
+    }
+
+    @Override
+    protected void writeRecords(List<AddressRecord> records, JsonWriter json) throws IOException {
+        if (duplicateMode == null) {
+            super.writeRecords(records, json);
+            return;
+        }
+
+        int[] duplicates = AddressDeduplicator.flagDuplicates(
+                        AddressDeduplicator.findDuplicates(records, getFilter()));
+
+        for (int ix = 0; ix < records.size(); ix++) {
+            AddressRecord record = records.get(ix);
+            if (!isAccepted(record)) continue;
+
+            beginRecord(ix, record, json);
+            if (duplicates[ix] >= 0) {
+                json.name("duplicateGroup").value(duplicates[ix]);
+            }
+            writeRecord(record, json);
+            json.endObject().newLine();
+        }
+    }
+
+    @Override
+    protected void writeRecord(AddressRecord record, JsonWriter json) throws IOException {
+        int pref = record.getDisplayPhone();
+
+        json.name("fields").beginArray();
+        for (Field field : Field.values()) {
+            String value = record.getField(field);
+            Label label = record.getLabel(field);
+
+            boolean preferred = false;
+            if (   label == Label.PHONE1 || label == Label.PHONE2 || label == Label.PHONE3
+                || label == Label.PHONE4 || label == Label.PHONE5 || label == Label.PHONE6
+                || label == Label.PHONE7 || label == Label.PHONE8) {
+                preferred = (pref == 0);
+                pref--;
+            }
+
+            if (value != null) {
+                json.beginObject().name("label").value(label.name());
+                if (preferred) {
+                    json.name("preferred").value(true);
+                }
+                json.name("value").value(value).endObject();
+            }
+        }
+        json.endArray();
+    }
+
+}
@@ -36,6 +36,20 @@ import org.shredzone.commons.pdb.record.AddressRecord.Label;
  */
 public class AddressXmlExporter extends AbstractExporter<AddressRecord, AddressAppInfo> {
 
+    private AddressDeduplicator.Mode duplicateMode;
+
+    /**
+     * Sets how duplicate addresses are handled. If set, duplicates are flagged with a
+     * "duplicate-group" attribute, using an {@link AddressDeduplicator}.
+     *
+     * @param duplicateMode
+     *            {@link AddressDeduplicator.Mode}, or {@code null} to export all
+     *            addresses unchanged (default)
+     */
+    public void setDuplicateMode(AddressDeduplicator.Mode duplicateMode) {
+        this.duplicateMode = duplicateMode;
+    }
+
     /**
      * Writes the {@link AddressRecord} database XML to the given {@link OutputStream}.
      *
@@ -56,19 +70,27 @@ public class AddressXmlExporter extends AbstractExporter<AddressRecord, AddressA
 
         writeLabelNames(database.getAppInfo(), xh);
 
-        xh.startElement("addresses");
         List<AddressRecord> records = database.getRecords();
+        int[] duplicates = null;
+        if (duplicateMode != null) {
+            duplicates = AddressDeduplicator.flagDuplicates(
+                            AddressDeduplicator.findDuplicates(records, getFilter()));
+        }
+
+        xh.startElement("addresses");
         for (int ix = 0; ix < records.size(); ix++) {
             AddressRecord record = records.get(ix);
-            if (isAccepted(record)) {
-                xh.startElement("address",
-                        "id", ix,
-                        "category", record.getCategoryIndex(),
-                        "secret", record.isSecret()
-                );
-                writeAddress(record, xh);
-                xh.endElement();
+            if (!isAccepted(record)) continue;
+
+            xh.startElement("address")
+                    .attribute("id", ix)
+                    .attribute("category", record.getCategoryIndex())
+                    .attribute("secret", record.isSecret());
+            if (duplicates != null && duplicates[ix] >= 0) {
+                xh.attribute("duplicate-group", duplicates[ix]);
             }
+            writeAddress(record, xh);
+            xh.endElement();
         }
         xh.endElement();
 
@@ -99,20 +121,9 @@ public class AddressXmlExporter extends AbstractExporter<AddressRecord, AddressA
             }
 
             if (value != null) {
+                xh.startElement("field").attribute("label", label.name());
                 if (preferred) {
-                    xh.startElement(
-                        "field",
-                        "label",
-                        label.name(),
-                        "preferred",
-                        "true"
-                    );
-                } else {
-                    xh.startElement(
-                        "field",
-                        "label",
-                        label.name()
-                    );
+                    xh.attribute("preferred", true);
                 }
                 xh.writeContent(value);
                 xh.endElement();
@@ -131,7 +142,7 @@ public class AddressXmlExporter extends AbstractExporter<AddressRecord, AddressA
     private void writeLabelNames(AddressAppInfo appinfo, XmlHelper xh) throws IOException {
         xh.startElement("labels");
         for (Label label : Label.values()) {
-            xh.startElement("label", "id", label.name());
+            xh.startElement("label").attribute("id", label.name());
             xh.writeContent(appinfo.getLabel(label));
             xh.endElement();
         }
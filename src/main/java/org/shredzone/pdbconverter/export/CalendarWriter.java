@@ -0,0 +1,148 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Writes calendar components and properties in a certain representation, like
+ * iCalendar, jCal or xCal.
+ * <p>
+ * All properties of a component must be written before its first subcomponent.
+ * Property and component names are given in iCalendar notation (e.g. "DTSTART").
+ * Implementations are not thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ */
+public interface CalendarWriter extends Flushable {
+
+    /**
+     * Starts a component.
+     *
+     * @param component
+     *            Component name
+     */
+    void begin(String component) throws IOException;
+
+    /**
+     * Ends a component.
+     *
+     * @param component
+     *            Component name
+     */
+    void end(String component) throws IOException;
+
+    /**
+     * Writes a text property.
+     *
+     * @param name
+     *            Property name
+     * @param value
+     *            Text value, {@code null} is written as empty text
+     */
+    void text(String name, String value) throws IOException;
+
+    /**
+     * Writes a property with a single item of a text list, like CATEGORIES.
+     *
+     * @param name
+     *            Property name
+     * @param value
+     *            Text value
+     */
+    void textListItem(String name, String value) throws IOException;
+
+    /**
+     * Writes a date property.
+     *
+     * @param name
+     *            Property name
+     * @param epochDay
+     *            Epoch day of the date
+     */
+    void date(String name, int epochDay) throws IOException;
+
+    /**
+     * Writes a property with a list of dates.
+     *
+     * @param name
+     *            Property name
+     * @param epochDays
+     *            Array of epoch days
+     * @param count
+     *            Number of epoch days to be used from the array
+     */
+    void dates(String name, int[] epochDays, int count) throws IOException;
+
+    /**
+     * Writes a date-time property with a local time.
+     *
+     * @param name
+     *            Property name
+     * @param tzid
+     *            Time zone ID of the local time
+     * @param localMillis
+     *            Local date and time, as milliseconds since epoch in UTC
+     */
+    void localDateTime(String name, String tzid, long localMillis) throws IOException;
+
+    /**
+     * Writes a date-time property with an UTC time.
+     *
+     * @param name
+     *            Property name
+     * @param millis
+     *            Instant, as milliseconds since epoch
+     */
+    void utcDateTime(String name, long millis) throws IOException;
+
+    /**
+     * Writes a duration property.
+     *
+     * @param name
+     *            Property name
+     * @param duration
+     *            Duration in iCalendar notation (e.g. "-PT15M")
+     */
+    void duration(String name, String duration) throws IOException;
+
+    /**
+     * Writes a recurrence rule property.
+     *
+     * @param name
+     *            Property name
+     * @param rule
+     *            Recurrence rule in iCalendar notation (e.g. "FREQ=WEEKLY;BYDAY=MO")
+     */
+    void recur(String name, String rule) throws IOException;
+
+    /**
+     * Writes a VTIMEZONE component.
+     *
+     * @param tzid
+     *            Time zone ID
+     * @param compact
+     *            {@code true} to write a compact VTIMEZONE, see
+     *            {@link TimeZoneCache#getCompactVTimeZoneComponent(String)}
+     */
+    void timeZone(String tzid, boolean compact) throws IOException;
+
+}
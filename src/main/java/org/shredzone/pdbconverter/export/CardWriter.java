@@ -0,0 +1,123 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+
+import org.shredzone.pdbconverter.export.VCardExporter.PhoneType;
+
+/**
+ * Writes contact cards in a certain representation, like vCard 3.0, vCard 4.0 or
+ * jCard.
+ * <p>
+ * Property names are given in vCard notation (e.g. "FN"). Implementations are not
+ * thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ */
+public interface CardWriter {
+
+    /**
+     * Starts a card. The version property is written as well.
+     */
+    void begin() throws IOException;
+
+    /**
+     * Ends a card.
+     */
+    void end() throws IOException;
+
+    /**
+     * Finishes the output after the last card, and flushes it.
+     */
+    void finish() throws IOException;
+
+    /**
+     * Writes the access classification of the card. It is ignored if the
+     * representation does not support it.
+     *
+     * @param value
+     *            Classification, like "CONFIDENTIAL"
+     */
+    void classification(String value) throws IOException;
+
+    /**
+     * Writes a text property.
+     *
+     * @param name
+     *            Property name
+     * @param value
+     *            Text value
+     */
+    void text(String name, String value) throws IOException;
+
+    /**
+     * Writes a property with a structured text value, like N or ADR.
+     *
+     * @param name
+     *            Property name
+     * @param values
+     *            Components of the value, {@code null} for empty components
+     */
+    void structured(String name, String... values) throws IOException;
+
+    /**
+     * Writes an URI property.
+     *
+     * @param name
+     *            Property name
+     * @param value
+     *            URI
+     */
+    void uri(String name, String value) throws IOException;
+
+    /**
+     * Writes a date property.
+     *
+     * @param name
+     *            Property name
+     * @param packedDate
+     *            Packed date, see {@link org.shredzone.pdbconverter.util.DateMath#packedDate(int)}
+     */
+    void date(String name, int packedDate) throws IOException;
+
+    /**
+     * Writes an email address.
+     *
+     * @param value
+     *            Email address
+     * @param pref
+     *            {@code true} if this is the preferred address
+     */
+    void email(String value, boolean pref) throws IOException;
+
+    /**
+     * Writes a telephone number.
+     *
+     * @param type
+     *            {@link PhoneType}, or {@code null} if unknown
+     * @param pref
+     *            {@code true} if this is the preferred number
+     * @param value
+     *            Telephone number
+     */
+    void telephone(PhoneType type, boolean pref, String value) throws IOException;
+
+}
@@ -0,0 +1,399 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes content lines, as used by iCalendar and vCard, to an {@link OutputStream}.
+ * <p>
+ * Lines are folded by counting the UTF-8 octets, so a folded line never exceeds the
+ * fold length, and multi-byte characters are never split. The writer is
+ * not thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc5545#section-3.1">RFC 5545, Section 3.1</a>
+ */
+public class ContentLineWriter implements Flushable {
+
+    /**
+     * Fold length used by ical4j's CalendarOutputter.
+     */
+    public static final int DEFAULT_FOLD_LENGTH = 73;
+
+    private final Utf8Buffer buf;
+    private final int foldLength;
+    private final boolean lenient;
+    private int column = 0;
+    private int deferred = -1;
+
+    /**
+     * Creates a new {@link ContentLineWriter} with the default fold length.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    public ContentLineWriter(OutputStream out) {
+        this(out, DEFAULT_FOLD_LENGTH);
+    }
+
+    /**
+     * Creates a new {@link ContentLineWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @param foldLength
+     *            Maximum number of octets per line, excluding the line break
+     */
+    public ContentLineWriter(OutputStream out, int foldLength) {
+        this(out, foldLength, false);
+    }
+
+    /**
+     * Creates a new {@link ContentLineWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @param foldLength
+     *            Maximum number of octets per line, excluding the line break
+     * @param lenient
+     *            {@code true} if a line is not folded if only a single ASCII
+     *            character exceeds the fold length at the end of the content line.
+     *            This is how the vCard exporter used to fold lines.
+     */
+    public ContentLineWriter(OutputStream out, int foldLength, boolean lenient) {
+        this.buf = new Utf8Buffer(out);
+        this.foldLength = foldLength;
+        this.lenient = lenient;
+    }
+
+    /**
+     * Writes a "BEGIN" line.
+     *
+     * @param component
+     *            Component name
+     * @return {@code this}
+     */
+    public ContentLineWriter begin(String component) throws IOException {
+        return name("BEGIN").value().raw(component).endLine();
+    }
+
+    /**
+     * Writes an "END" line.
+     *
+     * @param component
+     *            Component name
+     * @return {@code this}
+     */
+    public ContentLineWriter end(String component) throws IOException {
+        return name("END").value().raw(component).endLine();
+    }
+
+    /**
+     * Writes a complete line with a text value. The value is escaped.
+     *
+     * @param name
+     *            Property name
+     * @param text
+     *            Text value, {@code null} is written as empty value
+     * @return {@code this}
+     */
+    public ContentLineWriter property(String name, String text) throws IOException {
+        return name(name).value().text(text).endLine();
+    }
+
+    /**
+     * Starts a new line with the given property name.
+     *
+     * @param name
+     *            Property name
+     * @return {@code this}
+     */
+    public ContentLineWriter name(String name) throws IOException {
+        return raw(name);
+    }
+
+    /**
+     * Writes a property parameter. The value is not escaped.
+     *
+     * @param name
+     *            Parameter name
+     * @param value
+     *            Parameter value
+     * @return {@code this}
+     */
+    public ContentLineWriter parameter(String name, String value) throws IOException {
+        return raw(';').raw(name).raw('=').raw(value);
+    }
+
+    /**
+     * Writes the separator between property name and parameters, and the value.
+     *
+     * @return {@code this}
+     */
+    public ContentLineWriter value() throws IOException {
+        return raw(':');
+    }
+
+    /**
+     * Writes a text value. Backslashes, commas, semicolons and line breaks are
+     * escaped.
+     *
+     * @param text
+     *            Text to write, {@code null} is ignored
+     * @return {@code this}
+     */
+    public ContentLineWriter text(String text) throws IOException {
+        return escaped(text, true);
+    }
+
+    /**
+     * Writes a text list item. Like {@link #text(String)}, but commas are not escaped.
+     *
+     * @param text
+     *            Text to write, {@code null} is ignored
+     * @return {@code this}
+     */
+    public ContentLineWriter listText(String text) throws IOException {
+        return escaped(text, false);
+    }
+
+    /**
+     * Writes a string as it is, without escaping.
+     *
+     * @param str
+     *            String to write
+     * @return {@code this}
+     */
+    public ContentLineWriter raw(String str) throws IOException {
+        for (int ix = 0, len = str.length(); ix < len; ix++) {
+            ix = put(str, ix);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a single ASCII character as it is, without escaping.
+     *
+     * @param ch
+     *            Character to write
+     * @return {@code this}
+     */
+    public ContentLineWriter raw(char ch) throws IOException {
+        ascii(ch);
+        return this;
+    }
+
+    /**
+     * Writes a non-negative number, padded with leading zeros.
+     *
+     * @param value
+     *            Number to write
+     * @param width
+     *            Minimum number of digits
+     * @return {@code this}
+     */
+    public ContentLineWriter digits(int value, int width) throws IOException {
+        int len = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            len++;
+        }
+        for (int ix = len; ix < width; ix++) {
+            ascii('0');
+        }
+
+        int div = 1;
+        for (int ix = 1; ix < len; ix++) {
+            div *= 10;
+        }
+        for (; div > 0; div /= 10) {
+            ascii((char) ('0' + (value / div) % 10));
+        }
+        return this;
+    }
+
+    /**
+     * Terminates the current line.
+     *
+     * @return {@code this}
+     */
+    public ContentLineWriter endLine() throws IOException {
+        if (deferred >= 0) {
+            buf.octet(deferred);
+            deferred = -1;
+        }
+        buf.octet('\r');
+        buf.octet('\n');
+        column = 0;
+        return this;
+    }
+
+    /**
+     * Writes pre-rendered content lines, like the output of a component's
+     * {@code toString()} method. Lines must be terminated with CRLF. The lines are
+     * folded if necessary, but not escaped.
+     *
+     * @param lines
+     *            Content lines to write
+     * @return {@code this}
+     */
+    public ContentLineWriter lines(String lines) throws IOException {
+        for (int ix = 0, len = lines.length(); ix < len; ix++) {
+            char ch = lines.charAt(ix);
+            if (ch == '\r' && ix + 1 < len && lines.charAt(ix + 1) == '\n') {
+                endLine();
+                ix++;
+            } else {
+                ix = put(lines, ix);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Flushes the internal buffer to the {@link OutputStream}. The stream itself is
+     * flushed as well.
+     */
+    @Override
+    public void flush() throws IOException {
+        buf.flush();
+    }
+
+    /**
+     * Writes an escaped text.
+     *
+     * @param text
+     *            Text to write, {@code null} is ignored
+     * @param escapeComma
+     *            {@code true} if commas are to be escaped
+     * @return {@code this}
+     */
+    private ContentLineWriter escaped(String text, boolean escapeComma) throws IOException {
+        if (text == null) return this;
+
+        for (int ix = 0, len = text.length(); ix < len; ix++) {
+            char ch = text.charAt(ix);
+            switch (ch) {
+                case '\\':
+                case ';':
+                    ascii('\\');
+                    ascii(ch);
+                    break;
+
+                case ',':
+                    if (escapeComma) {
+                        ascii('\\');
+                    }
+                    ascii(ch);
+                    break;
+
+                case '\r':
+                    if (ix + 1 < len && text.charAt(ix + 1) == '\n') {
+                        ascii('\\');
+                        ascii('n');
+                        ix++;
+                    } else {
+                        ascii(ch);
+                    }
+                    break;
+
+                case '\n':
+                    ascii('\\');
+                    ascii('n');
+                    break;
+
+                default:
+                    ix = put(text, ix);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes the character at the given position. If it is a surrogate pair, both
+     * characters are written.
+     *
+     * @param str
+     *            String to read from
+     * @param ix
+     *            Index of the character
+     * @return Index of the last character that was consumed
+     */
+    private int put(String str, int ix) throws IOException {
+        char ch = str.charAt(ix);
+
+        if (ch < 0x80) {
+            ascii(ch);
+            return ix;
+        }
+
+        int cp = Character.codePointAt(str, ix);
+        if (Character.isSurrogate(ch) && cp == ch) {
+            // Unpaired surrogate, cannot be encoded
+            ascii('?');
+            return ix;
+        }
+
+        fold(Utf8Buffer.length(cp));
+        buf.character(cp);
+        return ix + Character.charCount(cp) - 1;
+    }
+
+    /**
+     * Writes an ASCII character.
+     *
+     * @param ch
+     *            Character to write, must be below 0x80
+     */
+    private void ascii(char ch) throws IOException {
+        if (lenient && deferred < 0 && column == foldLength) {
+            // Fold later, if another octet follows on this line
+            column++;
+            deferred = ch;
+            return;
+        }
+        fold(1);
+        buf.ascii(ch);
+    }
+
+    /**
+     * Folds the line if the given number of octets would not fit into the current
+     * line, and reserves the octets.
+     *
+     * @param octets
+     *            Number of octets to be written
+     */
+    private void fold(int octets) throws IOException {
+        if (deferred >= 0) {
+            buf.ascii("\r\n ");
+            buf.octet(deferred);
+            deferred = -1;
+            column = 2;
+        }
+        if (column + octets > foldLength) {
+            buf.ascii("\r\n ");
+            column = 1;
+        }
+        column += octets;
+    }
+
+}
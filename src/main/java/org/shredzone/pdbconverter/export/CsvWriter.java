@@ -0,0 +1,218 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A minimal streaming CSV writer.
+ * <p>
+ * Fields are separated by commas, and records are terminated by CRLF. Fields containing commas,
+ * quotes or line breaks are quoted as required by RFC 4180. The quoting is decided
+ * while the field is encoded, so each field is only read once. The writer is not
+ * thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc4180">RFC 4180</a>
+ */
+public class CsvWriter implements Flushable {
+
+    private final Utf8Buffer buf;
+    private boolean first = true;
+
+    /**
+     * Creates a new {@link CsvWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    public CsvWriter(OutputStream out) {
+        this.buf = new Utf8Buffer(out);
+    }
+
+    /**
+     * Writes a string field.
+     *
+     * @param value
+     *            String to write, {@code null} writes an empty field
+     * @return {@code this}
+     */
+    public CsvWriter field(String value) throws IOException {
+        separator();
+        if (value == null || value.isEmpty()) {
+            return this;
+        }
+
+        // Each char takes 3 octets at most, plus the enclosing quotes
+        long maxLength = 3L * value.length() + 2;
+        if (buf.remaining() < maxLength) {
+            buf.drain();
+        }
+
+        if (buf.remaining() < maxLength) {
+            // Too long for the buffer, always quote it
+            buf.ascii('"');
+            encode(value);
+            buf.ascii('"');
+            return this;
+        }
+
+        // Write the opening quote, and drop it again if no quotes are needed
+        int start = buf.position();
+        buf.ascii('"');
+        if (encode(value)) {
+            buf.ascii('"');
+        } else {
+            buf.remove(start);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a number field.
+     *
+     * @param value
+     *            Number to write
+     * @return {@code this}
+     */
+    public CsvWriter field(long value) throws IOException {
+        separator();
+        buf.number(value);
+        return this;
+    }
+
+    /**
+     * Writes a boolean field, as "true" or "false".
+     *
+     * @param value
+     *            Boolean to write
+     * @return {@code this}
+     */
+    public CsvWriter field(boolean value) throws IOException {
+        separator();
+        buf.ascii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes a date field, in the format "yyyy-MM-dd".
+     *
+     * @param year
+     *            Year, 0 to 9999
+     * @param month
+     *            Month, 1 = January
+     * @param day
+     *            Day of month, starting from 1
+     * @return {@code this}
+     */
+    public CsvWriter date(int year, int month, int day) throws IOException {
+        separator();
+        buf.digits(year, 4);
+        buf.ascii('-');
+        buf.digits(month, 2);
+        buf.ascii('-');
+        buf.digits(day, 2);
+        return this;
+    }
+
+    /**
+     * Writes a time field, in the format "HH:mm".
+     *
+     * @param hour
+     *            Hour, 0 to 23
+     * @param minute
+     *            Minute, 0 to 59
+     * @return {@code this}
+     */
+    public CsvWriter time(int hour, int minute) throws IOException {
+        separator();
+        buf.digits(hour, 2);
+        buf.ascii(':');
+        buf.digits(minute, 2);
+        return this;
+    }
+
+    /**
+     * Terminates the current record.
+     *
+     * @return {@code this}
+     */
+    public CsvWriter endRecord() throws IOException {
+        buf.ascii('\r');
+        buf.ascii('\n');
+        first = true;
+        return this;
+    }
+
+    /**
+     * Flushes the internal buffer to the {@link OutputStream}. The stream itself is
+     * flushed as well.
+     */
+    @Override
+    public void flush() throws IOException {
+        buf.flush();
+    }
+
+    /**
+     * Writes a comma if the field is not the first one of the record.
+     */
+    private void separator() throws IOException {
+        if (!first) {
+            buf.ascii(',');
+        }
+        first = false;
+    }
+
+    /**
+     * Encodes a string to UTF-8, doubling all quotes. Unpaired surrogates are
+     * replaced by U+FFFD.
+     *
+     * @param str
+     *            String to write
+     * @return {@code true} if the string must be quoted
+     */
+    private boolean encode(String str) throws IOException {
+        boolean quote = false;
+        for (int ix = 0, len = str.length(); ix < len; ix++) {
+            char ch = str.charAt(ix);
+            if (ch < 0x80) {
+                if (ch == '"') {
+                    buf.ascii('"');
+                    quote = true;
+                } else if (ch == ',' || ch == '\r' || ch == '\n') {
+                    quote = true;
+                }
+                buf.ascii(ch);
+            } else {
+                int cp = Character.codePointAt(str, ix);
+                if (Character.isSurrogate(ch) && cp == ch) {
+                    buf.character(0xFFFD);
+                } else {
+                    buf.character(cp);
+                    ix += Character.charCount(cp) - 1;
+                }
+            }
+        }
+        return quote;
+    }
+
+}
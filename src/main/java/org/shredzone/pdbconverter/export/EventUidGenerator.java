@@ -0,0 +1,134 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+
+/**
+ * Generates deterministic UIDs for iCalendar events.
+ * <p>
+ * Other than ical4j's UidGenerator, the UIDs are not random, so exporting the same
+ * database again gives the same UIDs, and calendar applications will update the
+ * events on re-import instead of duplicating them. No host name lookup is done.
+ * <p>
+ * The UID is derived from the identity of the record, which is its start date, start
+ * time and description. Inserting or deleting records does not change the UIDs of the
+ * other records, and editing the end time, repetition, location, note or category of
+ * an event keeps its UID. If the database has a name, the database's creator and
+ * name are part of the UID as well. Records with the same identity are distinguished
+ * by the order of their occurrence.
+ * <p>
+ * The generator is not thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class EventUidGenerator {
+
+    static final String DOMAIN = "@pdbconverter.shredzone.org";
+
+    private final String prefix;
+    private final Map<String, Integer> occurrences = new HashMap<>();
+    private final StringBuilder key = new StringBuilder();
+
+    /**
+     * Creates a new {@link EventUidGenerator} for the given database.
+     *
+     * @param database
+     *            {@link PdbDatabase} the records are taken from
+     */
+    public EventUidGenerator(PdbDatabase<?, ?> database) {
+        if (database.getName() != null) {
+            prefix = database.getCreator() + '/' + database.getName() + '/';
+        } else {
+            prefix = "";
+        }
+    }
+
+    /**
+     * Generates the UID of a record. Records must be passed in the order of the
+     * database.
+     *
+     * @param schedule
+     *            {@link ScheduleRecord} to generate an UID for
+     * @return UID
+     */
+    public String generateUid(ScheduleRecord schedule) {
+        key.setLength(0);
+        key.append(prefix);
+        appendIdentity(schedule);
+
+        String content = key.toString();
+        Integer count = occurrences.get(content);
+        count = (count != null ? count + 1 : 0);
+        occurrences.put(content, count);
+        key.append('#').append(count);
+
+        byte[] name = key.toString().getBytes(StandardCharsets.UTF_8);
+        return UUID.nameUUIDFromBytes(name).toString() + DOMAIN;
+    }
+
+    /**
+     * Appends the stable identity fields of a {@link ScheduleRecord} to the key.
+     *
+     * @param schedule
+     *            {@link ScheduleRecord} to append
+     */
+    private void appendIdentity(ScheduleRecord schedule) {
+        appendDate(schedule.getSchedule());
+        appendTime(schedule.getStartTime());
+        key.append(schedule.getDescription());
+    }
+
+    /**
+     * Appends a {@link ShortDate} to the key.
+     *
+     * @param date
+     *            {@link ShortDate} to append, may be {@code null}
+     */
+    private void appendDate(ShortDate date) {
+        if (date != null) {
+            key.append(date.getYear()).append('-').append(date.getMonth())
+               .append('-').append(date.getDay());
+        }
+        key.append('|');
+    }
+
+    /**
+     * Appends a {@link ShortTime} to the key.
+     *
+     * @param time
+     *            {@link ShortTime} to append, may be {@code null}
+     */
+    private void appendTime(ShortTime time) {
+        if (time != null) {
+            key.append(time.getHour()).append(':').append(time.getMinute());
+        }
+        key.append('|');
+    }
+
+}
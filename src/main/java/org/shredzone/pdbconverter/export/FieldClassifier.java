@@ -0,0 +1,324 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * Classifies the content of free text fields, like phone and custom fields of an
+ * address, without using regular expressions.
+ * <p>
+ * A field is classified in a single scan, in this order:
+ * <ol>
+ * <li>{@link Type#EMAIL}: at least one character except "@", followed by "@" and at
+ * least one letter, digit, "." or "-" until the end.</li>
+ * <li>{@link Type#URL}: starts with "http://", "https://" or "ftp://" (ignoring case),
+ * and does not contain line breaks.</li>
+ * <li>{@link Type#DATE}: matches one of the configured date formats.</li>
+ * <li>{@link Type#PHONE}: contains at least one digit, and only digits, spaces and
+ * {@code + - / ( ) . # *}.</li>
+ * <li>{@link Type#OTHER}: anything else.</li>
+ * </ol>
+ * The classifier is not thread-safe, as it keeps the date that was found last.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class FieldClassifier {
+
+    private static final String[] URL_PREFIXES = { "http://", "https://", "ftp://" };
+
+    private static final char YEAR = 'y';
+    private static final char MONTH = 'M';
+    private static final char DAY = 'd';
+
+    private char[][] dateFormats = new char[0][];
+    private int date;
+
+    /**
+     * Creates a new {@link FieldClassifier} without date formats.
+     */
+    public FieldClassifier() {
+        // default constructor
+    }
+
+    /**
+     * Creates a new {@link FieldClassifier} with the date formats of another
+     * {@link FieldClassifier}. Use this for getting a classifier for another thread.
+     *
+     * @param template
+     *            {@link FieldClassifier} to copy the date formats from
+     */
+    public FieldClassifier(FieldClassifier template) {
+        this.dateFormats = template.dateFormats;
+    }
+
+    /**
+     * Field types.
+     */
+    public static enum Type {
+        EMAIL, URL, DATE, PHONE, OTHER;
+    }
+
+    /**
+     * Sets the date formats to be detected. Formats consist of "yyyy" for the year,
+     * "M" or "MM" for the month, and "d" or "dd" for the day. Month and day accept one
+     * or two digits. All other characters must match literally, e.g. "dd.MM.yyyy".
+     *
+     * @param formats
+     *            Date formats, in the order they are tried
+     * @throws IllegalArgumentException
+     *             if a format is invalid
+     */
+    public void setDateFormats(List<String> formats) {
+        List<char[]> compiled = new ArrayList<>(formats.size());
+        for (String format : formats) {
+            compiled.add(compile(format));
+        }
+        dateFormats = compiled.toArray(new char[compiled.size()][]);
+    }
+
+    /**
+     * Classifies a field.
+     *
+     * @param value
+     *            Field content, must not be {@code null}
+     * @return {@link Type} of the field
+     */
+    public Type classify(String value) {
+        int len = value.length();
+
+        int atPos = -1;
+        boolean domain = false;
+        boolean lineBreak = false;
+        boolean phone = true;
+        boolean digit = false;
+
+        for (int ix = 0; ix < len; ix++) {
+            char ch = value.charAt(ix);
+
+            if (ch == '@') {
+                // Only a single "@" is accepted, and it must not be the first character
+                domain = (atPos < 0 && ix > 0);
+                atPos = ix;
+            } else if (atPos >= 0 && domain) {
+                domain = isDomainChar(ch);
+            }
+
+            if (ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029') {
+                lineBreak = true;
+            }
+
+            if (ch >= '0' && ch <= '9') {
+                digit = true;
+            } else if (phone && !isPhoneChar(ch)) {
+                phone = false;
+            }
+        }
+
+        if (domain && atPos < len - 1) {
+            return Type.EMAIL;
+        }
+
+        if (!lineBreak) {
+            for (String prefix : URL_PREFIXES) {
+                if (startsWithIgnoreCase(value, prefix)) {
+                    return Type.URL;
+                }
+            }
+        }
+
+        for (char[] format : dateFormats) {
+            if (matchDate(format, value)) {
+                return Type.DATE;
+            }
+        }
+
+        if (phone && digit) {
+            return Type.PHONE;
+        }
+
+        return Type.OTHER;
+    }
+
+    /**
+     * Returns the date of the last field that was classified as {@link Type#DATE}.
+     *
+     * @return Packed date, see {@link DateMath#packedDate(int)}
+     */
+    public int getDate() {
+        return date;
+    }
+
+    /**
+     * Compiles a date format. Each field is represented by a single character, all
+     * other characters are literals.
+     *
+     * @param format
+     *            Date format
+     * @return Compiled date format
+     */
+    private static char[] compile(String format) {
+        StringBuilder sb = new StringBuilder(format.length());
+        boolean year = false, month = false, day = false;
+
+        for (int ix = 0, len = format.length(); ix < len; ) {
+            char ch = format.charAt(ix);
+            int run = 1;
+            while (ix + run < len && format.charAt(ix + run) == ch) {
+                run++;
+            }
+
+            if (ch == YEAR) {
+                if (run != 4 || year) {
+                    throw new IllegalArgumentException("Bad year in date format: " + format);
+                }
+                year = true;
+                sb.append(YEAR);
+            } else if (ch == MONTH) {
+                if (run > 2 || month) {
+                    throw new IllegalArgumentException("Bad month in date format: " + format);
+                }
+                month = true;
+                sb.append(MONTH);
+            } else if (ch == DAY) {
+                if (run > 2 || day) {
+                    throw new IllegalArgumentException("Bad day in date format: " + format);
+                }
+                day = true;
+                sb.append(DAY);
+            } else {
+                for (int r = 0; r < run; r++) {
+                    sb.append(ch);
+                }
+            }
+
+            ix += run;
+        }
+
+        if (!(year && month && day)) {
+            throw new IllegalArgumentException("Incomplete date format: " + format);
+        }
+
+        char[] result = new char[sb.length()];
+        sb.getChars(0, sb.length(), result, 0);
+        return result;
+    }
+
+    /**
+     * Matches a value against a compiled date format. If it matches and is a valid
+     * date, it is stored as last date.
+     *
+     * @param format
+     *            Compiled date format
+     * @param value
+     *            Value to match
+     * @return {@code true} if the value is a date of that format
+     */
+    private boolean matchDate(char[] format, String value) {
+        int len = value.length();
+        int pos = 0;
+        int year = 0, month = 0, day = 0;
+
+        for (char token : format) {
+            if (token == YEAR || token == MONTH || token == DAY) {
+                int max = (token == YEAR ? 4 : 2);
+                int min = (token == YEAR ? 4 : 1);
+                int number = 0;
+                int digits = 0;
+                while (digits < max && pos < len) {
+                    char ch = value.charAt(pos);
+                    if (ch < '0' || ch > '9') break;
+                    number = number * 10 + (ch - '0');
+                    digits++;
+                    pos++;
+                }
+                if (digits < min) {
+                    return false;
+                }
+
+                switch (token) {
+                    case YEAR:  year = number;  break;
+                    case MONTH: month = number; break;
+                    default:    day = number;
+                }
+
+            } else {
+                if (pos >= len || value.charAt(pos) != token) {
+                    return false;
+                }
+                pos++;
+            }
+        }
+
+        if (pos != len || month < 1 || month > 12 || day < 1
+                        || day > DateMath.lengthOfMonth(year, month)) {
+            return false;
+        }
+
+        date = (year * 100 + month) * 100 + day;
+        return true;
+    }
+
+    /**
+     * Checks if the value starts with the given prefix. Only ASCII letters are
+     * compared ignoring their case.
+     *
+     * @param value
+     *            Value to check
+     * @param prefix
+     *            Prefix, in lower case
+     * @return {@code true} if the value starts with the prefix
+     */
+    private static boolean startsWithIgnoreCase(String value, String prefix) {
+        if (value.length() < prefix.length()) {
+            return false;
+        }
+        for (int ix = 0; ix < prefix.length(); ix++) {
+            char ch = value.charAt(ix);
+            if (ch >= 'A' && ch <= 'Z') {
+                ch = (char) (ch + ('a' - 'A'));
+            }
+            if (ch != prefix.charAt(ix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the character is accepted in the domain part of an email address.
+     */
+    private static boolean isDomainChar(char ch) {
+        return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')
+                        || ch == '.' || ch == '-';
+    }
+
+    /**
+     * Checks if the character is accepted in a phone number, besides digits.
+     */
+    private static boolean isPhoneChar(char ch) {
+        return ch == ' ' || ch == '+' || ch == '-' || ch == '/' || ch == '(' || ch == ')'
+                        || ch == '.' || ch == '#' || ch == '*';
+    }
+
+}
@@ -0,0 +1,334 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.shredzone.commons.pdb.CalendarFactory;
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.pdbconverter.util.DateMath;
+import org.shredzone.pdbconverter.util.Occurrences;
+
+/**
+ * Writes the busy times of a {@link ScheduleRecord} database as iCalendar VFREEBUSY
+ * component.
+ * <p>
+ * All occurrences of the events within the date range are expanded, honoring repeats
+ * and exceptions. The occurrences of all events are merged in chronological order,
+ * and overlapping intervals are joined. Only the next occurrence of each event is
+ * kept in memory, so even decades of repeating events can be processed.
+ * <p>
+ * Events without starting and ending time do not block any time, and are ignored.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc5545#section-3.6.4">RFC 5545, Section 3.6.4</a>
+ */
+public class FreeBusyExporter extends AbstractExporter<ScheduleRecord, CategoryAppInfo> {
+
+    private CalendarFactory cf = CalendarFactory.getInstance();
+    private Calendar from;
+    private Calendar until;
+
+    /**
+     * Sets the date range of the free/busy times. It is required.
+     *
+     * @param from
+     *            Start of date range
+     * @param until
+     *            End of date range, exclusive
+     */
+    public void setRange(Calendar from, Calendar until) {
+        this.from = from;
+        this.until = until;
+    }
+
+    /**
+     * Writes the busy times of the {@link ScheduleRecord} database as iCalendar to
+     * the given {@link OutputStream}.
+     *
+     * @param database
+     *            {@link ScheduleRecord} {@link PdbDatabase} to write
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    @Override
+    public void export(PdbDatabase<ScheduleRecord, CategoryAppInfo> database, OutputStream out)
+    throws IOException {
+        if (from == null || until == null) {
+            throw new IOException("Free/busy times require a date range (--from and --until)");
+        }
+        if (until.before(from)) {
+            throw new IOException("Date range ends before start");
+        }
+
+        TimeZone tz = cf.getTimeZone();
+        long start = from.getTimeInMillis();
+        long end = until.getTimeInMillis();
+
+        ContentLineWriter w = new ContentLineWriter(out);
+
+        w.begin("VCALENDAR");
+        w.property("PRODID", "-//Shredzone.org/pdbconverter 1.0//EN");
+        w.property("VERSION", "2.0");
+        w.property("METHOD", "PUBLISH");
+
+        w.begin("VFREEBUSY");
+
+        w.name("DTSTAMP").value();
+        writeUtcDateTime(w, System.currentTimeMillis());
+        w.endLine();
+
+        w.name("DTSTART").value();
+        writeUtcDateTime(w, start);
+        w.endLine();
+
+        w.name("DTEND").value();
+        writeUtcDateTime(w, end);
+        w.endLine();
+
+        writeBusyTimes(w, createQueue(database.getRecords(), tz, start, end), start, end);
+
+        w.property("UID", generateUid(database, start, end));
+
+        w.end("VFREEBUSY");
+        w.end("VCALENDAR");
+        w.flush();
+    }
+
+    /**
+     * Creates a queue containing a cursor of every accepted event that occurs within
+     * the date range.
+     *
+     * @param records
+     *            {@link ScheduleRecord} to be exported
+     * @param tz
+     *            {@link TimeZone} of the schedules
+     * @param start
+     *            Start of date range
+     * @param end
+     *            End of date range, exclusive
+     * @return Queue of {@link Cursor}, ordered by the start of their next occurrence
+     */
+    private PriorityQueue<Cursor> createQueue(List<ScheduleRecord> records, TimeZone tz,
+            long start, long end) {
+        // The last day an occurrence can start on, in any time zone
+        int lastDay = DateMath.epochDayOf(end) + 1;
+
+        PriorityQueue<Cursor> queue = new PriorityQueue<>();
+        for (ScheduleRecord schedule : records) {
+            if (!isAccepted(schedule) || schedule.getSchedule() == null
+                            || schedule.getStartTime() == null || schedule.getEndTime() == null) {
+                continue;
+            }
+
+            Cursor cursor = new Cursor(schedule, lastDay, tz);
+            if (cursor.advance(start, end)) {
+                queue.add(cursor);
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Writes the busy times of all occurrences. Overlapping and adjacent intervals are
+     * joined. All periods are written into a single FREEBUSY property.
+     *
+     * @param w
+     *            {@link ContentLineWriter} to write to
+     * @param queue
+     *            Queue of {@link Cursor}
+     * @param start
+     *            Start of date range
+     * @param end
+     *            End of date range, exclusive
+     */
+    private void writeBusyTimes(ContentLineWriter w, PriorityQueue<Cursor> queue,
+            long start, long end) throws IOException {
+        boolean first = true;
+        boolean busy = false;
+        long busyStart = 0;
+        long busyEnd = 0;
+
+        while (!queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+
+            if (busy && cursor.start <= busyEnd) {
+                busyEnd = Math.max(busyEnd, cursor.end);
+            } else {
+                if (busy) {
+                    writePeriod(w, busyStart, busyEnd, first);
+                    first = false;
+                }
+                busyStart = cursor.start;
+                busyEnd = cursor.end;
+                busy = true;
+            }
+
+            if (cursor.advance(start, end)) {
+                queue.add(cursor);
+            }
+        }
+
+        if (busy) {
+            writePeriod(w, busyStart, busyEnd, first);
+            first = false;
+        }
+
+        if (!first) {
+            w.endLine();
+        }
+    }
+
+    /**
+     * Writes a busy period.
+     *
+     * @param w
+     *            {@link ContentLineWriter} to write to
+     * @param start
+     *            Start of the period
+     * @param end
+     *            End of the period
+     * @param first
+     *            {@code true} if this is the first period of the property
+     */
+    private void writePeriod(ContentLineWriter w, long start, long end, boolean first)
+    throws IOException {
+        if (first) {
+            w.name("FREEBUSY").parameter("FBTYPE", "BUSY").value();
+        } else {
+            w.raw(',');
+        }
+        writeUtcDateTime(w, start);
+        w.raw('/');
+        writeUtcDateTime(w, end);
+    }
+
+    /**
+     * Writes an instant as UTC iCalendar DATE-TIME value.
+     *
+     * @param w
+     *            {@link ContentLineWriter} to write to
+     * @param millis
+     *            Instant to write
+     */
+    private void writeUtcDateTime(ContentLineWriter w, long millis) throws IOException {
+        int second = DateMath.secondOfDayOf(millis);
+        w.digits(DateMath.packedDate(DateMath.epochDayOf(millis)), 8)
+         .raw('T')
+         .digits(second / 3600, 2)
+         .digits(second / 60 % 60, 2)
+         .digits(second % 60, 2)
+         .raw('Z');
+    }
+
+    /**
+     * Generates a deterministic UID for the free/busy times of the database and the
+     * date range.
+     */
+    private String generateUid(PdbDatabase<?, ?> database, long start, long end) {
+        String key = "freebusy/" + database.getCreator() + '/' + database.getName()
+                        + '/' + start + '/' + end;
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString()
+                        + EventUidGenerator.DOMAIN;
+    }
+
+    /**
+     * Iterates over the busy intervals of a single event.
+     */
+    private static class Cursor implements Comparable<Cursor> {
+        private final Occurrences occurrences;
+        private final TimeZone tz;
+        private final int startTime;
+        private final int endTime;
+        private long start;
+        private long end;
+
+        /**
+         * Creates a new {@link Cursor}.
+         *
+         * @param schedule
+         *            {@link ScheduleRecord} with starting and ending time
+         * @param lastDay
+         *            Last epoch day of interest
+         * @param tz
+         *            {@link TimeZone} of the schedule
+         */
+        public Cursor(ScheduleRecord schedule, int lastDay, TimeZone tz) {
+            this.occurrences = new Occurrences(schedule, lastDay);
+            this.tz = tz;
+
+            int startMinute = DateMath.minuteOfDay(schedule.getStartTime());
+            int endMinute = DateMath.minuteOfDay(schedule.getEndTime());
+
+            // If ending time is before starting time, the event ends tomorrow
+            if (endMinute < startMinute) {
+                endMinute += DateMath.MINUTES_PER_DAY;
+            }
+
+            this.startTime = startMinute;
+            this.endTime = endMinute;
+        }
+
+        /**
+         * Moves to the next occurrence that intersects with the date range. The
+         * interval is clipped to the date range.
+         *
+         * @param rangeStart
+         *            Start of date range
+         * @param rangeEnd
+         *            End of date range, exclusive
+         * @return {@code true} if there is such an occurrence, {@code false} if there
+         *         are no further occurrences
+         */
+        public boolean advance(long rangeStart, long rangeEnd) {
+            while (occurrences.hasNext()) {
+                int day = occurrences.next();
+                long occStart = DateMath.toMillis(day, startTime, tz);
+                long occEnd = DateMath.toMillis(day, endTime, tz);
+
+                if (occStart >= rangeEnd) {
+                    return false;
+                }
+
+                if (occEnd > rangeStart && occEnd > occStart) {
+                    start = Math.max(occStart, rangeStart);
+                    end = Math.min(occEnd, rangeEnd);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int compareTo(Cursor o) {
+            return Long.compare(start, o.start);
+        }
+    }
+
+}
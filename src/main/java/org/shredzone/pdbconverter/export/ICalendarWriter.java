@@ -0,0 +1,146 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * A {@link CalendarWriter} that writes iCalendar content lines.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc5545">RFC 5545</a>
+ */
+public class ICalendarWriter implements CalendarWriter {
+
+    private final ContentLineWriter w;
+
+    /**
+     * Creates a new {@link ICalendarWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    public ICalendarWriter(OutputStream out) {
+        this.w = new ContentLineWriter(out);
+    }
+
+    @Override
+    public void begin(String component) throws IOException {
+        w.begin(component);
+    }
+
+    @Override
+    public void end(String component) throws IOException {
+        w.end(component);
+    }
+
+    @Override
+    public void text(String name, String value) throws IOException {
+        w.property(name, value);
+    }
+
+    @Override
+    public void textListItem(String name, String value) throws IOException {
+        w.name(name).value().listText(value).endLine();
+    }
+
+    @Override
+    public void date(String name, int epochDay) throws IOException {
+        w.name(name).parameter("VALUE", "DATE").value();
+        writeDate(epochDay);
+        w.endLine();
+    }
+
+    @Override
+    public void dates(String name, int[] epochDays, int count) throws IOException {
+        w.name(name).parameter("VALUE", "DATE").value();
+        for (int ix = 0; ix < count; ix++) {
+            if (ix > 0) {
+                w.raw(',');
+            }
+            writeDate(epochDays[ix]);
+        }
+        w.endLine();
+    }
+
+    @Override
+    public void localDateTime(String name, String tzid, long localMillis) throws IOException {
+        w.name(name).parameter("TZID", tzid).value();
+        writeDateTime(localMillis);
+        w.endLine();
+    }
+
+    @Override
+    public void utcDateTime(String name, long millis) throws IOException {
+        w.name(name).value();
+        writeDateTime(millis);
+        w.raw('Z').endLine();
+    }
+
+    @Override
+    public void duration(String name, String duration) throws IOException {
+        w.name(name).value().raw(duration).endLine();
+    }
+
+    @Override
+    public void recur(String name, String rule) throws IOException {
+        w.name(name).value().raw(rule).endLine();
+    }
+
+    @Override
+    public void timeZone(String tzid, boolean compact) throws IOException {
+        w.lines(compact ? TimeZoneCache.getCompactVTimeZone(tzid) : TimeZoneCache.getVTimeZone(tzid));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        w.flush();
+    }
+
+    /**
+     * Writes an epoch day as iCalendar DATE value.
+     *
+     * @param epochDay
+     *            Epoch day to write
+     */
+    private void writeDate(int epochDay) throws IOException {
+        w.digits(DateMath.packedDate(epochDay), 8);
+    }
+
+    /**
+     * Writes milliseconds since epoch as iCalendar DATE-TIME value, without time zone
+     * designator.
+     *
+     * @param millis
+     *            Milliseconds since epoch
+     */
+    private void writeDateTime(long millis) throws IOException {
+        int second = DateMath.secondOfDayOf(millis);
+        writeDate(DateMath.epochDayOf(millis));
+        w.raw('T')
+         .digits(second / 3600, 2)
+         .digits(second / 60 % 60, 2)
+         .digits(second % 60, 2);
+    }
+
+}
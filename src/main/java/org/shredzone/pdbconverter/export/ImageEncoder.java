@@ -0,0 +1,495 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Encodes Notepad images into the configured image format.
+ * <p>
+ * The images are passed in as PNG, as delivered by the Notepad converter. If the
+ * format is {@link Format#PNG} and no PNG filter is set, the PNG is returned
+ * unchanged. Otherwise the image is decoded and encoded again. Bilevel images are
+ * encoded as 1-bit PNG, all other images as 8-bit RGB.
+ * <p>
+ * An {@link ImageEncoder} is immutable once it is configured, so a single instance
+ * can be used by multiple threads.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ImageEncoder {
+
+    /**
+     * Image formats.
+     */
+    public enum Format {
+        /**
+         * PNG image.
+         */
+        PNG(".png"),
+
+        /**
+         * Binary 1-bit PBM image. Colors are reduced to black and white.
+         */
+        PBM(".pbm"),
+
+        /**
+         * Uncompressed 8-bit RGB baseline TIFF image.
+         */
+        TIFF(".tif");
+
+        private final String suffix;
+
+        private Format(String suffix) {
+            this.suffix = suffix;
+        }
+
+        /**
+         * Gets the file name suffix of this format, including the dot.
+         */
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+
+    /**
+     * PNG filter strategies.
+     */
+    public enum Filter {
+        /**
+         * No filter.
+         */
+        NONE,
+
+        /**
+         * Difference to the left pixel.
+         */
+        SUB,
+
+        /**
+         * Difference to the pixel above.
+         */
+        UP,
+
+        /**
+         * Difference to the average of the left pixel and the pixel above.
+         */
+        AVERAGE,
+
+        /**
+         * Paeth predictor.
+         */
+        PAETH,
+
+        /**
+         * The filter giving the smallest sum of absolute differences, chosen for
+         * each row.
+         */
+        ADAPTIVE;
+    }
+
+    private static final byte[] PNG_SIGNATURE = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+
+    private static final int BLACK = 0x000000;
+    private static final int WHITE = 0xFFFFFF;
+
+    private Format format = Format.PNG;
+    private Filter filter;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Sets the image format. Default is {@link Format#PNG}.
+     *
+     * @param format
+     *            {@link Format} to encode to
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Gets the image format.
+     *
+     * @return {@link Format} to encode to
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the PNG filter strategy. Default is {@code null}, which keeps PNG images
+     * unchanged.
+     *
+     * @param filter
+     *            {@link Filter}, or {@code null}
+     */
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Sets the deflate level of encoded PNG images.
+     *
+     * @param level
+     *            Deflate level, see {@link Deflater}
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Encodes an image.
+     *
+     * @param png
+     *            PNG image to encode
+     * @return Encoded image
+     * @throws IOException
+     *             if the PNG image could not be decoded
+     */
+    public byte[] encode(byte[] png) throws IOException {
+        if (format == Format.PNG && filter == null) {
+            return png;
+        }
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            throw new IOException("Could not decode Notepad image");
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] rgb = image.getRGB(0, 0, width, height, null, 0, width);
+        for (int ix = 0; ix < rgb.length; ix++) {
+            rgb[ix] &= WHITE;
+        }
+
+        switch (format) {
+            case PNG:  return encodePng(rgb, width, height);
+            case PBM:  return encodePbm(rgb, width, height);
+            case TIFF: return encodeTiff(rgb, width, height);
+            default:   throw new IllegalStateException("unknown format " + format);
+        }
+    }
+
+    /**
+     * Encodes a PNG image.
+     */
+    private byte[] encodePng(int[] rgb, int width, int height) throws IOException {
+        boolean bilevel = true;
+        for (int ix = 0; ix < rgb.length && bilevel; ix++) {
+            bilevel = (rgb[ix] == BLACK || rgb[ix] == WHITE);
+        }
+
+        int bpp = (bilevel ? 1 : 3);
+        int stride = (bilevel ? (width + 7) / 8 : width * 3);
+
+        byte[] previous = new byte[stride];
+        byte[] current = new byte[stride];
+        byte[][] filtered = new byte[5][stride + 1];
+
+        ByteArrayOutputStream idat = new ByteArrayOutputStream(height * (stride + 1) / 4 + 64);
+        byte[] buffer = new byte[8192];
+        Deflater deflater = new Deflater(level);
+        try {
+            for (int y = 0; y < height; y++) {
+                int row = y * width;
+                if (bilevel) {
+                    Arrays.fill(current, (byte) 0);
+                    for (int x = 0; x < width; x++) {
+                        if (rgb[row + x] == WHITE) {
+                            current[x >> 3] |= (byte) (0x80 >> (x & 7));
+                        }
+                    }
+                } else {
+                    for (int x = 0, pos = 0; x < width; x++) {
+                        int pixel = rgb[row + x];
+                        current[pos++] = (byte) (pixel >> 16);
+                        current[pos++] = (byte) (pixel >> 8);
+                        current[pos++] = (byte) pixel;
+                    }
+                }
+
+                byte[] line = filterRow(current, previous, bpp, filtered);
+                deflater.setInput(line);
+                while (!deflater.needsInput()) {
+                    idat.write(buffer, 0, deflater.deflate(buffer));
+                }
+
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                idat.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(idat.size() + 64);
+        out.write(PNG_SIGNATURE);
+
+        byte[] ihdr = new byte[13];
+        int32(ihdr, 0, width);
+        int32(ihdr, 4, height);
+        ihdr[8] = (byte) (bilevel ? 1 : 8);         // bit depth
+        ihdr[9] = (byte) (bilevel ? 0 : 2);         // grayscale or RGB
+        writeChunk(out, "IHDR", ihdr);
+        writeChunk(out, "IDAT", idat.toByteArray());
+        writeChunk(out, "IEND", new byte[0]);
+        return out.toByteArray();
+    }
+
+    /**
+     * Filters a PNG row.
+     *
+     * @param current
+     *            Current row
+     * @param previous
+     *            Previous row, all zero for the first row
+     * @param bpp
+     *            Bytes per complete pixel, at least 1
+     * @param filtered
+     *            Buffers for the filtered rows, one per filter type
+     * @return Filtered row, starting with the filter type
+     */
+    private byte[] filterRow(byte[] current, byte[] previous, int bpp, byte[][] filtered) {
+        if (filter != Filter.ADAPTIVE) {
+            int type = filter.ordinal();
+            applyFilter(type, current, previous, bpp, filtered[type]);
+            return filtered[type];
+        }
+
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type < 5; type++) {
+            byte[] line = filtered[type];
+            applyFilter(type, current, previous, bpp, line);
+            long sum = 0;
+            for (int ix = 1; ix < line.length; ix++) {
+                sum += Math.abs((int) line[ix]);
+            }
+            if (sum < bestSum) {
+                best = type;
+                bestSum = sum;
+            }
+        }
+        return filtered[best];
+    }
+
+    /**
+     * Applies a PNG filter type to a row.
+     */
+    private static void applyFilter(int type, byte[] current, byte[] previous, int bpp,
+                byte[] target) {
+        target[0] = (byte) type;
+        for (int ix = 0; ix < current.length; ix++) {
+            int x = current[ix] & 0xFF;
+            int a = (ix >= bpp ? current[ix - bpp] & 0xFF : 0);
+            int b = previous[ix] & 0xFF;
+            int c = (ix >= bpp ? previous[ix - bpp] & 0xFF : 0);
+
+            int predictor;
+            switch (type) {
+                case 0:  predictor = 0; break;
+                case 1:  predictor = a; break;
+                case 2:  predictor = b; break;
+                case 3:  predictor = (a + b) >> 1; break;
+                default: predictor = paeth(a, b, c); break;
+            }
+            target[ix + 1] = (byte) (x - predictor);
+        }
+    }
+
+    /**
+     * Paeth predictor of the PNG specification.
+     */
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return (pb <= pc ? b : c);
+    }
+
+    /**
+     * Writes a PNG chunk.
+     */
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) {
+        byte[] head = new byte[8];
+        int32(head, 0, data.length);
+        for (int ix = 0; ix < 4; ix++) {
+            head[4 + ix] = (byte) type.charAt(ix);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(head, 4, 4);
+        crc.update(data, 0, data.length);
+
+        byte[] tail = new byte[4];
+        int32(tail, 0, (int) crc.getValue());
+
+        out.write(head, 0, head.length);
+        out.write(data, 0, data.length);
+        out.write(tail, 0, tail.length);
+    }
+
+    /**
+     * Encodes a binary PBM image. Pixels darker than 50% are black.
+     */
+    private static byte[] encodePbm(int[] rgb, int width, int height) {
+        String head = "P4\n" + width + " " + height + "\n";
+        byte[] header = head.getBytes(StandardCharsets.US_ASCII);
+        int stride = (width + 7) / 8;
+
+        byte[] result = new byte[header.length + stride * height];
+        System.arraycopy(header, 0, result, 0, header.length);
+
+        for (int y = 0; y < height; y++) {
+            int pos = header.length + y * stride;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int pixel = rgb[row + x];
+                int luma = (((pixel >> 16) & 0xFF) * 299
+                                + ((pixel >> 8) & 0xFF) * 587
+                                + (pixel & 0xFF) * 114) / 1000;
+                if (luma < 128) {
+                    result[pos + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Encodes an uncompressed 8-bit RGB baseline TIFF image, in little endian byte
+     * order and a single strip.
+     */
+    private static byte[] encodeTiff(int[] rgb, int width, int height) {
+        final int entries = 12;
+        final int ifdOffset = 8;
+        final int bpsOffset = ifdOffset + 2 + entries * 12 + 4;
+        final int xresOffset = bpsOffset + 6;
+        final int yresOffset = xresOffset + 8;
+        final int dataOffset = yresOffset + 8;
+        final int dataLength = width * height * 3;
+
+        byte[] result = new byte[dataOffset + dataLength];
+        result[0] = 'I';
+        result[1] = 'I';
+        int16le(result, 2, 42);
+        int32le(result, 4, ifdOffset);
+
+        int pos = ifdOffset;
+        int16le(result, pos, entries);
+        pos += 2;
+        pos = tiffEntry(result, pos, 256, 4, 1, width);         // ImageWidth
+        pos = tiffEntry(result, pos, 257, 4, 1, height);        // ImageLength
+        pos = tiffEntry(result, pos, 258, 3, 3, bpsOffset);     // BitsPerSample
+        pos = tiffEntry(result, pos, 259, 3, 1, 1);             // Compression: none
+        pos = tiffEntry(result, pos, 262, 3, 1, 2);             // Photometric: RGB
+        pos = tiffEntry(result, pos, 273, 4, 1, dataOffset);    // StripOffsets
+        pos = tiffEntry(result, pos, 277, 3, 1, 3);             // SamplesPerPixel
+        pos = tiffEntry(result, pos, 278, 4, 1, height);        // RowsPerStrip
+        pos = tiffEntry(result, pos, 279, 4, 1, dataLength);    // StripByteCounts
+        pos = tiffEntry(result, pos, 282, 5, 1, xresOffset);    // XResolution
+        pos = tiffEntry(result, pos, 283, 5, 1, yresOffset);    // YResolution
+        pos = tiffEntry(result, pos, 296, 3, 1, 2);             // ResolutionUnit: inch
+        int32le(result, pos, 0);                                // no further IFD
+
+        int16le(result, bpsOffset, 8);
+        int16le(result, bpsOffset + 2, 8);
+        int16le(result, bpsOffset + 4, 8);
+        int32le(result, xresOffset, 72);
+        int32le(result, xresOffset + 4, 1);
+        int32le(result, yresOffset, 72);
+        int32le(result, yresOffset + 4, 1);
+
+        pos = dataOffset;
+        for (int pixel : rgb) {
+            result[pos++] = (byte) (pixel >> 16);
+            result[pos++] = (byte) (pixel >> 8);
+            result[pos++] = (byte) pixel;
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes a TIFF IFD entry. Values of SHORT type are left aligned.
+     *
+     * @return Position after the entry
+     */
+    private static int tiffEntry(byte[] target, int pos, int tag, int type, int count, int value) {
+        int16le(target, pos, tag);
+        int16le(target, pos + 2, type);
+        int32le(target, pos + 4, count);
+        if (type == 3 && count == 1) {
+            int16le(target, pos + 8, value);
+        } else {
+            int32le(target, pos + 8, value);
+        }
+        return pos + 12;
+    }
+
+    /**
+     * Puts a big endian 32 bit value into a byte array.
+     */
+    private static void int32(byte[] target, int pos, int value) {
+        target[pos] = (byte) (value >> 24);
+        target[pos + 1] = (byte) (value >> 16);
+        target[pos + 2] = (byte) (value >> 8);
+        target[pos + 3] = (byte) value;
+    }
+
+    /**
+     * Puts a little endian 16 bit value into a byte array.
+     */
+    private static void int16le(byte[] target, int pos, int value) {
+        target[pos] = (byte) value;
+        target[pos + 1] = (byte) (value >> 8);
+    }
+
+    /**
+     * Puts a little endian 32 bit value into a byte array.
+     */
+    private static void int32le(byte[] target, int pos, int value) {
+        int16le(target, pos, value);
+        int16le(target, pos + 2, value >> 16);
+    }
+
+}
@@ -0,0 +1,188 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link CalendarWriter} that writes jCal, the JSON representation of iCalendar.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc7265">RFC 7265</a>
+ */
+public class JCalendarWriter extends AbstractStructuredCalendarWriter {
+
+    private static final int EMPTY = 0;
+    private static final int PROPERTIES = 1;
+    private static final int COMPONENTS = 2;
+
+    private final JsonWriter json;
+    private int[] state = new int[8];
+    private int depth = -1;
+
+    /**
+     * Creates a new {@link JCalendarWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @param fragment
+     *            {@code true} to write a fragment of components that continues the
+     *            component list of a VCALENDAR. Each component is preceded by a
+     *            separator then.
+     */
+    public JCalendarWriter(OutputStream out, boolean fragment) {
+        json = new JsonWriter(out);
+        if (fragment) {
+            json.continueArray();
+            depth = 0;
+            state[depth] = COMPONENTS;
+        }
+    }
+
+    @Override
+    public void begin(String component) throws IOException {
+        if (depth >= 0) {
+            switch (state[depth]) {
+                case EMPTY:
+                    json.beginArray().endArray().beginArray();
+                    break;
+
+                case PROPERTIES:
+                    json.endArray().beginArray();
+                    break;
+
+                default:
+                    // components array is already open
+            }
+            state[depth] = COMPONENTS;
+        }
+
+        depth++;
+        if (depth == state.length) {
+            int[] newState = new int[state.length * 2];
+            System.arraycopy(state, 0, newState, 0, state.length);
+            state = newState;
+        }
+        state[depth] = EMPTY;
+
+        json.beginArray().value(component.toLowerCase(Locale.ENGLISH));
+    }
+
+    @Override
+    public void end(String component) throws IOException {
+        switch (state[depth]) {
+            case EMPTY:
+                json.beginArray().endArray().beginArray().endArray();
+                break;
+
+            case PROPERTIES:
+                json.endArray().beginArray().endArray();
+                break;
+
+            default:
+                json.endArray();
+        }
+        json.endArray();
+
+        depth--;
+        if (depth < 0) {
+            json.newLine();
+        }
+    }
+
+    @Override
+    protected void property(String name, String tzid, String type, String value)
+    throws IOException {
+        startProperty(name, tzid, type);
+        json.value(value);
+        json.endArray();
+    }
+
+    @Override
+    protected void properties(String name, String type, String[] values, int count)
+    throws IOException {
+        startProperty(name, null, type);
+        for (int ix = 0; ix < count; ix++) {
+            json.value(values[ix]);
+        }
+        json.endArray();
+    }
+
+    @Override
+    protected void recurProperty(String name, Map<String, String> parts) throws IOException {
+        startProperty(name, null, "recur");
+        json.beginObject();
+        for (Map.Entry<String, String> part : parts.entrySet()) {
+            boolean numeric = isNumericRulePart(part.getKey());
+            String[] values = part.getValue().split(",");
+
+            json.name(part.getKey());
+            if (values.length > 1) {
+                json.beginArray();
+            }
+            for (String value : values) {
+                if (numeric) {
+                    json.value(Long.parseLong(value));
+                } else {
+                    json.value(value);
+                }
+            }
+            if (values.length > 1) {
+                json.endArray();
+            }
+        }
+        json.endObject();
+        json.endArray();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        json.flush();
+    }
+
+    /**
+     * Starts a property array, and writes the name, parameters and value type.
+     *
+     * @param name
+     *            Property name
+     * @param tzid
+     *            Time zone ID parameter, or {@code null}
+     * @param type
+     *            Value type
+     */
+    private void startProperty(String name, String tzid, String type) throws IOException {
+        if (state[depth] == EMPTY) {
+            json.beginArray();
+            state[depth] = PROPERTIES;
+        } else if (state[depth] == COMPONENTS) {
+            throw new IllegalStateException("property " + name + " after subcomponent");
+        }
+
+        json.beginArray().value(name).beginObject();
+        if (tzid != null) {
+            json.name("tzid").value(tzid);
+        }
+        json.endObject().value(type);
+    }
+
+}
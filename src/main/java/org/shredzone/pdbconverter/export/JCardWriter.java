@@ -0,0 +1,163 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import org.shredzone.pdbconverter.export.VCardExporter.PhoneType;
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * A {@link CardWriter} that writes jCard, the JSON representation of vCard 4.0. All
+ * cards are written into a single JSON array.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc7095">RFC 7095</a>
+ */
+public class JCardWriter implements CardWriter {
+
+    private final JsonWriter json;
+    private final StringBuilder sb = new StringBuilder(10);
+    private boolean started = false;
+
+    /**
+     * Creates a new {@link JCardWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    public JCardWriter(OutputStream out) {
+        json = new JsonWriter(out);
+    }
+
+    @Override
+    public void begin() throws IOException {
+        if (!started) {
+            json.beginArray();
+            started = true;
+        }
+        json.beginArray().value("vcard").beginArray();
+        startProperty("version", "text").value("4.0").endArray();
+    }
+
+    @Override
+    public void end() throws IOException {
+        json.endArray().endArray();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!started) {
+            json.beginArray();
+        }
+        json.endArray().newLine();
+        json.flush();
+    }
+
+    @Override
+    public void classification(String value) {
+        // CLASS was removed in vCard 4.0
+    }
+
+    @Override
+    public void text(String name, String value) throws IOException {
+        startProperty(lower(name), "text").value(value).endArray();
+    }
+
+    @Override
+    public void structured(String name, String... values) throws IOException {
+        startProperty(lower(name), "text").beginArray();
+        for (String value : values) {
+            json.value(value != null ? value : "");
+        }
+        json.endArray().endArray();
+    }
+
+    @Override
+    public void uri(String name, String value) throws IOException {
+        startProperty(lower(name), "uri").value(value).endArray();
+    }
+
+    @Override
+    public void date(String name, int packedDate) throws IOException {
+        sb.setLength(0);
+        digits(DateMath.year(packedDate), 4);
+        sb.append('-');
+        digits(DateMath.month(packedDate), 2);
+        sb.append('-');
+        digits(DateMath.day(packedDate), 2);
+        startProperty(lower(name), "date").value(sb.toString()).endArray();
+    }
+
+    @Override
+    public void email(String value, boolean pref) throws IOException {
+        json.beginArray().value("email").beginObject();
+        if (pref) {
+            json.name("pref").value("1");
+        }
+        json.endObject().value("text").value(value).endArray();
+    }
+
+    @Override
+    public void telephone(PhoneType type, boolean pref, String value) throws IOException {
+        json.beginArray().value("tel").beginObject();
+        if (type != null) {
+            json.name("type").value(type.name().toLowerCase(Locale.ENGLISH));
+        }
+        if (pref) {
+            json.name("pref").value("1");
+        }
+        json.endObject().value("text").value(value).endArray();
+    }
+
+    /**
+     * Starts a property without parameters.
+     *
+     * @param name
+     *            Property name, in lower case
+     * @param type
+     *            Value type
+     * @return {@link JsonWriter} to write the value to
+     */
+    private JsonWriter startProperty(String name, String type) throws IOException {
+        return json.beginArray().value(name).beginObject().endObject().value(type);
+    }
+
+    /**
+     * Appends a non-negative number with a fixed number of digits to the date buffer.
+     */
+    private void digits(int value, int width) {
+        int start = sb.length();
+        sb.append(value);
+        while (sb.length() - start < width) {
+            sb.insert(start, '0');
+        }
+    }
+
+    /**
+     * Converts a name to lower case.
+     */
+    private static String lower(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+}
@@ -0,0 +1,284 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A minimal streaming JSON writer.
+ * <p>
+ * Separators between values are written automatically, and strings are escaped as
+ * they are encoded. The writer does not check if the generated JSON is well-formed,
+ * and it is not thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc7159">RFC 7159</a>
+ */
+public class JsonWriter implements Flushable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Utf8Buffer buf;
+
+    private boolean[] first = new boolean[16];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    /**
+     * Creates a new {@link JsonWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    public JsonWriter(OutputStream out) {
+        this.buf = new Utf8Buffer(out);
+        first[0] = true;
+    }
+
+    /**
+     * Starts an array.
+     *
+     * @return {@code this}
+     */
+    public JsonWriter beginArray() throws IOException {
+        separator();
+        buf.ascii('[');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current array.
+     *
+     * @return {@code this}
+     */
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        buf.ascii(']');
+        return this;
+    }
+
+    /**
+     * Starts an object.
+     *
+     * @return {@code this}
+     */
+    public JsonWriter beginObject() throws IOException {
+        separator();
+        buf.ascii('{');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current object.
+     *
+     * @return {@code this}
+     */
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        buf.ascii('}');
+        return this;
+    }
+
+    /**
+     * Continues an array that was started and already contains values, without
+     * writing anything. This is useful for writing fragments of an array, which are
+     * to be concatenated later.
+     *
+     * @return {@code this}
+     */
+    public JsonWriter continueArray() {
+        push();
+        first[depth] = false;
+        return this;
+    }
+
+    /**
+     * Writes the name of an object member. It must be followed by a value.
+     *
+     * @param name
+     *            Member name
+     * @return {@code this}
+     */
+    public JsonWriter name(String name) throws IOException {
+        separator();
+        string(name);
+        buf.ascii(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value.
+     *
+     * @param value
+     *            String to write, {@code null} writes a null value
+     * @return {@code this}
+     */
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        separator();
+        string(value);
+        return this;
+    }
+
+    /**
+     * Writes a number value.
+     *
+     * @param value
+     *            Number to write
+     * @return {@code this}
+     */
+    public JsonWriter value(long value) throws IOException {
+        separator();
+        buf.number(value);
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value
+     *            Boolean to write
+     * @return {@code this}
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        separator();
+        buf.ascii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes a null value.
+     *
+     * @return {@code this}
+     */
+    public JsonWriter nullValue() throws IOException {
+        separator();
+        buf.ascii("null");
+        return this;
+    }
+
+    /**
+     * Writes a line break. This is only permitted between top level values.
+     *
+     * @return {@code this}
+     */
+    public JsonWriter newLine() throws IOException {
+        buf.ascii('\n');
+        first[depth] = true;
+        return this;
+    }
+
+    /**
+     * Flushes the internal buffer to the {@link OutputStream}. The stream itself is
+     * flushed as well.
+     */
+    @Override
+    public void flush() throws IOException {
+        buf.flush();
+    }
+
+    /**
+     * Enters a new array or object level.
+     */
+    private void push() {
+        depth++;
+        if (depth == first.length) {
+            boolean[] newFirst = new boolean[first.length * 2];
+            System.arraycopy(first, 0, newFirst, 0, first.length);
+            first = newFirst;
+        }
+        first[depth] = true;
+    }
+
+    /**
+     * Writes a comma if the value is not the first one of the current level.
+     */
+    private void separator() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (!first[depth]) {
+            buf.ascii(',');
+        }
+        first[depth] = false;
+    }
+
+    /**
+     * Writes a quoted and escaped string.
+     *
+     * @param str
+     *            String to write
+     */
+    private void string(String str) throws IOException {
+        buf.ascii('"');
+        for (int ix = 0, len = str.length(); ix < len; ix++) {
+            char ch = str.charAt(ix);
+            switch (ch) {
+                case '"':  buf.ascii('\\'); buf.ascii('"');  break;
+                case '\\': buf.ascii('\\'); buf.ascii('\\'); break;
+                case '\n': buf.ascii('\\'); buf.ascii('n');  break;
+                case '\r': buf.ascii('\\'); buf.ascii('r');  break;
+                case '\t': buf.ascii('\\'); buf.ascii('t');  break;
+                case '\b': buf.ascii('\\'); buf.ascii('b');  break;
+                case '\f': buf.ascii('\\'); buf.ascii('f');  break;
+                default:
+                    if (ch < 0x20 || ch == '\u2028' || ch == '\u2029') {
+                        unicode(ch);
+                    } else if (ch < 0x80) {
+                        buf.ascii(ch);
+                    } else {
+                        int cp = Character.codePointAt(str, ix);
+                        if (Character.isSurrogate(ch) && cp == ch) {
+                            // Unpaired surrogate, cannot be encoded in UTF-8
+                            unicode(ch);
+                        } else {
+                            buf.character(cp);
+                            ix += Character.charCount(cp) - 1;
+                        }
+                    }
+            }
+        }
+        buf.ascii('"');
+    }
+
+    /**
+     * Writes a unicode escape sequence.
+     *
+     * @param ch
+     *            Character to escape
+     */
+    private void unicode(char ch) throws IOException {
+        buf.ascii('\\');
+        buf.ascii('u');
+        buf.ascii(HEX[(ch >> 12) & 0x0F]);
+        buf.ascii(HEX[(ch >> 8) & 0x0F]);
+        buf.ascii(HEX[(ch >> 4) & 0x0F]);
+        buf.ascii(HEX[ch & 0x0F]);
+    }
+
+}
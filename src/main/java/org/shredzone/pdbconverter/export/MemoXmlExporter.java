@@ -56,11 +56,10 @@ public class MemoXmlExporter extends AbstractExporter<MemoRecord, CategoryAppInf
         for (int ix = 0; ix < records.size(); ix++) {
             MemoRecord record = records.get(ix);
             if (isAccepted(record)) {
-                xh.startElement("memo",
-                        "id", ix,
-                        "category", record.getCategoryIndex(),
-                        "secret", record.isSecret()
-                );
+                xh.startElement("memo")
+                        .attribute("id", ix)
+                        .attribute("category", record.getCategoryIndex())
+                        .attribute("secret", record.isSecret());
                 xh.writeContent(record.getMemo());
                 xh.endElement();
             }
@@ -21,89 +21,143 @@ package org.shredzone.pdbconverter.export;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.SimpleDateFormat;
 import java.util.List;
-import java.util.TimeZone;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.Callable;
+import java.util.zip.Deflater;
 
 import org.shredzone.commons.pdb.PdbDatabase;
 import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
 import org.shredzone.commons.pdb.record.NotepadRecord;
 
 /**
- * Writes a {@link NotepadRecord} database as ZIP file.
+ * Writes a {@link NotepadRecord} database as ZIP file. The images are encoded by an
+ * {@link ImageEncoder}.
+ * <p>
+ * If more than one thread is set, the images are encoded and the entries are deflated
+ * in parallel, on the threads of the {@link ZipWriter}. The entries are written in
+ * record order.
  *
  * @author Richard "Shred" Körber
  */
 public class NotepadExporter extends AbstractExporter<NotepadRecord, CategoryAppInfo> {
 
-    private static final SimpleDateFormat DATE_FMT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    private int threads = 1;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private ImageEncoder encoder = new ImageEncoder();
 
-    static {
-        DATE_FMT.setTimeZone(TimeZone.getTimeZone("GMT"));
+    /**
+     * Sets the number of threads that encode the images and deflate the ZIP entries.
+     * Default is 1, which does all the work on the calling thread.
+     *
+     * @param threads
+     *            Number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the deflate level of the ZIP entries. Default is
+     * {@link Deflater#DEFAULT_COMPRESSION}. 0 stores all entries
+     * without compression.
+     *
+     * @param level
+     *            Deflate level
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Sets the {@link ImageEncoder} for the images. Default is an {@link ImageEncoder}
+     * that keeps the PNG images unchanged.
+     *
+     * @param encoder
+     *            {@link ImageEncoder} to be used
+     */
+    public void setImageEncoder(ImageEncoder encoder) {
+        this.encoder = encoder;
     }
 
     /**
      * Writes a database of {@link NotepadRecord} to a ZIP file. The zip file contains a
-     * file "db-info.xml" with generic database information, and a .png file for each
+     * file "db-info.xml" with generic database information, and an image file for each
      * database record.
      */
     @Override
     public void export(PdbDatabase<NotepadRecord, CategoryAppInfo> database, OutputStream out)
     throws IOException {
-        try (ZipOutputStream zos = new ZipOutputStream(out)) {
-            writeDatabaseInfo(database, zos);
+        long now = System.currentTimeMillis();
+
+        try (ZipWriter zw = new ZipWriter(out, threads)) {
+            zw.setLevel(level);
+
+            int[] selection = selectAccepted(database.getRecords());
+
+            writeDatabaseInfo(database, selection, zw, now);
 
             List<NotepadRecord> records = database.getRecords();
-            for (int ix = 0; ix < records.size(); ix++) {
+            for (int ix : selection) {
                 NotepadRecord record = records.get(ix);
-
-                if (isAccepted(record)) {
-                    String name = String.format("images/%04d.png", ix);
-                    ZipEntry ze = new ZipEntry(name);
-                    if (record.getModified() != null) {
-                        ze.setTime(record.getModified().getTimeInMillis());
-                    }
-                    zos.putNextEntry(ze);
-                    zos.write(record.getImagePng());
-                    zos.flush();
-                    zos.closeEntry();
-                }
+                zw.putEntry(imageName(ix), entryTime(record, now), new ImageTask(record));
             }
         }
     }
 
+    /**
+     * Gets the ZIP entry name of a record's image.
+     *
+     * @param ix
+     *            Record index
+     * @return Entry name
+     */
+    private String imageName(int ix) {
+        return XmlHelper.numbered("images/", ix, 4, encoder.getFormat().getSuffix());
+    }
+
+    /**
+     * Gets the modification time of a record's image.
+     *
+     * @param record
+     *            {@link NotepadRecord}
+     * @param now
+     *            Time to be used if the record has no modification date
+     * @return Modification time
+     */
+    private static long entryTime(NotepadRecord record, long now) {
+        return (record.getModified() != null ? record.getModified().getTimeInMillis() : now);
+    }
+
     /**
      * Creates the "db-info.xml" file with generic database information.
      *
      * @param database
      *            {@link PdbDatabase} to be written
-     * @param zos
-     *            {@link ZipOutputStream} to write to
+     * @param selection
+     *            Indexes of the records to be written
+     * @param zw
+     *            {@link ZipWriter} to write to
+     * @param now
+     *            Modification time of the entry
      */
-    private void writeDatabaseInfo(PdbDatabase<NotepadRecord, CategoryAppInfo> database, ZipOutputStream zos)
+    private void writeDatabaseInfo(PdbDatabase<NotepadRecord, CategoryAppInfo> database,
+                int[] selection, ZipWriter zw, long now)
     throws IOException {
-        zos.putNextEntry(new ZipEntry("db-info.xml"));
-
-        XmlHelper xh = new XmlHelper();
-        xh.openXmlWriter(zos, "dbinfo");
-        xh.writeDatabase(database);
-        xh.writeCategories(database);
-
-        xh.startElement("records");
+        try (OutputStream out = zw.putEntry("db-info.xml", now)) {
+            XmlHelper xh = new XmlHelper();
+            xh.openXmlWriter(out, "dbinfo");
+            xh.writeDatabase(database);
+            xh.writeCategories(database);
 
-        List<NotepadRecord> records = database.getRecords();
-        for (int ix = 0; ix < records.size(); ix++) {
-            NotepadRecord record = records.get(ix);
+            xh.startElement("records");
 
-            if (isAccepted(record)) {
-                xh.startElement(
-                        "record",
-                        "id", ix,
-                        "category", record.getCategoryIndex(),
-                        "secret", record.isSecret()
-                );
+            List<NotepadRecord> records = database.getRecords();
+            for (int ix : selection) {
+                NotepadRecord record = records.get(ix);
+                xh.startElement("record")
+                        .attribute("id", ix)
+                        .attribute("category", record.getCategoryIndex())
+                        .attribute("secret", record.isSecret());
 
                 xh.writeDate("created", record.getCreated());
                 if (record.getModified() != null) {
@@ -116,16 +170,37 @@ public class NotepadExporter extends AbstractExporter<NotepadRecord, CategoryApp
                     xh.writeValue("title", record.getTitle());
                 }
 
-                xh.writeFormatted("file", "images/%04d.png", ix);
+                xh.writeValue("file", imageName(ix));
 
                 xh.endElement();
             }
+
+            xh.endElement();
+
+            xh.closeXmlWriter();
         }
+    }
 
-        xh.endElement();
+    /**
+     * Encodes the image of a {@link NotepadRecord}.
+     */
+    private class ImageTask implements Callable<byte[]> {
+        private final NotepadRecord record;
+
+        /**
+         * Creates a new {@link ImageTask}.
+         *
+         * @param record
+         *            {@link NotepadRecord} to encode the image of
+         */
+        public ImageTask(NotepadRecord record) {
+            this.record = record;
+        }
 
-        xh.closeXmlWriter();
-        zos.closeEntry();
+        @Override
+        public byte[] call() throws IOException {
+            return encoder.encode(record.getImagePng());
+        }
     }
 
 }
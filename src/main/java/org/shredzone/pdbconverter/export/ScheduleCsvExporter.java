@@ -0,0 +1,99 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+
+/**
+ * Writes a {@link ScheduleRecord} database as CSV file. The start and end time are
+ * empty for events without a time.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ScheduleCsvExporter extends AbstractCsvExporter<ScheduleRecord, CategoryAppInfo> {
+
+    private static final String[] COLUMNS = {
+        "date", "start", "end", "description", "location", "note"
+    };
+
+    @Override
+    protected String[] getColumns() {
+        return COLUMNS;
+    }
+
+    @Override
+    protected void writeColumn(ScheduleRecord record, int column, CsvWriter csv) throws IOException {
+        switch (column) {
+            case 0:
+                ShortDate date = record.getSchedule();
+                if (date != null) {
+                    csv.date(date.getYear(), date.getMonth(), date.getDay());
+                } else {
+                    csv.field(null);
+                }
+                break;
+
+            case 1:
+                writeTime(record.getStartTime(), csv);
+                break;
+
+            case 2:
+                writeTime(record.getEndTime(), csv);
+                break;
+
+            case 3:
+                csv.field(record.getDescription());
+                break;
+
+            case 4:
+                csv.field(record.getLocation());
+                break;
+
+            case 5:
+                csv.field(record.getNote());
+                break;
+
+            default:
+                throw new IllegalArgumentException("unknown column " + column);
+        }
+    }
+
+    /**
+     * Writes a time column.
+     *
+     * @param time
+     *            {@link ShortTime} to write, may be {@code null}
+     * @param csv
+     *            {@link CsvWriter} to write the field to
+     */
+    private void writeTime(ShortTime time, CsvWriter csv) throws IOException {
+        if (time != null) {
+            csv.time(time.getHour(), time.getMinute());
+        } else {
+            csv.field(null);
+        }
+    }
+
+}
@@ -0,0 +1,349 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Alarm;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * Maps a {@link ScheduleRecord} to a VEVENT component, and writes it to a
+ * {@link CalendarWriter}.
+ * <p>
+ * The mapping is the same as in {@link ScheduleExporter}, and the properties are
+ * written in the same order. Internal buffers are reused, so an instance must not be
+ * shared between threads.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ScheduleEventWriter {
+
+    private static final String[] WEEKDAYS = {
+        "SU", "MO", "TU", "WE", "TH", "FR", "SA",
+    };
+
+    private final TimeZone tz;
+    private final boolean compact;
+    private final StringBuilder sb = new StringBuilder();
+    private int[] days = new int[16];
+
+    /**
+     * Creates a new {@link ScheduleEventWriter}.
+     *
+     * @param tz
+     *            {@link TimeZone} of the schedule dates and times
+     * @param compact
+     *            {@code true} for compact output, see
+     *            {@link ScheduleExporter#setCompact(boolean)}
+     */
+    public ScheduleEventWriter(TimeZone tz, boolean compact) {
+        this.tz = tz;
+        this.compact = compact;
+    }
+
+    /**
+     * Writes a VEVENT component for a single {@link ScheduleRecord}.
+     *
+     * @param w
+     *            {@link CalendarWriter} to write to
+     * @param schedule
+     *            {@link ScheduleRecord} to be exported
+     * @param tzid
+     *            Time zone ID
+     * @param stamp
+     *            Time stamp of the event creation
+     * @param uid
+     *            Unique ID of the event
+     */
+    public void write(CalendarWriter w, ScheduleRecord schedule, String tzid, long stamp,
+            String uid) throws IOException {
+        w.begin("VEVENT");
+
+        w.utcDateTime("DTSTAMP", stamp);
+
+        if (schedule.getStartTime() == null && schedule.getEndTime() == null) {
+            // all-day event
+            writeAllDaySchedule(w, schedule);
+
+        } else {
+            // event with starting and ending time
+            writeSchedule(w, schedule, tzid);
+        }
+
+        writeRepeat(w, schedule);
+
+        if (schedule.getDescription() != null) {
+            w.text("SUMMARY", schedule.getDescription());
+        }
+
+        if (schedule.getLocation() != null) {
+            w.text("LOCATION", schedule.getLocation());
+        }
+
+        if (schedule.getNote() != null) {
+            w.text("DESCRIPTION", schedule.getNote());
+        }
+
+        if (schedule.getCategory() != null) {
+            w.textListItem("CATEGORIES", schedule.getCategory());
+        }
+
+        if (schedule.isSecret()) {
+            w.text("CLASS", "PRIVATE");
+        }
+
+        w.text("UID", uid);
+
+        writeAlarm(w, schedule);
+
+        w.end("VEVENT");
+    }
+
+    /**
+     * Writes the schedule data for a standard calendar entry with definite starting
+     * and ending time.
+     *
+     * @param w
+     *            {@link CalendarWriter} to write to
+     * @param schedule
+     *            {@link ScheduleRecord} to read from
+     * @param tzid
+     *            Time zone ID
+     */
+    private void writeSchedule(CalendarWriter w, ScheduleRecord schedule, String tzid)
+    throws IOException {
+        int day = DateMath.epochDay(schedule.getSchedule());
+        int startTime = DateMath.minuteOfDay(schedule.getStartTime());
+        int endTime   = DateMath.minuteOfDay(schedule.getEndTime());
+
+        // If ending time is before starting time, add one day to make it end tomorrow
+        if (endTime < startTime) {
+            endTime += DateMath.MINUTES_PER_DAY;
+        }
+
+        w.localDateTime("DTSTART", tzid, toLocalMillis(day, startTime));
+        w.localDateTime("DTEND", tzid, toLocalMillis(day, endTime));
+    }
+
+    /**
+     * Writes the schedule data for an all-day event.
+     *
+     * @param w
+     *            {@link CalendarWriter} to write to
+     * @param schedule
+     *            {@link ScheduleRecord} to read from
+     */
+    private void writeAllDaySchedule(CalendarWriter w, ScheduleRecord schedule)
+    throws IOException {
+        int day = DateMath.epochDay(schedule.getSchedule());
+
+        w.date("DTSTART", day);
+        if (!compact) {
+            w.date("DTEND", day + 1);
+        }
+    }
+
+    /**
+     * Writes the alarm data, if given.
+     *
+     * @param w
+     *            {@link CalendarWriter} to write to
+     * @param schedule
+     *            {@link ScheduleRecord} to read from
+     */
+    private void writeAlarm(CalendarWriter w, ScheduleRecord schedule) throws IOException {
+        Alarm alarm = schedule.getAlarm();
+        if (alarm != null) {
+            int before = -alarm.getValue();
+
+            char unit;
+            switch (alarm.getUnit()) {
+                case MINUTES: unit = 'M'; break;
+                case HOURS:   unit = 'H'; break;
+                case DAYS:    unit = 'D'; break;
+                default: throw new IllegalStateException("unknown alarm unit " + alarm.getUnit());
+            }
+
+            sb.setLength(0);
+            if (before == 0) {
+                sb.append("PT0S");
+            } else {
+                if (before < 0) {
+                    sb.append('-');
+                }
+                sb.append(unit == 'D' ? "P" : "PT").append(Math.abs(before)).append(unit);
+            }
+
+            w.begin("VALARM");
+            w.duration("TRIGGER", sb.toString());
+            w.text("ACTION", "DISPLAY");
+            w.text("DESCRIPTION", schedule.getDescription());
+            w.end("VALARM");
+        }
+    }
+
+    /**
+     * Writes the repetition data, if given.
+     *
+     * @param w
+     *            {@link CalendarWriter} to write to
+     * @param schedule
+     *            {@link ScheduleRecord} to read from
+     */
+    private void writeRepeat(CalendarWriter w, ScheduleRecord schedule) throws IOException {
+        Repeat repeat = schedule.getRepeat();
+        if (repeat == null) {
+            return;
+        }
+
+        sb.setLength(0);
+        sb.append("FREQ=");
+        switch (repeat.getMode()) {
+            case DAILY:
+                sb.append("DAILY");
+                break;
+
+            case WEEKLY:
+                sb.append("WEEKLY");
+                break;
+
+            case MONTHLY:
+            case MONTHLY_BY_DAY:
+                sb.append("MONTHLY");
+                break;
+
+            case YEARLY:
+                sb.append("YEARLY");
+                break;
+
+            default:
+                throw new IllegalStateException("unknown repeat mode " + repeat.getMode());
+        }
+
+        if (repeat.getUntil() != null) {
+            sb.append(";UNTIL=");
+            int untilDay = DateMath.epochDay(repeat.getUntil());
+            ShortTime endTime = schedule.getEndTime();
+            if (endTime != null) {
+                long until = DateMath.toMillis(untilDay, DateMath.minuteOfDay(endTime), tz);
+                int second = DateMath.secondOfDayOf(until);
+                appendDigits(DateMath.packedDate(DateMath.epochDayOf(until)), 8);
+                sb.append('T');
+                appendDigits(second / 3600, 2);
+                appendDigits(second / 60 % 60, 2);
+                appendDigits(second % 60, 2);
+                sb.append('Z');
+            } else {
+                appendDigits(DateMath.packedDate(untilDay + 1), 8);
+            }
+        }
+
+        if (repeat.getFrequency() > 1) {
+            sb.append(";INTERVAL=").append(repeat.getFrequency());
+        }
+
+        switch (repeat.getMode()) {
+            case WEEKLY:
+                boolean[] repeatWeekDays = repeat.getWeeklyDays();
+                boolean first = true;
+                for (int ix = 0; ix < repeatWeekDays.length; ix++) {
+                    if (repeatWeekDays[ix]) {
+                        sb.append(first ? ";BYDAY=" : ",").append(WEEKDAYS[ix]);
+                        first = false;
+                    }
+                }
+                break;
+
+            case MONTHLY_BY_DAY:
+                int week = repeat.getMonthlyWeek();
+                sb.append(";BYDAY=");
+                if (week == 4) {
+                    // Last week in month
+                    sb.append("-1");
+                } else {
+                    // Any other week, starting from 1
+                    sb.append(week + 1);
+                }
+                sb.append(WEEKDAYS[repeat.getMonthlyDay()]);
+                break;
+
+            default:
+                // no further rules
+        }
+
+        w.recur("RRULE", sb.toString());
+
+        List<ShortDate> exceptions = schedule.getExceptions();
+        if (compact) {
+            if (!exceptions.isEmpty()) {
+                if (days.length < exceptions.size()) {
+                    days = new int[exceptions.size()];
+                }
+                for (int ix = 0; ix < exceptions.size(); ix++) {
+                    days[ix] = DateMath.epochDay(exceptions.get(ix));
+                }
+                w.dates("EXDATE", days, exceptions.size());
+            }
+        } else {
+            for (ShortDate exception : exceptions) {
+                w.date("EXDATE", DateMath.epochDay(exception));
+            }
+        }
+    }
+
+    /**
+     * Converts a local date and time to the local milliseconds. Times that do not
+     * exist because of a daylight saving transition are normalized.
+     *
+     * @param epochDay
+     *            Local epoch day
+     * @param minuteOfDay
+     *            Local minute of day, may exceed a day
+     * @return Local date and time, as milliseconds since epoch in UTC
+     */
+    private long toLocalMillis(int epochDay, int minuteOfDay) {
+        long millis = DateMath.toMillis(epochDay, minuteOfDay, tz);
+        return millis + tz.getOffset(millis);
+    }
+
+    /**
+     * Appends a non-negative number, padded with leading zeros.
+     *
+     * @param value
+     *            Number to append
+     * @param width
+     *            Minimum number of digits
+     */
+    private void appendDigits(int value, int width) {
+        int start = sb.length();
+        sb.append(value);
+        while (sb.length() - start < width) {
+            sb.insert(start, '0');
+        }
+    }
+
+}
@@ -21,7 +21,7 @@ package org.shredzone.pdbconverter.export;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Calendar;
+import java.util.List;
 
 import org.shredzone.commons.pdb.CalendarFactory;
 import org.shredzone.commons.pdb.PdbDatabase;
@@ -31,6 +31,7 @@ import org.shredzone.commons.pdb.record.ScheduleRecord.Alarm;
 import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat;
 import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
 import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+import org.shredzone.pdbconverter.util.DateMath;
 
 import net.fortuna.ical4j.data.CalendarOutputter;
 import net.fortuna.ical4j.model.Date;
@@ -38,8 +39,7 @@ import net.fortuna.ical4j.model.DateList;
 import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.Dur;
 import net.fortuna.ical4j.model.Recur;
-import net.fortuna.ical4j.model.TimeZoneRegistry;
-import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
+import net.fortuna.ical4j.model.TimeZone;
 import net.fortuna.ical4j.model.ValidationException;
 import net.fortuna.ical4j.model.WeekDay;
 import net.fortuna.ical4j.model.component.VAlarm;
@@ -58,8 +58,8 @@ import net.fortuna.ical4j.model.property.Location;
 import net.fortuna.ical4j.model.property.ProdId;
 import net.fortuna.ical4j.model.property.RRule;
 import net.fortuna.ical4j.model.property.Summary;
+import net.fortuna.ical4j.model.property.Uid;
 import net.fortuna.ical4j.model.property.Version;
-import net.fortuna.ical4j.util.UidGenerator;
 
 /*
  * NOTE TO THE READER:
@@ -81,7 +81,43 @@ public class ScheduleExporter extends AbstractExporter<ScheduleRecord, CategoryA
     };
 
     private CalendarFactory cf = CalendarFactory.getInstance();
-    private TimeZoneRegistry registry = TimeZoneRegistryFactory.getInstance().createRegistry();
+    private TimeZone timeZone;
+    private int validationInterval = 1;
+    private long validationTime;
+    private boolean compact;
+
+    /**
+     * Sets the compact mode. In compact mode, all exceptions of an event are merged
+     * into a single EXDATE property, and redundant data is omitted. This is the default
+     * calendar scale, the end date of all-day events, and the TZURL and
+     * X-LIC-LOCATION properties of the time zone.
+     *
+     * @param compact
+     *            {@code true} for compact output
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Sets how the generated calendar is validated. 1 validates the entire calendar,
+     * which is the default. 0 disables validation. Any other number validates the
+     * calendar properties and every Nth event.
+     *
+     * @param validationInterval
+     *            Validation interval
+     */
+    public void setValidationInterval(int validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    /**
+     * Returns the time that was spent for validating the calendar on the last export,
+     * in milliseconds.
+     */
+    public long getValidationTime() {
+        return validationTime;
+    }
 
     /**
      * Writes the {@link ScheduleRecord} database as iCalendar to the given
@@ -96,29 +132,53 @@ public class ScheduleExporter extends AbstractExporter<ScheduleRecord, CategoryA
     @Override
     public void export(PdbDatabase<ScheduleRecord, CategoryAppInfo> database, OutputStream out)
     throws IOException {
-        UidGenerator uidGenerator = new UidGenerator("uidGen");
+        EventUidGenerator uidGenerator = new EventUidGenerator(database);
 
         net.fortuna.ical4j.model.Calendar calendar = new net.fortuna.ical4j.model.Calendar();
         calendar.getProperties().add(new ProdId("-//Shredzone.org/pdbconverter 1.0//EN"));
         calendar.getProperties().add(Version.VERSION_2_0);
-        calendar.getProperties().add(CalScale.GREGORIAN);
+        if (!compact) {
+            calendar.getProperties().add(CalScale.GREGORIAN);
+        }
 
-        VTimeZone vTimeZone = registry.getTimeZone(cf.getTimeZone().getID()).getVTimeZone();
+        String tzid = cf.getTimeZone().getID();
+        timeZone = TimeZoneCache.getTimeZone(tzid);
+        VTimeZone vTimeZone = (compact
+                        ? TimeZoneCache.getCompactVTimeZoneComponent(tzid)
+                        : timeZone.getVTimeZone());
         calendar.getComponents().add(vTimeZone);
 
-        for (ScheduleRecord schedule : database.getRecords()) {
-            if (isAccepted(schedule)) {
-                VEvent event = createVEvent(schedule);
-                event.getProperties().add(uidGenerator.generateUid());
-                calendar.getComponents().add(event);
-            }
-        }
+        long validationNanos = 0;
+        int count = 0;
 
         try {
-            CalendarOutputter co = new CalendarOutputter();
+            List<ScheduleRecord> records = database.getRecords();
+            for (ScheduleRecord schedule : records) {
+                if (isAccepted(schedule)) {
+                    VEvent event = createVEvent(schedule);
+                    event.getProperties().add(new Uid(uidGenerator.generateUid(schedule)));
+                    calendar.getComponents().add(event);
+
+                    if (validationInterval > 1 && count++ % validationInterval == 0) {
+                        long start = System.nanoTime();
+                        event.validate(true);
+                        validationNanos += System.nanoTime() - start;
+                    }
+                }
+            }
+
+            if (validationInterval > 0) {
+                long start = System.nanoTime();
+                calendar.validate(validationInterval == 1);
+                validationNanos += System.nanoTime() - start;
+            }
+
+            CalendarOutputter co = new CalendarOutputter(false);
             co.output(calendar, out);
         } catch (ValidationException ex) {
             throw new IOException("Validation error", ex);
+        } finally {
+            validationTime = validationNanos / 1000000L;
         }
     }
 
@@ -162,19 +222,20 @@ public class ScheduleExporter extends AbstractExporter<ScheduleRecord, CategoryA
      *            {@link ScheduleRecord} to read from
      */
     private void setSchedule(VEvent event, ScheduleRecord schedule) {
-        Calendar startDate = convertDateTime(schedule.getSchedule(), schedule.getStartTime());
-        Calendar endDate   = convertDateTime(schedule.getSchedule(), schedule.getEndTime());
+        int day = DateMath.epochDay(schedule.getSchedule());
+        int startTime = DateMath.minuteOfDay(schedule.getStartTime());
+        int endTime   = DateMath.minuteOfDay(schedule.getEndTime());
 
         // If ending time is before starting time, add one day to make it end tomorrow
-        if (endDate.before(startDate)) {
-            endDate.add(Calendar.DATE, 1);
+        if (endTime < startTime) {
+            endTime += DateMath.MINUTES_PER_DAY;
         }
 
-        DateTime startDateTime = new DateTime(startDate.getTime());
-        startDateTime.setTimeZone(registry.getTimeZone(cf.getTimeZone().getID()));
+        DateTime startDateTime = new DateTime(DateMath.toMillis(day, startTime, cf.getTimeZone()));
+        startDateTime.setTimeZone(timeZone);
 
-        DateTime endDateTime = new DateTime(endDate.getTime());
-        endDateTime.setTimeZone(registry.getTimeZone(cf.getTimeZone().getID()));
+        DateTime endDateTime = new DateTime(DateMath.toMillis(day, endTime, cf.getTimeZone()));
+        endDateTime.setTimeZone(timeZone);
 
         event.getProperties().add(new DtStart(startDateTime));
         event.getProperties().add(new DtEnd(endDateTime));
@@ -189,10 +250,12 @@ public class ScheduleExporter extends AbstractExporter<ScheduleRecord, CategoryA
      *            {@link ScheduleRecord} to read from
      */
     private void setAllDaySchedule(VEvent event, ScheduleRecord schedule) {
-        Calendar startDate = convertDate(schedule.getSchedule());
-        event.getProperties().add(new DtStart(new Date(startDate.getTime())));
-        startDate.add(Calendar.DATE, 1);
-        event.getProperties().add(new DtEnd(new Date(startDate.getTime())));
+        int day = DateMath.epochDay(schedule.getSchedule());
+        event.getProperties().add(new DtStart(convertDate(day)));
+        if (!compact) {
+            // An all-day event lasts one day by default, so DTEND is redundant
+            event.getProperties().add(new DtEnd(convertDate(day + 1)));
+        }
     }
 
     /**
@@ -237,14 +300,14 @@ public class ScheduleExporter extends AbstractExporter<ScheduleRecord, CategoryA
             Date until = null;
             if (repeat.getUntil() != null) {
                 ShortTime endTime = schedule.getEndTime();
+                int untilDay = DateMath.epochDay(repeat.getUntil());
                 if (endTime != null) {
-                    DateTime untilTime = new DateTime(convertDateTime(repeat.getUntil(), endTime).getTime());
+                    DateTime untilTime = new DateTime(DateMath.toMillis(untilDay,
+                                    DateMath.minuteOfDay(endTime), cf.getTimeZone()));
                     untilTime.setUtc(true);
                     until = untilTime;
                 } else {
-                    Calendar calUntil = convertDate(repeat.getUntil());
-                    calUntil.add(Calendar.DATE, 1);
-                    until = new Date(calUntil.getTime());
+                    until = convertDate(untilDay + 1);
                 }
             }
 
@@ -308,9 +371,20 @@ public class ScheduleExporter extends AbstractExporter<ScheduleRecord, CategoryA
      *            {@link ScheduleRecord} to read from
      */
     private void setExceptions(VEvent event, ScheduleRecord schedule) {
+        if (compact) {
+            if (!schedule.getExceptions().isEmpty()) {
+                DateList datelist = new DateList(Value.DATE);
+                for (ShortDate exception : schedule.getExceptions()) {
+                    datelist.add(convertDate(DateMath.epochDay(exception)));
+                }
+                event.getProperties().add(new ExDate(datelist));
+            }
+            return;
+        }
+
         for (ShortDate exception : schedule.getExceptions()) {
             DateList datelist = new DateList(Value.DATE);
-            datelist.add(new Date(convertDate(exception).getTime()));
+            datelist.add(convertDate(DateMath.epochDay(exception)));
             event.getProperties().add(new ExDate(datelist));
         }
     }
@@ -390,33 +464,14 @@ public class ScheduleExporter extends AbstractExporter<ScheduleRecord, CategoryA
     }
 
     /**
-     * Converts a {@link ShortDate} to a {@link Calendar} object. Time is set to midnight.
-     *
-     * @param date
-     *            {@link ShortDate} to be converted
-     * @return {@link Calendar} containing the date only
-     */
-    private Calendar convertDate(ShortDate date) {
-        Calendar cal = cf.create();
-        cal.clear();
-        cal.set(date.getYear(), date.getMonth() - 1, date.getDay());
-        return cal;
-    }
-
-    /**
-     * Converts a {@link ShortDate} and {@link ShortTime} to a {@link Calendar} object.
+     * Converts an epoch day to a {@link Date}.
      *
-     * @param date
-     *            {@link ShortDate} to be converted
-     * @param time
-     *            {@link ShortTime} to be converted
-     * @return {@link Calendar} containing the date and time
+     * @param epochDay
+     *            Epoch day to be converted
+     * @return {@link Date} at midnight of that day
      */
-    private Calendar convertDateTime(ShortDate date, ShortTime time) {
-        Calendar cal = cf.create();
-        cal.clear();
-        cal.set(date.getYear(), date.getMonth() - 1, date.getDay(), time.getHour(), time.getMinute());
-        return cal;
+    private Date convertDate(int epochDay) {
+        return new Date(DateMath.toMillis(epochDay, 0, cf.getTimeZone()));
     }
 
 }
@@ -0,0 +1,285 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.shredzone.commons.pdb.CalendarFactory;
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+
+/**
+ * Writes a {@link ScheduleRecord} database as iCalender file.
+ * <p>
+ * Other than {@link ScheduleExporter}, this exporter does not build an iCalendar
+ * object model, but writes each event directly to the output stream. Memory
+ * consumption is constant, regardless of the size of the database. The output is
+ * equivalent to the output of {@link ScheduleExporter}. The only exception are lines
+ * containing non-ASCII characters, which are folded by octets as required by RFC 5545,
+ * while ical4j folds them by characters.
+ * <p>
+ * If more than one thread is set, the events are rendered in chunks on a
+ * {@link ForkJoinPool}. The rendered chunks are written in record order.
+ * <p>
+ * Subclasses may write other calendar representations by overriding
+ * {@link #createWriter(OutputStream)} and {@link #createFragmentWriter(OutputStream)}.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc5545">RFC 5545</a>
+ */
+public class StreamingScheduleExporter extends AbstractExporter<ScheduleRecord, CategoryAppInfo> {
+
+    private static final int CHUNK_SIZE = 256;
+
+    private CalendarFactory cf = CalendarFactory.getInstance();
+    private int threads = 1;
+    private boolean compact;
+
+    /**
+     * Sets the number of threads that render the events. Default is 1, which renders
+     * all events on the calling thread.
+     *
+     * @param threads
+     *            Number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the compact mode. See {@link ScheduleExporter#setCompact(boolean)}.
+     *
+     * @param compact
+     *            {@code true} for compact output
+     */
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Writes the {@link ScheduleRecord} database as iCalendar to the given
+     * {@link OutputStream}.
+     *
+     * @param database
+     *            {@link ScheduleRecord} {@link PdbDatabase} to write
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    @Override
+    public void export(PdbDatabase<ScheduleRecord, CategoryAppInfo> database, OutputStream out)
+    throws IOException {
+        EventUidGenerator uidGenerator = new EventUidGenerator(database);
+        String tzid = cf.getTimeZone().getID();
+        long now = System.currentTimeMillis();
+
+        CalendarWriter w = createWriter(out);
+
+        w.begin("VCALENDAR");
+        w.text("PRODID", "-//Shredzone.org/pdbconverter 1.0//EN");
+        w.text("VERSION", "2.0");
+        if (!compact) {
+            w.text("CALSCALE", "GREGORIAN");
+        }
+        w.timeZone(tzid, compact);
+
+        List<ScheduleRecord> records = database.getRecords();
+        if (threads > 1) {
+            w.flush();
+            writeParallel(out, records, uidGenerator, tzid, now);
+        } else {
+            ScheduleEventWriter eventWriter = new ScheduleEventWriter(cf.getTimeZone(), compact);
+            for (ScheduleRecord schedule : records) {
+                if (isAccepted(schedule)) {
+                    eventWriter.write(w, schedule, tzid, now, uidGenerator.generateUid(schedule));
+                }
+            }
+        }
+
+        w.end("VCALENDAR");
+        w.flush();
+    }
+
+    /**
+     * Creates the {@link CalendarWriter} that writes the calendar.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @return {@link CalendarWriter} to be used
+     */
+    protected CalendarWriter createWriter(OutputStream out) {
+        return new ICalendarWriter(out);
+    }
+
+    /**
+     * Creates a {@link CalendarWriter} that writes a fragment of VEVENT components,
+     * which is inserted into the output of the {@link CalendarWriter} returned by
+     * {@link #createWriter(OutputStream)}, right after the VTIMEZONE component.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @return {@link CalendarWriter} to be used
+     */
+    protected CalendarWriter createFragmentWriter(OutputStream out) {
+        return new ICalendarWriter(out);
+    }
+
+    /**
+     * Renders the VEVENT components in parallel, and writes them in record order.
+     * Records are filtered and UIDs are generated on the calling thread. Only a limited
+     * number of chunks is kept in memory.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @param records
+     *            {@link ScheduleRecord} to be exported
+     * @param uidGenerator
+     *            {@link EventUidGenerator} to be used
+     * @param tzid
+     *            Time zone ID
+     * @param stamp
+     *            Time stamp of the event creation
+     */
+    private void writeParallel(OutputStream out, List<ScheduleRecord> records,
+            EventUidGenerator uidGenerator, String tzid, long stamp) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Deque<Future<ByteArrayOutputStream>> pending = new ArrayDeque<>();
+            ChunkRenderer chunk = new ChunkRenderer(tzid, stamp);
+
+            for (ScheduleRecord schedule : records) {
+                if (isAccepted(schedule)) {
+                    chunk.add(schedule, uidGenerator.generateUid(schedule));
+                    if (chunk.size() == CHUNK_SIZE) {
+                        pending.add(pool.submit(chunk));
+                        chunk = new ChunkRenderer(tzid, stamp);
+                        if (pending.size() > threads * 2) {
+                            writeChunk(out, pending.remove());
+                        }
+                    }
+                }
+            }
+
+            if (chunk.size() > 0) {
+                pending.add(pool.submit(chunk));
+            }
+
+            while (!pending.isEmpty()) {
+                writeChunk(out, pending.remove());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a chunk to be rendered, and writes it to the {@link OutputStream}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @param future
+     *            {@link Future} of the rendered chunk
+     */
+    private void writeChunk(OutputStream out, Future<ByteArrayOutputStream> future)
+    throws IOException {
+        try {
+            future.get().writeTo(out);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export was interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Could not render events", cause);
+        }
+    }
+
+    /**
+     * Renders a chunk of {@link ScheduleRecord} into a byte buffer.
+     */
+    private class ChunkRenderer implements Callable<ByteArrayOutputStream> {
+        private final List<ScheduleRecord> schedules = new ArrayList<>(CHUNK_SIZE);
+        private final List<String> uids = new ArrayList<>(CHUNK_SIZE);
+        private final String tzid;
+        private final long stamp;
+
+        /**
+         * Creates a new, empty {@link ChunkRenderer}.
+         *
+         * @param tzid
+         *            Time zone ID
+         * @param stamp
+         *            Time stamp of the event creation
+         */
+        public ChunkRenderer(String tzid, long stamp) {
+            this.tzid = tzid;
+            this.stamp = stamp;
+        }
+
+        /**
+         * Adds a {@link ScheduleRecord} to this chunk.
+         *
+         * @param schedule
+         *            {@link ScheduleRecord} to be rendered
+         * @param uid
+         *            Unique ID of the event
+         */
+        public void add(ScheduleRecord schedule, String uid) {
+            schedules.add(schedule);
+            uids.add(uid);
+        }
+
+        /**
+         * Returns the number of {@link ScheduleRecord} in this chunk.
+         */
+        public int size() {
+            return schedules.size();
+        }
+
+        @Override
+        public ByteArrayOutputStream call() throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(schedules.size() * 512);
+            CalendarWriter w = createFragmentWriter(buffer);
+            ScheduleEventWriter eventWriter = new ScheduleEventWriter(cf.getTimeZone(), compact);
+            for (int ix = 0; ix < schedules.size(); ix++) {
+                eventWriter.write(w, schedules.get(ix), tzid, stamp, uids.get(ix));
+            }
+            w.flush();
+            return buffer;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.TimeZone;
+import net.fortuna.ical4j.model.TimeZoneRegistry;
+import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
+import net.fortuna.ical4j.model.component.VTimeZone;
+
+/**
+ * A process-wide cache of iCalendar time zones.
+ * <p>
+ * Loading a VTIMEZONE definition from the ical4j resources is expensive. This cache
+ * resolves each time zone ID only once, using a single shared registry. The resolved
+ * {@link TimeZone} objects and their rendered VTIMEZONE blocks are then shared by all
+ * exporters and threads. They must not be modified.
+ * <p>
+ * Compact VTIMEZONE components are stripped from the TZURL and X-LIC-LOCATION
+ * properties, which are not needed for interpreting the time zone.
+ *
+ * @author Richard "Shred" Körber
+ */
+public final class TimeZoneCache {
+
+    private static final TimeZoneRegistry REGISTRY =
+                    TimeZoneRegistryFactory.getInstance().createRegistry();
+
+    private static final ConcurrentMap<String, TimeZone> ZONES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, String> VTIMEZONES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, VTimeZone> COMPACT_ZONES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, String> COMPACT_VTIMEZONES = new ConcurrentHashMap<>();
+
+    private TimeZoneCache() {
+        // Utility class without constructor
+    }
+
+    /**
+     * Gets the iCalendar {@link TimeZone} of the given ID.
+     *
+     * @param tzid
+     *            Time zone ID
+     * @return Shared {@link TimeZone}
+     * @throws IOException
+     *             if there is no such time zone
+     */
+    public static TimeZone getTimeZone(String tzid) throws IOException {
+        TimeZone result = ZONES.get(tzid);
+        if (result == null) {
+            synchronized (REGISTRY) {
+                result = ZONES.get(tzid);
+                if (result == null) {
+                    result = REGISTRY.getTimeZone(tzid);
+                    if (result == null) {
+                        throw new IOException("Unknown time zone " + tzid);
+                    }
+                    ZONES.put(tzid, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the rendered VTIMEZONE component of the given time zone ID.
+     *
+     * @param tzid
+     *            Time zone ID
+     * @return VTIMEZONE component, with CRLF line terminators
+     * @throws IOException
+     *             if there is no such time zone
+     */
+    public static String getVTimeZone(String tzid) throws IOException {
+        String result = VTIMEZONES.get(tzid);
+        if (result == null) {
+            result = getTimeZone(tzid).getVTimeZone().toString();
+            VTIMEZONES.putIfAbsent(tzid, result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the compact VTIMEZONE component of the given time zone ID.
+     *
+     * @param tzid
+     *            Time zone ID
+     * @return Shared compact {@link VTimeZone}
+     * @throws IOException
+     *             if there is no such time zone
+     */
+    public static VTimeZone getCompactVTimeZoneComponent(String tzid) throws IOException {
+        VTimeZone result = COMPACT_ZONES.get(tzid);
+        if (result == null) {
+            VTimeZone vTimeZone = getTimeZone(tzid).getVTimeZone();
+
+            PropertyList properties = new PropertyList();
+            for (Object property : vTimeZone.getProperties()) {
+                String name = ((Property) property).getName();
+                if (!Property.TZURL.equals(name) && !"X-LIC-LOCATION".equals(name)) {
+                    properties.add((Property) property);
+                }
+            }
+
+            result = new VTimeZone(properties, vTimeZone.getObservances());
+            VTimeZone existing = COMPACT_ZONES.putIfAbsent(tzid, result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the rendered compact VTIMEZONE component of the given time zone ID.
+     *
+     * @param tzid
+     *            Time zone ID
+     * @return Compact VTIMEZONE component, with CRLF line terminators
+     * @throws IOException
+     *             if there is no such time zone
+     */
+    public static String getCompactVTimeZone(String tzid) throws IOException {
+        String result = COMPACT_VTIMEZONES.get(tzid);
+        if (result == null) {
+            result = getCompactVTimeZoneComponent(tzid).toString();
+            COMPACT_VTIMEZONES.putIfAbsent(tzid, result);
+        }
+        return result;
+    }
+
+}
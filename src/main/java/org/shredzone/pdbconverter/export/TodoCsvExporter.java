@@ -0,0 +1,78 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.util.Calendar;
+
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.TodoRecord;
+
+/**
+ * Writes a {@link TodoRecord} database as CSV file.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class TodoCsvExporter extends AbstractCsvExporter<TodoRecord, CategoryAppInfo> {
+
+    private static final String[] COLUMNS = {
+        "completed", "priority", "date", "description", "note"
+    };
+
+    @Override
+    protected String[] getColumns() {
+        return COLUMNS;
+    }
+
+    @Override
+    protected void writeColumn(TodoRecord record, int column, CsvWriter csv) throws IOException {
+        switch (column) {
+            case 0:
+                csv.field(record.isCompleted());
+                break;
+
+            case 1:
+                csv.field(record.getPriority());
+                break;
+
+            case 2:
+                Calendar date = record.getDate();
+                if (date != null) {
+                    csv.date(date.get(Calendar.YEAR), date.get(Calendar.MONTH) + 1,
+                                    date.get(Calendar.DAY_OF_MONTH));
+                } else {
+                    csv.field(null);
+                }
+                break;
+
+            case 3:
+                csv.field(record.getDescription());
+                break;
+
+            case 4:
+                csv.field(record.getNote());
+                break;
+
+            default:
+                throw new IllegalArgumentException("unknown column " + column);
+        }
+    }
+
+}
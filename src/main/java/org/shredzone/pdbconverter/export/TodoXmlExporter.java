@@ -56,11 +56,10 @@ public class TodoXmlExporter extends AbstractExporter<TodoRecord, CategoryAppInf
         for (int ix = 0; ix < records.size(); ix++) {
             TodoRecord record = records.get(ix);
             if (isAccepted(record)) {
-                xh.startElement("todo",
-                        "id", ix,
-                        "category", record.getCategoryIndex(),
-                        "secret", record.isSecret()
-                );
+                xh.startElement("todo")
+                        .attribute("id", ix)
+                        .attribute("category", record.getCategoryIndex())
+                        .attribute("secret", record.isSecret());
 
                 if (record.isCompleted()) {
                     xh.startElement("completed");
@@ -0,0 +1,218 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The output buffer of the streaming writers. Characters and numbers are encoded to
+ * UTF-8 directly into a byte array, which is written to the {@link OutputStream}
+ * when it is full. Escaping is left to the writers. The buffer is not thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ */
+class Utf8Buffer implements Flushable {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int pos = 0;
+
+    /**
+     * Creates a new {@link Utf8Buffer}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    Utf8Buffer(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Returns the number of octets a code point takes in UTF-8.
+     *
+     * @param cp
+     *            Code point
+     * @return Number of octets, 1 to 4
+     */
+    static int length(int cp) {
+        if (cp < 0x80) {
+            return 1;
+        } else if (cp < 0x800) {
+            return 2;
+        } else if (cp < 0x10000) {
+            return 3;
+        } else {
+            return 4;
+        }
+    }
+
+    /**
+     * Writes a single octet.
+     *
+     * @param b
+     *            Octet to write
+     */
+    void octet(int b) throws IOException {
+        if (pos == buffer.length) {
+            drain();
+        }
+        buffer[pos++] = (byte) b;
+    }
+
+    /**
+     * Writes an ASCII character.
+     *
+     * @param ch
+     *            Character to write, must be below 0x80
+     */
+    void ascii(char ch) throws IOException {
+        octet(ch);
+    }
+
+    /**
+     * Writes an ASCII string.
+     *
+     * @param str
+     *            String to write, must only contain ASCII characters
+     */
+    void ascii(String str) throws IOException {
+        for (int ix = 0, len = str.length(); ix < len; ix++) {
+            octet(str.charAt(ix));
+        }
+    }
+
+    /**
+     * Writes a code point in UTF-8.
+     *
+     * @param cp
+     *            Code point to write, must not be a surrogate
+     */
+    void character(int cp) throws IOException {
+        if (cp < 0x80) {
+            octet(cp);
+        } else if (cp < 0x800) {
+            octet(0xC0 | (cp >> 6));
+            octet(0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            octet(0xE0 | (cp >> 12));
+            octet(0x80 | ((cp >> 6) & 0x3F));
+            octet(0x80 | (cp & 0x3F));
+        } else {
+            octet(0xF0 | (cp >> 18));
+            octet(0x80 | ((cp >> 12) & 0x3F));
+            octet(0x80 | ((cp >> 6) & 0x3F));
+            octet(0x80 | (cp & 0x3F));
+        }
+    }
+
+    /**
+     * Writes a decimal number, without creating a string.
+     *
+     * @param value
+     *            Number to write
+     */
+    void number(long value) throws IOException {
+        if (value < 0) {
+            octet('-');
+        }
+
+        // Digits are taken from the negative value, which also covers Long.MIN_VALUE
+        long v = (value < 0 ? value : -value);
+        long div = 1;
+        while (v / div <= -10) {
+            div *= 10;
+        }
+        for (; div != 0; div /= 10) {
+            octet((int) ('0' - v / div));
+            v %= div;
+        }
+    }
+
+    /**
+     * Writes a non-negative number, padded with leading zeros.
+     *
+     * @param value
+     *            Number to write
+     * @param width
+     *            Minimum number of digits
+     */
+    void digits(int value, int width) throws IOException {
+        int len = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            len++;
+        }
+        for (int ix = len; ix < width; ix++) {
+            octet('0');
+        }
+        number(value);
+    }
+
+    /**
+     * Returns the number of octets that can be written before the buffer is drained.
+     *
+     * @return Free space in the buffer
+     */
+    int remaining() {
+        return buffer.length - pos;
+    }
+
+    /**
+     * Returns the position of the next octet in the buffer. The position is only
+     * valid until the buffer is drained.
+     *
+     * @return Position
+     */
+    int position() {
+        return pos;
+    }
+
+    /**
+     * Removes a single octet from the buffer. The octets following it are moved.
+     *
+     * @param position
+     *            Position of the octet, as returned by {@link #position()}
+     */
+    void remove(int position) {
+        System.arraycopy(buffer, position + 1, buffer, position, pos - position - 1);
+        pos--;
+    }
+
+    /**
+     * Writes the buffer to the {@link OutputStream}.
+     */
+    void drain() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Drains the buffer and flushes the {@link OutputStream}.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import org.shredzone.pdbconverter.export.VCardExporter.PhoneType;
+
+/**
+ * A {@link CardWriter} that writes vCard 4.0 content lines.
+ * <p>
+ * vCard 4.0 has no access classification, so it is not written. Types are written in
+ * lower case, and the preferred email address and phone number are marked with a
+ * "PREF=1" parameter.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc6350">RFC 6350</a>
+ */
+public class VCard4Writer extends VCardWriter {
+
+    /**
+     * Creates a new {@link VCard4Writer}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    public VCard4Writer(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    protected String getVersion() {
+        return "4.0";
+    }
+
+    @Override
+    public void classification(String value) {
+        // CLASS was removed in vCard 4.0
+    }
+
+    @Override
+    public void date(String name, int packedDate) throws IOException {
+        w.name(name).value().digits(packedDate, 8).endLine();
+    }
+
+    @Override
+    public void email(String value, boolean pref) throws IOException {
+        w.name("EMAIL");
+        if (pref) {
+            w.parameter("PREF", "1");
+        }
+        w.value().text(value).endLine();
+    }
+
+    @Override
+    public void telephone(PhoneType type, boolean pref, String value) throws IOException {
+        w.name("TEL");
+        if (type != null) {
+            w.parameter("TYPE", type.name().toLowerCase(Locale.ENGLISH));
+        }
+        if (pref) {
+            w.parameter("PREF", "1");
+        }
+        w.value().text(value).endLine();
+    }
+
+}
@@ -21,10 +21,8 @@ package org.shredzone.pdbconverter.export;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.util.EnumMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 import org.shredzone.commons.pdb.PdbDatabase;
 import org.shredzone.commons.pdb.appinfo.AddressAppInfo;
@@ -32,6 +30,7 @@ import org.shredzone.commons.pdb.appinfo.CategoryAppInfo.Category;
 import org.shredzone.commons.pdb.record.AddressRecord;
 import org.shredzone.commons.pdb.record.AddressRecord.Field;
 import org.shredzone.commons.pdb.record.AddressRecord.Label;
+import org.shredzone.pdbconverter.export.FieldClassifier.Type;
 
 /**
  * Writes an {@link AddressRecord} database as vCard file.
@@ -39,22 +38,19 @@ import org.shredzone.commons.pdb.record.AddressRecord.Label;
  * Note that the exporter tries its best to generate a reasonable vCard file. Anyhow
  * the database allows a lot of free text, so there is some guesswork to do and the
  * result may be invalid and data is lost.
+ * <p>
+ * The vCard is written by a {@link CardWriter}. Subclasses may write other
+ * representations of the contacts by overriding {@link #createWriter(OutputStream)},
+ * while the mapping of the address fields is shared.
  *
  * @author Richard "Shred" Körber
  * @see <a href="http://tools.ietf.org/html/rfc2426">RFC 2426</a>
  */
 public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInfo> {
 
-    private static final int MAX_LINE_LENGTH = 73;
-
-    private static final Pattern EMAIL_PATTERN =
-            Pattern.compile("[^@]+\\@[0-9a-z.-]+", Pattern.CASE_INSENSITIVE);
-
-    private static final Pattern URL_PATTERN =
-            Pattern.compile("(ftp|https?)\\:\\/\\/.*", Pattern.CASE_INSENSITIVE);
-
-    private Pattern bdayPattern = null;
+    private final FieldClassifier classifier = new FieldClassifier();
     private EnumMap<Label, PhoneType> phoneMap = new EnumMap<>(Label.class);
+    private AddressDeduplicator.Mode duplicateMode;
 
     /**
      * Creates a new {@link VCardExporter} with common settings.
@@ -68,12 +64,39 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
     }
 
     /**
-     * Sets a regular expression for birthday detection. If a custom field matches this
-     * pattern, it is exported as birthday. Group index 1 must be the year, group index
-     * 2 the month and group index 3 the day, all of them numerical.
+     * Sets the date formats for birthday detection. If a custom field matches one of
+     * these formats, it is exported as birthday. See
+     * {@link FieldClassifier#setDateFormats(List)} for the format syntax.
+     *
+     * @param formats
+     *            Date formats, like "dd.MM.yyyy"
+     * @throws IllegalArgumentException
+     *             if a format is invalid
+     */
+    public void setBirthdayFormats(List<String> formats) {
+        classifier.setDateFormats(formats);
+    }
+
+    /**
+     * Sets how duplicate contacts are handled. If set, duplicates are flagged with an
+     * X-DUPLICATE-GROUP property, using an {@link AddressDeduplicator}.
+     *
+     * @param duplicateMode
+     *            {@link AddressDeduplicator.Mode}, or {@code null} to export all
+     *            contacts unchanged (default)
+     */
+    public void setDuplicateMode(AddressDeduplicator.Mode duplicateMode) {
+        this.duplicateMode = duplicateMode;
+    }
+
+    /**
+     * Gets how duplicate contacts are handled.
+     *
+     * @return {@link AddressDeduplicator.Mode}, or {@code null} if all contacts are
+     *         exported unchanged
      */
-    public void setBirthdayPattern(Pattern bdayPattern) {
-        this.bdayPattern = bdayPattern;
+    protected AddressDeduplicator.Mode getDuplicateMode() {
+        return duplicateMode;
     }
 
     /**
@@ -108,15 +131,45 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
     throws IOException {
         AddressAppInfo appInfo = database.getAppInfo();
 
-        PrintStream ps = new PrintStream(out, false, "UTF-8");
+        CardWriter w = createWriter(out);
 
-        for (AddressRecord address : database.getRecords()) {
-            if (isAccepted(address)) {
-                writeVCard(address, appInfo, ps);
-            }
+        List<AddressRecord> records = database.getRecords();
+        int[] duplicates = null;
+        if (duplicateMode != null) {
+            duplicates = AddressDeduplicator.flagDuplicates(
+                            AddressDeduplicator.findDuplicates(records, getFilter()));
         }
 
-        ps.flush();
+        for (int ix = 0; ix < records.size(); ix++) {
+            AddressRecord address = records.get(ix);
+            if (!isAccepted(address)) continue;
+
+            int group = (duplicates != null ? duplicates[ix] : -1);
+            writeVCard(address, appInfo, w, classifier, group);
+        }
+
+        w.finish();
+    }
+
+    /**
+     * Creates the {@link CardWriter} that writes the cards.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @return {@link CardWriter} to be used
+     */
+    protected CardWriter createWriter(OutputStream out) {
+        return new VCardWriter(out);
+    }
+
+    /**
+     * Creates a {@link FieldClassifier} with the configured birthday formats. Each
+     * thread that writes vCards needs its own {@link FieldClassifier}.
+     *
+     * @return New {@link FieldClassifier}
+     */
+    protected FieldClassifier createClassifier() {
+        return new FieldClassifier(classifier);
     }
 
     /**
@@ -126,39 +179,46 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
      *            {@link AddressRecord} to be written
      * @param appInfo
      *            {@link AddressAppInfo} containing further data
-     * @param ps
-     *            {@link PrintStream} to write to
+     * @param w
+     *            {@link CardWriter} to write to
+     * @param fc
+     *            {@link FieldClassifier} to be used
+     * @param group
+     *            Duplicate group to be flagged, or -1 if the contact is not flagged
      */
-    private void writeVCard(AddressRecord address, AddressAppInfo appInfo, PrintStream ps) {
-        ps.print("BEGIN:VCARD\r\n");
-        ps.print("VERSION:3.0\r\n");
-//        ps.print("PRODID:-//Shredzone.org/pdbconverter 1.0//EN\r\n");
+    protected void writeVCard(AddressRecord address, AddressAppInfo appInfo, CardWriter w,
+            FieldClassifier fc, int group) throws IOException {
+        w.begin();
 
         if (address.isSecret()) {
-            ps.print("CLASS:CONFIDENTIAL\r\n");
+            w.classification("CONFIDENTIAL");
         }
 
-        writeName(address, ps);
-        writeOrg(address, ps);
-        writeAdr(address, ps);
+        if (group >= 0) {
+            w.text("X-DUPLICATE-GROUP", String.valueOf(group));
+        }
+
+        writeName(address, w);
+        writeOrg(address, w);
+        writeAdr(address, w);
 
         int pref = address.getDisplayPhone();
 
-        writePhone(address.getField(Field.PHONE1), address.getLabel(Field.PHONE1), pref == 0, ps);
-        writePhone(address.getField(Field.PHONE2), address.getLabel(Field.PHONE2), pref == 1, ps);
-        writePhone(address.getField(Field.PHONE3), address.getLabel(Field.PHONE3), pref == 2, ps);
-        writePhone(address.getField(Field.PHONE4), address.getLabel(Field.PHONE4), pref == 3, ps);
-        writePhone(address.getField(Field.PHONE5), address.getLabel(Field.PHONE5), pref == 4, ps);
+        writePhone(address.getField(Field.PHONE1), address.getLabel(Field.PHONE1), pref == 0, w, fc);
+        writePhone(address.getField(Field.PHONE2), address.getLabel(Field.PHONE2), pref == 1, w, fc);
+        writePhone(address.getField(Field.PHONE3), address.getLabel(Field.PHONE3), pref == 2, w, fc);
+        writePhone(address.getField(Field.PHONE4), address.getLabel(Field.PHONE4), pref == 3, w, fc);
+        writePhone(address.getField(Field.PHONE5), address.getLabel(Field.PHONE5), pref == 4, w, fc);
 
-        writeCustom(address.getField(Field.CUSTOM1), ps);
-        writeCustom(address.getField(Field.CUSTOM2), ps);
-        writeCustom(address.getField(Field.CUSTOM3), ps);
-        writeCustom(address.getField(Field.CUSTOM4), ps);
+        writeCustom(address.getField(Field.CUSTOM1), w, fc);
+        writeCustom(address.getField(Field.CUSTOM2), w, fc);
+        writeCustom(address.getField(Field.CUSTOM3), w, fc);
+        writeCustom(address.getField(Field.CUSTOM4), w, fc);
 
-        writeCategory(address, appInfo, ps);
-        writeNote(address, ps);
+        writeCategory(address, appInfo, w);
+        writeNote(address, w);
 
-        ps.print("END:VCARD\r\n");
+        w.end();
     }
 
     /**
@@ -167,10 +227,11 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
      *
      * @param address
      *            {@link AddressRecord} to be written
-     * @param ps
-     *            {@link PrintStream} to write to
+     * @param w
+     *            {@link CardWriter} to write to
      */
-    private void writeName(AddressRecord address, PrintStream ps) {
+    private void writeName(AddressRecord address, CardWriter w)
+    throws IOException {
         String first = address.getField(Field.FIRST_NAME);
         String name = address.getField(Field.NAME);
         if (name == null) {
@@ -188,13 +249,8 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
             }
         }
 
-        if (first != null) {
-            writeLine(ps, "N", null, name, first);
-            writeLine(ps, "FN", null, first + " " + name);
-        } else {
-            writeLine(ps, "N", null, name);
-            writeLine(ps, "FN", null, name);
-        }
+        w.structured("N", name, first, null, null, null);
+        w.text("FN", (first != null ? first + ' ' + name : name));
     }
 
     /**
@@ -202,18 +258,18 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
      *
      * @param address
      *            {@link AddressRecord} to be written
-     * @param ps
-     *            {@link PrintStream} to write to
+     * @param w
+     *            {@link CardWriter} to write to
      */
-    private void writeOrg(AddressRecord address, PrintStream ps) {
+    private void writeOrg(AddressRecord address, CardWriter w) throws IOException {
         String org = address.getField(Field.COMPANY);
         if (org != null) {
-            writeLine(ps, "ORG", null, org);
+            w.structured("ORG", org);
         }
 
         String title = address.getField(Field.TITLE);
         if (title != null) {
-            writeLine(ps, "TITLE", null, title);
+            w.text("TITLE", title);
         }
     }
 
@@ -222,10 +278,10 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
      *
      * @param address
      *            {@link AddressRecord} to be written
-     * @param ps
-     *            {@link PrintStream} to write to
+     * @param w
+     *            {@link CardWriter} to write to
      */
-    private void writeAdr(AddressRecord address, PrintStream ps) {
+    private void writeAdr(AddressRecord address, CardWriter w) throws IOException {
         String addr = address.getField(Field.ADDRESS);
         String city = address.getField(Field.CITY);
         String state = address.getField(Field.STATE);
@@ -233,7 +289,7 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
         String country = address.getField(Field.COUNTRY);
 
         if (addr != null || city != null || state != null || zip != null || country != null) {
-            writeLine(ps, "ADR", null, null, null, addr, city, state, zip, country);
+            w.structured("ADR", null, null, addr, city, state, zip, country);
         }
     }
 
@@ -247,72 +303,58 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
      *            Respective label of this phone number
      * @param pref
      *            Preferred phone
-     * @param ps
-     *            {@link PrintStream} to write to
+     * @param w
+     *            {@link CardWriter} to write to
+     * @param fc
+     *            {@link FieldClassifier} to be used
      */
-    private void writePhone(String value, Label label, boolean pref, PrintStream ps) {
+    private void writePhone(String value, Label label, boolean pref, CardWriter w,
+            FieldClassifier fc) throws IOException {
         if (value == null) return;
 
-        if (EMAIL_PATTERN.matcher(value).matches()) {
-            writeLine(
-                ps,
-                "EMAIL",
-                "TYPE=INTERNET" + (pref ? ",PREF" : ""),
-                value
-            );
+        Type type = fc.classify(value);
 
-        } else if (URL_PATTERN.matcher(value).matches()) {
-            writeLine(ps, "URL", null, value);
+        if (type == Type.EMAIL) {
+            w.email(value, pref);
 
-        } else {
-            String type = "";
-            PhoneType pt = phoneMap.get(label);
-            if (pt != null) {
-                type = pt.name();
-            }
-            if (pref) {
-                if (type.length() > 0) type += ',';
-                type += "PREF";
+        } else if (type == Type.URL) {
+            w.uri("URL", value);
 
-            }
-            if (type.length() > 0) {
-                writeLine(ps, "TEL", "TYPE=" + type, value);
-            } else {
-                writeLine(ps, "TEL", null, value);
-            }
+        } else {
+            w.telephone(phoneMap.get(label), pref, value);
         }
     }
 
     /**
-     * Writes a custom field. EMAIL, URL or BDAY is written if the respective patterns
-     * were recognized. Otherwise a NOTE is written, which could lead to a vCard having
-     * more than one NOTE.
+     * Writes a custom field. EMAIL, URL or BDAY is written if the {@link FieldClassifier}
+     * recognized the respective type. Otherwise a NOTE is written, which could lead to a
+     * vCard having more than one NOTE.
      *
      * @param value
      *            Custom valur to be written. Nothing is written if this is
      *            {@code null}.
-     * @param ps
-     *            {@link PrintStream} to write to
+     * @param w
+     *            {@link CardWriter} to write to
+     * @param fc
+     *            {@link FieldClassifier} to be used
      */
-    private void writeCustom(String value, PrintStream ps) {
+    private void writeCustom(String value, CardWriter w, FieldClassifier fc)
+    throws IOException {
         if (value == null) return;
 
-        Matcher m;
+        Type type = fc.classify(value);
 
-        if (EMAIL_PATTERN.matcher(value).matches()) {
-            writeLine(ps, "EMAIL", "TYPE=INTERNET", value);
+        if (type == Type.EMAIL) {
+            w.email(value, false);
 
-        } else if (URL_PATTERN.matcher(value).matches()) {
-            writeLine(ps, "URL", null, value);
+        } else if (type == Type.URL) {
+            w.uri("URL", value);
 
-        } else if (bdayPattern != null && (m = bdayPattern.matcher(value)).matches()) {
-            int year  = Integer.parseInt(m.group(1));
-            int month = Integer.parseInt(m.group(2));
-            int day   = Integer.parseInt(m.group(3));
-            writeLine(ps, "BDAY", null, String.format("%04d-%02d-%02d", year, month, day));
+        } else if (type == Type.DATE) {
+            w.date("BDAY", fc.getDate());
 
         } else {
-            writeLine(ps, "NOTE", null, value);
+            w.text("NOTE", value);
         }
     }
 
@@ -323,14 +365,15 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
      *            {@link AddressRecord} to be written
      * @param appInfo
      *            {@link AddressAppInfo} carrying the category information
-     * @param ps
-     *            {@link PrintStream} to write to
+     * @param w
+     *            {@link CardWriter} to write to
      */
-    private void writeCategory(AddressRecord address, AddressAppInfo appInfo, PrintStream ps) {
+    private void writeCategory(AddressRecord address, AddressAppInfo appInfo, CardWriter w)
+    throws IOException {
         int catKey = address.getCategoryIndex();
         Category category = appInfo.getCategoryByIndex(catKey);
         if (category != null) {
-            writeLine(ps, "CATEGORIES", null, category.getName());
+            w.text("CATEGORIES", category.getName());
         }
     }
 
@@ -339,64 +382,15 @@ public class VCardExporter extends AbstractExporter<AddressRecord, AddressAppInf
      *
      * @param address
      *            {@link AddressRecord} to be written
-     * @param ps
-     *            {@link PrintStream} to write to
+     * @param w
+     *            {@link CardWriter} to write to
      */
-    private void writeNote(AddressRecord address, PrintStream ps) {
+    private void writeNote(AddressRecord address, CardWriter w)
+    throws IOException {
         String note = address.getField(Field.NOTE);
         if (note != null) {
-            writeLine(ps, "NOTE", null, note);
-        }
-    }
-
-    /**
-     * Writes a single vCard line. Cares for proper line breaks and escaping.
-     *
-     * @param ps
-     *            {@link PrintStream} to write to
-     * @param property
-     *            line property
-     * @param parameter
-     *            optional property parameters, not escaped (can be {@code null})
-     * @param values
-     *            values of this property
-     */
-    private void writeLine(PrintStream ps, String property, String parameter, String... values) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(property);
-        if (parameter != null) {
-            sb.append(';').append(parameter);
-        }
-        sb.append(':');
-        for (int ix = 0; ix < values.length; ix++) {
-            if (ix > 0) sb.append(';');
-            if (values[ix] != null) {
-                sb.append(escape(values[ix]));
-            }
+            w.text("NOTE", note);
         }
-
-        int pos = MAX_LINE_LENGTH;
-        while (pos < sb.length()) {
-            sb.insert(pos-1, "\r\n ");
-            pos += MAX_LINE_LENGTH + 1;
-        }
-
-        sb.append("\r\n");
-        ps.print(sb.toString());
-    }
-
-    /**
-     * Escapes all characters that need to be escaped.
-     *
-     * @param str
-     *            String to escape
-     * @return Escaped string
-     */
-    private String escape(String str) {
-        return str.replace("\\", "\\\\")    // Must be first!
-                  .replace(",", "\\,")
-                  .replace(";", "\\;")
-                  .replace("\n", "\\n");
     }
 
     /**
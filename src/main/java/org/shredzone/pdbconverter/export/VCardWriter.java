@@ -0,0 +1,134 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.shredzone.pdbconverter.export.VCardExporter.PhoneType;
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * A {@link CardWriter} that writes vCard 3.0 content lines.
+ * <p>
+ * Lines are folded like the vCard exporter always did, after 72 octets, unless only
+ * a single ASCII character would be moved to the next line. Lines containing non-ASCII
+ * characters are folded by octets instead of characters.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc2426">RFC 2426</a>
+ */
+public class VCardWriter implements CardWriter {
+
+    private static final int MAX_LINE_LENGTH = 72;
+
+    protected final ContentLineWriter w;
+
+    /**
+     * Creates a new {@link VCardWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    public VCardWriter(OutputStream out) {
+        this.w = new ContentLineWriter(out, MAX_LINE_LENGTH, true);
+    }
+
+    /**
+     * Returns the vCard version that is written.
+     */
+    protected String getVersion() {
+        return "3.0";
+    }
+
+    @Override
+    public void begin() throws IOException {
+        w.begin("VCARD");
+        w.property("VERSION", getVersion());
+//        w.property("PRODID", "-//Shredzone.org/pdbconverter 1.0//EN");
+    }
+
+    @Override
+    public void end() throws IOException {
+        w.end("VCARD");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        w.flush();
+    }
+
+    @Override
+    public void classification(String value) throws IOException {
+        w.property("CLASS", value);
+    }
+
+    @Override
+    public void text(String name, String value) throws IOException {
+        w.property(name, value);
+    }
+
+    @Override
+    public void structured(String name, String... values) throws IOException {
+        w.name(name).value();
+        for (int ix = 0; ix < values.length; ix++) {
+            if (ix > 0) w.raw(';');
+            w.text(values[ix]);
+        }
+        w.endLine();
+    }
+
+    @Override
+    public void uri(String name, String value) throws IOException {
+        w.property(name, value);
+    }
+
+    @Override
+    public void date(String name, int packedDate) throws IOException {
+        w.name(name).value()
+         .digits(DateMath.year(packedDate), 4).raw('-')
+         .digits(DateMath.month(packedDate), 2).raw('-')
+         .digits(DateMath.day(packedDate), 2)
+         .endLine();
+    }
+
+    @Override
+    public void email(String value, boolean pref) throws IOException {
+        w.name("EMAIL").parameter("TYPE", (pref ? "INTERNET,PREF" : "INTERNET"))
+         .value().text(value).endLine();
+    }
+
+    @Override
+    public void telephone(PhoneType type, boolean pref, String value) throws IOException {
+        w.name("TEL");
+        if (type != null || pref) {
+            w.raw(";TYPE=");
+            if (type != null) {
+                w.raw(type.name());
+            }
+            if (pref) {
+                if (type != null) w.raw(',');
+                w.raw("PREF");
+            }
+        }
+        w.value().text(value).endLine();
+    }
+
+}
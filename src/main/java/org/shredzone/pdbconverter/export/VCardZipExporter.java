@@ -0,0 +1,197 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.Deflater;
+
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.AddressAppInfo;
+import org.shredzone.commons.pdb.record.AddressRecord;
+
+/**
+ * Writes an {@link AddressRecord} database as ZIP file, with a separate vCard file for
+ * each contact.
+ * <p>
+ * If a duplicate mode is set, duplicate contacts are flagged by an X-DUPLICATE-GROUP
+ * property and a "duplicate-group" attribute in the "db-info.xml".
+ * <p>
+ * If more than one thread is set, the vCards are rendered and deflated in parallel,
+ * by the {@link ZipWriter}. The ZIP entries are still written in record order.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class VCardZipExporter extends VCardExporter {
+
+    private int threads = 1;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Sets the number of threads that render the vCards and deflate the ZIP entries.
+     * Default is 1, which does all the work on the calling thread.
+     *
+     * @param threads
+     *            Number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the deflate level of the ZIP entries. Default is
+     * {@link Deflater#DEFAULT_COMPRESSION}. 0 stores all entries
+     * without compression.
+     *
+     * @param level
+     *            Deflate level
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Writes a database of {@link AddressRecord} to a ZIP file. The zip file contains a
+     * file "db-info.xml" with generic database information, and a .vcf file for each
+     * database record.
+     */
+    @Override
+    public void export(PdbDatabase<AddressRecord, AddressAppInfo> database, OutputStream out)
+    throws IOException {
+        long now = System.currentTimeMillis();
+
+        try (ZipWriter zw = new ZipWriter(out, threads)) {
+            zw.setLevel(level);
+
+            List<AddressRecord> records = database.getRecords();
+            int[] selection = selectAccepted(records);
+            int[] groups = null;
+
+            if (getDuplicateMode() != null) {
+                groups = AddressDeduplicator.flagDuplicates(
+                                AddressDeduplicator.findDuplicates(records, getFilter()));
+            }
+
+            writeDatabaseInfo(database, selection, groups, zw, now);
+
+            for (int ix : selection) {
+                zw.putEntry(XmlHelper.numbered("cards/", ix, 4, ".vcf"), now,
+                                new CardRenderer(records.get(ix), database.getAppInfo(), group(groups, ix)));
+            }
+        }
+    }
+
+    /**
+     * Gets the duplicate group of a record.
+     *
+     * @param groups
+     *            Result of {@link AddressDeduplicator#flagDuplicates(int[])}, or
+     *            {@code null} if duplicates are not flagged
+     * @param ix
+     *            Record index
+     * @return Duplicate group, or -1 if the record is not flagged
+     */
+    private static int group(int[] groups, int ix) {
+        return (groups != null ? groups[ix] : -1);
+    }
+
+    /**
+     * Creates the "db-info.xml" file with generic database information.
+     *
+     * @param database
+     *            {@link PdbDatabase} to be written
+     * @param selection
+     *            Indexes of the records to be written
+     * @param groups
+     *            Duplicate groups to be flagged, or {@code null}
+     * @param zw
+     *            {@link ZipWriter} to write to
+     * @param now
+     *            Modification time of the entry
+     */
+    private void writeDatabaseInfo(PdbDatabase<AddressRecord, AddressAppInfo> database,
+                int[] selection, int[] groups, ZipWriter zw, long now)
+    throws IOException {
+        try (OutputStream out = zw.putEntry("db-info.xml", now)) {
+            XmlHelper xh = new XmlHelper();
+            xh.openXmlWriter(out, "dbinfo");
+            xh.writeDatabase(database);
+            xh.writeCategories(database);
+
+            xh.startElement("records");
+
+            List<AddressRecord> records = database.getRecords();
+            for (int ix : selection) {
+                AddressRecord record = records.get(ix);
+                xh.startElement("record")
+                        .attribute("id", ix)
+                        .attribute("category", record.getCategoryIndex())
+                        .attribute("secret", record.isSecret());
+                if (group(groups, ix) >= 0) {
+                    xh.attribute("duplicate-group", group(groups, ix));
+                }
+                xh.writeNumbered("file", "cards/", ix, 4, ".vcf");
+                xh.endElement();
+            }
+
+            xh.endElement();
+
+            xh.closeXmlWriter();
+        }
+    }
+
+    /**
+     * Renders a single {@link AddressRecord}.
+     */
+    private class CardRenderer implements Callable<byte[]> {
+        private final AddressRecord address;
+        private final AddressAppInfo appInfo;
+        private final int group;
+
+        /**
+         * Creates a new {@link CardRenderer}.
+         *
+         * @param address
+         *            {@link AddressRecord} to be rendered
+         * @param appInfo
+         *            {@link AddressAppInfo} containing further data
+         * @param group
+         *            Duplicate group to be flagged, or -1
+         */
+        public CardRenderer(AddressRecord address, AddressAppInfo appInfo, int group) {
+            this.address = address;
+            this.appInfo = appInfo;
+            this.group = group;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+            CardWriter w = createWriter(buffer);
+            writeVCard(address, appInfo, w, createClassifier(), group);
+            w.finish();
+            return buffer.toByteArray();
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.OutputStream;
+
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+
+/**
+ * Writes a {@link ScheduleRecord} database as xCal file, which is the XML
+ * representation of iCalendar. The events are mapped like in {@link ScheduleExporter}.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc6321">RFC 6321</a>
+ */
+public class XCalendarExporter extends StreamingScheduleExporter {
+
+    @Override
+    protected CalendarWriter createWriter(OutputStream out) {
+        return new XCalendarWriter(out, false);
+    }
+
+    @Override
+    protected CalendarWriter createFragmentWriter(OutputStream out) {
+        return new XCalendarWriter(out, true);
+    }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link CalendarWriter} that writes xCal, the XML representation of iCalendar.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc6321">RFC 6321</a>
+ */
+public class XCalendarWriter extends AbstractStructuredCalendarWriter {
+
+    private static final String NAMESPACE = "urn:ietf:params:xml:ns:icalendar-2.0";
+
+    private static final int EMPTY = 0;
+    private static final int PROPERTIES = 1;
+    private static final int COMPONENTS = 2;
+
+    private final XmlWriter xw;
+    private int[] state = new int[8];
+    private int depth = -1;
+
+    /**
+     * Creates a new {@link XCalendarWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     * @param fragment
+     *            {@code true} to write a fragment of components that continues the
+     *            components element of a VCALENDAR. No XML declaration and no root
+     *            element are written then.
+     */
+    public XCalendarWriter(OutputStream out, boolean fragment) {
+        xw = new XmlWriter(out);
+        if (fragment) {
+            xw.continueElement("icalendar");
+            xw.continueElement("vcalendar");
+            xw.continueElement("components");
+            depth = 0;
+            state[depth] = COMPONENTS;
+        }
+    }
+
+    @Override
+    public void begin(String component) throws IOException {
+        if (depth < 0) {
+            xw.startDocument();
+            xw.startElement("icalendar", "xmlns", NAMESPACE);
+        } else {
+            if (state[depth] == PROPERTIES) {
+                xw.endElement();
+            }
+            if (state[depth] != COMPONENTS) {
+                xw.startElement("components");
+            }
+            state[depth] = COMPONENTS;
+        }
+
+        depth++;
+        if (depth == state.length) {
+            int[] newState = new int[state.length * 2];
+            System.arraycopy(state, 0, newState, 0, state.length);
+            state = newState;
+        }
+        state[depth] = EMPTY;
+
+        xw.startElement(component.toLowerCase(Locale.ENGLISH));
+    }
+
+    @Override
+    public void end(String component) throws IOException {
+        if (state[depth] != EMPTY) {
+            xw.endElement();
+        }
+        xw.endElement();
+
+        depth--;
+        if (depth < 0) {
+            xw.endElement();
+            xw.endDocument();
+        }
+    }
+
+    @Override
+    protected void property(String name, String tzid, String type, String value)
+    throws IOException {
+        startProperty(name, tzid);
+        writeValue(type, value);
+        xw.endElement();
+    }
+
+    @Override
+    protected void properties(String name, String type, String[] values, int count)
+    throws IOException {
+        startProperty(name, null);
+        for (int ix = 0; ix < count; ix++) {
+            writeValue(type, values[ix]);
+        }
+        xw.endElement();
+    }
+
+    @Override
+    protected void recurProperty(String name, Map<String, String> parts) throws IOException {
+        startProperty(name, null);
+        xw.startElement("recur");
+        for (Map.Entry<String, String> part : parts.entrySet()) {
+            for (String value : part.getValue().split(",")) {
+                writeValue(part.getKey(), value);
+            }
+        }
+        xw.endElement();
+        xw.endElement();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        xw.flush();
+    }
+
+    /**
+     * Starts a property element, and writes the parameters.
+     *
+     * @param name
+     *            Property name
+     * @param tzid
+     *            Time zone ID parameter, or {@code null}
+     */
+    private void startProperty(String name, String tzid) throws IOException {
+        if (state[depth] == EMPTY) {
+            xw.startElement("properties");
+            state[depth] = PROPERTIES;
+        } else if (state[depth] == COMPONENTS) {
+            throw new IllegalStateException("property " + name + " after subcomponent");
+        }
+
+        xw.startElement(name);
+        if (tzid != null) {
+            xw.startElement("parameters");
+            xw.startElement("tzid");
+            writeValue("text", tzid);
+            xw.endElement();
+            xw.endElement();
+        }
+    }
+
+    /**
+     * Writes a value element.
+     *
+     * @param type
+     *            Value type, used as element name
+     * @param value
+     *            Value to write
+     */
+    private void writeValue(String type, String value) throws IOException {
+        xw.startElement(type);
+        xw.writeContent(value);
+        xw.endElement();
+    }
+
+}
@@ -21,34 +21,25 @@ package org.shredzone.pdbconverter.export;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.List;
-import java.util.TimeZone;
 
 import org.shredzone.commons.pdb.PdbDatabase;
 import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
 import org.shredzone.commons.pdb.appinfo.CategoryAppInfo.Category;
 
-import net.shredzone.jshred.io.XMLWriter;
-
 /**
  * A helper class for writing XML content to the given output stream.
  * <p>
- * This class uses XMLWriter from jshred-util, but can easily be changed to use
- * any other XML writer.
+ * This class uses {@link XmlWriter}, but can easily be changed to use any other XML
+ * writer. For writing records, prefer the methods taking primitive values, as they
+ * do not allocate any objects.
  *
  * @author Richard "Shred" Körber
  */
 public class XmlHelper {
 
-    private final SimpleDateFormat dateFmt;
-    private XMLWriter xw;
-
-    public XmlHelper() {
-        dateFmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-        dateFmt.setTimeZone(TimeZone.getTimeZone("GMT"));
-    }
+    private XmlWriter xw;
 
     /**
      * Opens the XML writer for the given output stream. UTF-8 is used.
@@ -63,7 +54,7 @@ public class XmlHelper {
         if (xw != null) {
             throw new IllegalStateException("Writer is already opened");
         }
-        xw = new XMLWriter(out);
+        xw = new XmlWriter(out);
         xw.startDocument();
         xw.startElement(tag);
         return this;
@@ -91,11 +82,60 @@ public class XmlHelper {
      * @return {@code this}
      */
     public XmlHelper startElement(String tag, Object... attr) throws IOException {
-        String[] param = new String[attr.length];
-        for (int ix = 0; ix < attr.length; ix++) {
-            param[ix] = String.valueOf(attr[ix]);
+        xw.startElement(tag);
+        for (int ix = 0; ix + 1 < attr.length; ix += 2) {
+            String name = String.valueOf(attr[ix]);
+            Object value = attr[ix + 1];
+            if (value instanceof Integer || value instanceof Long) {
+                xw.attribute(name, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                xw.attribute(name, ((Boolean) value).booleanValue());
+            } else {
+                xw.attribute(name, String.valueOf(value));
+            }
         }
-        xw.startElement(tag, param);
+        return this;
+    }
+
+    /**
+     * Adds an attribute to the element that was just started.
+     *
+     * @param name
+     *            Attribute name
+     * @param value
+     *            Attribute value
+     * @return {@code this}
+     */
+    public XmlHelper attribute(String name, String value) throws IOException {
+        xw.attribute(name, value);
+        return this;
+    }
+
+    /**
+     * Adds a numeric attribute to the element that was just started.
+     *
+     * @param name
+     *            Attribute name
+     * @param value
+     *            Attribute value
+     * @return {@code this}
+     */
+    public XmlHelper attribute(String name, long value) throws IOException {
+        xw.attribute(name, value);
+        return this;
+    }
+
+    /**
+     * Adds a boolean attribute to the element that was just started.
+     *
+     * @param name
+     *            Attribute name
+     * @param value
+     *            Attribute value
+     * @return {@code this}
+     */
+    public XmlHelper attribute(String name, boolean value) throws IOException {
+        xw.attribute(name, value);
         return this;
     }
 
@@ -111,6 +151,18 @@ public class XmlHelper {
         return this;
     }
 
+    /**
+     * Writes a numeric content of an element.
+     *
+     * @param content
+     *            Content to be written
+     * @return {@code this}
+     */
+    public XmlHelper writeContent(long content) throws IOException {
+        xw.writeContent(content);
+        return this;
+    }
+
     /**
      * Ends the last element on the element stack.
      *
@@ -137,6 +189,22 @@ public class XmlHelper {
         return this;
     }
 
+    /**
+     * Writes a numeric value as content of a container named key.
+     *
+     * @param key
+     *            Container key
+     * @param value
+     *            Value to be written
+     * @return {@code this}
+     */
+    public XmlHelper writeValue(String key, long value) throws IOException {
+        xw.startElement(key);
+        xw.writeContent(value);
+        xw.endElement();
+        return this;
+    }
+
     /**
      * Writes a date as content of a container named key. The date and time is
      * properly RFC 3339 formatted.
@@ -149,9 +217,9 @@ public class XmlHelper {
      * @see <a href="http://www.ietf.org/rfc/rfc3339.txt">RFC 3339</a>
      */
     public XmlHelper writeDate(String key, Calendar date) throws IOException {
-        startElement(key);
-        writeContent(dateFmt.format(date.getTime()));
-        endElement();
+        xw.startElement(key);
+        xw.writeTimestamp(date.getTimeInMillis());
+        xw.endElement();
         return this;
     }
 
@@ -173,6 +241,54 @@ public class XmlHelper {
         return this;
     }
 
+    /**
+     * Writes a numbered name as content of a container named key, e.g.
+     * "images/0012.png". It is equivalent to a {@link #writeFormatted(String, String,
+     * Object...)} with a "%0nd" format, but does not need a formatter. The name is
+     * built by {@link #numbered(String, int, int, String)}.
+     *
+     * @param key
+     *            Container key
+     * @param prefix
+     *            Text in front of the number
+     * @param number
+     *            Non-negative number
+     * @param width
+     *            Minimum number of digits, padded with leading zeros
+     * @param suffix
+     *            Text after the number
+     * @return {@code this}
+     */
+    public XmlHelper writeNumbered(String key, String prefix, int number, int width, String suffix)
+    throws IOException {
+        return writeValue(key, numbered(prefix, number, width, suffix));
+    }
+
+    /**
+     * Builds a numbered name, e.g. "images/0012.png". Use this instead of
+     * {@link String#format(String, Object...)} for names that are built per record.
+     *
+     * @param prefix
+     *            Text in front of the number
+     * @param number
+     *            Non-negative number
+     * @param width
+     *            Minimum number of digits, padded with leading zeros
+     * @param suffix
+     *            Text after the number
+     * @return Numbered name
+     */
+    public static String numbered(String prefix, int number, int width, String suffix) {
+        String digits = Integer.toString(number);
+        StringBuilder sb = new StringBuilder(prefix.length() + width + suffix.length());
+        sb.append(prefix);
+        for (int ix = digits.length(); ix < width; ix++) {
+            sb.append('0');
+        }
+        sb.append(digits).append(suffix);
+        return sb.toString();
+    }
+
     /**
      * Writes the informal part of the given database.
      *
@@ -209,7 +325,9 @@ public class XmlHelper {
         for (int ix = 0; ix < categories.size(); ix++) {
             Category cat = categories.get(ix);
             if (cat != null) {
-                startElement("category", "id", ix, "key", cat.getKey());
+                xw.startElement("category");
+                xw.attribute("id", ix);
+                xw.attribute("key", cat.getKey());
                 writeContent(cat.getName());
                 endElement();
             }
@@ -0,0 +1,353 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * A minimal streaming XML writer.
+ * <p>
+ * Text is escaped with a precomputed table for ASCII characters. Characters that are
+ * not permitted in XML 1.0 are replaced by U+FFFD. Attributes are written after the element was
+ * started, and numbers are written without creating strings, so writing an element
+ * does not allocate any objects.
+ * <p>
+ * Elements containing other elements are indented. The writer does not check if the
+ * generated XML is well-formed, and it is not thread-safe.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class XmlWriter implements Flushable {
+
+    private static final char[][] ESCAPES = new char[128][];
+    private static final char REPLACEMENT = '\uFFFD';
+
+    static {
+        for (int ix = 0; ix < 0x20; ix++) {
+            ESCAPES[ix] = new char[] { REPLACEMENT };
+        }
+        ESCAPES['\t'] = null;
+        ESCAPES['\n'] = null;
+        ESCAPES['\r'] = "&#13;".toCharArray();
+        ESCAPES['&'] = "&amp;".toCharArray();
+        ESCAPES['<'] = "&lt;".toCharArray();
+        ESCAPES['>'] = "&gt;".toCharArray();
+        ESCAPES['"'] = "&quot;".toCharArray();
+    }
+
+    private final Utf8Buffer buf;
+
+    private String[] tags = new String[16];
+    private boolean[] nested = new boolean[16];
+    private int depth = 0;
+    private boolean open = false;
+
+    /**
+     * Creates a new {@link XmlWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write to
+     */
+    public XmlWriter(OutputStream out) {
+        this.buf = new Utf8Buffer(out);
+    }
+
+    /**
+     * Writes the XML declaration.
+     */
+    public void startDocument() throws IOException {
+        buf.ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    }
+
+    /**
+     * Starts an element. Attributes may be added until content or another element is
+     * written.
+     *
+     * @param tag
+     *            Element name
+     */
+    public void startElement(String tag) throws IOException {
+        closeStartTag();
+        if (depth > 0) {
+            nested[depth - 1] = true;
+            indent();
+        }
+        buf.ascii('<');
+        buf.ascii(tag);
+        push(tag);
+        open = true;
+    }
+
+    /**
+     * Continues an element that was started by another writer and already contains
+     * nested elements, without writing anything. This is useful for writing fragments
+     * of a document, which are to be concatenated later.
+     *
+     * @param tag
+     *            Element name
+     */
+    public void continueElement(String tag) {
+        push(tag);
+        nested[depth - 1] = true;
+    }
+
+    /**
+     * Starts an element with the given attributes.
+     *
+     * @param tag
+     *            Element name
+     * @param attr
+     *            Attributes, as name/value pairs
+     */
+    public void startElement(String tag, String... attr) throws IOException {
+        startElement(tag);
+        for (int ix = 0; ix + 1 < attr.length; ix += 2) {
+            attribute(attr[ix], attr[ix + 1]);
+        }
+    }
+
+    /**
+     * Adds an attribute to the element that was just started.
+     *
+     * @param name
+     *            Attribute name
+     * @param value
+     *            Attribute value
+     */
+    public void attribute(String name, String value) throws IOException {
+        attributeName(name);
+        text(value);
+        buf.ascii('"');
+    }
+
+    /**
+     * Adds a numeric attribute to the element that was just started.
+     *
+     * @param name
+     *            Attribute name
+     * @param value
+     *            Attribute value
+     */
+    public void attribute(String name, long value) throws IOException {
+        attributeName(name);
+        buf.number(value);
+        buf.ascii('"');
+    }
+
+    /**
+     * Adds a boolean attribute to the element that was just started.
+     *
+     * @param name
+     *            Attribute name
+     * @param value
+     *            Attribute value
+     */
+    public void attribute(String name, boolean value) throws IOException {
+        attributeName(name);
+        buf.ascii(value ? "true" : "false");
+        buf.ascii('"');
+    }
+
+    /**
+     * Writes text content.
+     *
+     * @param content
+     *            Content to be written
+     */
+    public void writeContent(String content) throws IOException {
+        closeStartTag();
+        text(content);
+    }
+
+    /**
+     * Writes numeric content.
+     *
+     * @param content
+     *            Content to be written
+     */
+    public void writeContent(long content) throws IOException {
+        closeStartTag();
+        buf.number(content);
+    }
+
+    /**
+     * Writes a number as content, padded with leading zeros.
+     *
+     * @param content
+     *            Non-negative number to be written
+     * @param width
+     *            Minimum number of digits
+     */
+    public void writeDigits(int content, int width) throws IOException {
+        closeStartTag();
+        buf.digits(content, width);
+    }
+
+    /**
+     * Writes an instant as content, as RFC 3339 timestamp in UTC. See
+     * {@link DateMath#formatTimestamp(long)}.
+     *
+     * @param millis
+     *            Milliseconds since epoch, must be within the years 0 to 9999
+     */
+    public void writeTimestamp(long millis) throws IOException {
+        int packed = DateMath.packedDate(DateMath.epochDayOf(millis));
+        int second = DateMath.secondOfDayOf(millis);
+
+        writeDigits(DateMath.year(packed), 4);
+        buf.ascii('-');
+        writeDigits(DateMath.month(packed), 2);
+        buf.ascii('-');
+        writeDigits(DateMath.day(packed), 2);
+        buf.ascii('T');
+        writeDigits(second / 3600, 2);
+        buf.ascii(':');
+        writeDigits((second / 60) % 60, 2);
+        buf.ascii(':');
+        writeDigits(second % 60, 2);
+        buf.ascii('Z');
+    }
+
+    /**
+     * Ends the last element on the element stack. Empty elements are closed
+     * immediately.
+     */
+    public void endElement() throws IOException {
+        depth--;
+        if (open) {
+            buf.ascii("/>");
+            open = false;
+            return;
+        }
+        if (nested[depth]) {
+            indent();
+        }
+        buf.ascii("</");
+        buf.ascii(tags[depth]);
+        buf.ascii('>');
+    }
+
+    /**
+     * Ends the document.
+     */
+    public void endDocument() throws IOException {
+        buf.ascii('\n');
+    }
+
+    /**
+     * Flushes the internal buffer to the {@link OutputStream}. The stream itself is
+     * flushed as well.
+     */
+    @Override
+    public void flush() throws IOException {
+        buf.flush();
+    }
+
+    /**
+     * Writes the start of an attribute.
+     */
+    private void attributeName(String name) throws IOException {
+        if (!open) {
+            throw new IllegalStateException("No element was started for attribute " + name);
+        }
+        buf.ascii(' ');
+        buf.ascii(name);
+        buf.ascii("=\"");
+    }
+
+    /**
+     * Puts an element on the element stack.
+     *
+     * @param tag
+     *            Element name
+     */
+    private void push(String tag) {
+        if (depth == tags.length) {
+            String[] newTags = new String[depth * 2];
+            System.arraycopy(tags, 0, newTags, 0, depth);
+            tags = newTags;
+            boolean[] newNested = new boolean[depth * 2];
+            System.arraycopy(nested, 0, newNested, 0, depth);
+            nested = newNested;
+        }
+        tags[depth] = tag;
+        nested[depth] = false;
+        depth++;
+    }
+
+    /**
+     * Closes the start tag of the current element, if it is still open.
+     */
+    private void closeStartTag() throws IOException {
+        if (open) {
+            buf.ascii('>');
+            open = false;
+        }
+    }
+
+    /**
+     * Starts a new line, indented to the current depth.
+     */
+    private void indent() throws IOException {
+        buf.ascii('\n');
+        for (int ix = 0; ix < depth; ix++) {
+            buf.ascii(' ');
+            buf.ascii(' ');
+        }
+    }
+
+    /**
+     * Writes an escaped text.
+     *
+     * @param str
+     *            Text to write
+     */
+    private void text(String str) throws IOException {
+        for (int ix = 0, len = str.length(); ix < len; ix++) {
+            char ch = str.charAt(ix);
+            if (ch < 0x80) {
+                char[] escape = ESCAPES[ch];
+                if (escape == null) {
+                    buf.ascii(ch);
+                } else if (escape.length == 1) {
+                    buf.character(escape[0]);
+                } else {
+                    for (char ech : escape) {
+                        buf.ascii(ech);
+                    }
+                }
+            } else {
+                int cp = Character.codePointAt(str, ix);
+                if ((Character.isSurrogate(ch) && cp == ch)
+                                || ch == '\uFFFE' || ch == '\uFFFF') {
+                    buf.character(REPLACEMENT);
+                } else {
+                    buf.character(cp);
+                    ix += Character.charCount(cp) - 1;
+                }
+            }
+        }
+    }
+
+}
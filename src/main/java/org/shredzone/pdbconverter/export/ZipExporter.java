@@ -21,27 +21,45 @@ package org.shredzone.pdbconverter.export;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.SimpleDateFormat;
 import java.util.List;
-import java.util.TimeZone;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.Deflater;
 
 import org.shredzone.commons.pdb.PdbDatabase;
 import org.shredzone.commons.pdb.appinfo.RawAppInfo;
 import org.shredzone.commons.pdb.record.RawRecord;
 
 /**
- * Writes a {@link RawRecord} database as ZIP file.
+ * Writes a {@link RawRecord} database as ZIP file. If more than one thread is set, the
+ * entries are deflated in parallel.
  *
  * @author Richard "Shred" Körber
  */
 public class ZipExporter extends AbstractExporter<RawRecord, RawAppInfo> {
 
-    private static final SimpleDateFormat DATE_FMT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    private int threads = 1;
+    private int level = Deflater.DEFAULT_COMPRESSION;
 
-    static {
-        DATE_FMT.setTimeZone(TimeZone.getTimeZone("GMT"));
+    /**
+     * Sets the number of threads that deflate the ZIP entries. Default is 1, which
+     * deflates all entries on the calling thread.
+     *
+     * @param threads
+     *            Number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the deflate level of the ZIP entries. Default is
+     * {@link Deflater#DEFAULT_COMPRESSION}. 0 stores all entries
+     * without compression.
+     *
+     * @param level
+     *            Deflate level
+     */
+    public void setLevel(int level) {
+        this.level = level;
     }
 
     /**
@@ -52,21 +70,21 @@ public class ZipExporter extends AbstractExporter<RawRecord, RawAppInfo> {
     @Override
     public void export(PdbDatabase<RawRecord, RawAppInfo> database, OutputStream out)
     throws IOException {
-        try (ZipOutputStream zos = new ZipOutputStream(out)) {
-            writeDatabaseInfo(database, zos);
+        long now = System.currentTimeMillis();
+
+        try (ZipWriter zw = new ZipWriter(out, threads)) {
+            zw.setLevel(level);
 
-            writeAppInfo(database, zos);
+            int[] selection = selectAccepted(database.getRecords());
+
+            writeDatabaseInfo(database, selection, zw, now);
+
+            writeAppInfo(database, zw, now);
 
             List<RawRecord> records = database.getRecords();
-            for (int ix = 0; ix < records.size(); ix++) {
-                RawRecord record = records.get(ix);
-                if (isAccepted(record)) {
-                    String name = String.format("records/%04d.bin", ix);
-                    zos.putNextEntry(new ZipEntry(name));
-                    zos.write(record.getRaw());
-                    zos.flush();
-                    zos.closeEntry();
-                }
+            for (int ix : selection) {
+                String name = XmlHelper.numbered("records/", ix, 4, ".bin");
+                zw.putEntry(name, now, records.get(ix).getRaw());
             }
         }
     }
@@ -76,39 +94,38 @@ public class ZipExporter extends AbstractExporter<RawRecord, RawAppInfo> {
      *
      * @param database
      *            {@link PdbDatabase} to be written
-     * @param zos
-     *            {@link ZipOutputStream} to write to
+     * @param selection
+     *            Indexes of the records to be written
+     * @param zw
+     *            {@link ZipWriter} to write to
+     * @param now
+     *            Modification time of the entry
      */
-    private void writeDatabaseInfo(PdbDatabase<RawRecord, RawAppInfo> database, ZipOutputStream zos)
+    private void writeDatabaseInfo(PdbDatabase<RawRecord, RawAppInfo> database,
+                int[] selection, ZipWriter zw, long now)
     throws IOException {
-        zos.putNextEntry(new ZipEntry("db-info.xml"));
-
-        XmlHelper xh = new XmlHelper();
-        xh.openXmlWriter(zos, "dbinfo");
-        xh.writeDatabase(database);
-
-        xh.startElement("records");
-
-        List<RawRecord> records = database.getRecords();
-        for (int ix = 0; ix < records.size(); ix++) {
-            RawRecord record = records.get(ix);
-
-            if (isAccepted(record)) {
-                xh.startElement(
-                        "record",
-                        "id", ix,
-                        "category", record.getCategoryIndex(),
-                        "secret", record.isSecret()
-                );
-                xh.writeFormatted("file", "records/%04d.bin", ix);
+        try (OutputStream out = zw.putEntry("db-info.xml", now)) {
+            XmlHelper xh = new XmlHelper();
+            xh.openXmlWriter(out, "dbinfo");
+            xh.writeDatabase(database);
+
+            xh.startElement("records");
+
+            List<RawRecord> records = database.getRecords();
+            for (int ix : selection) {
+                RawRecord record = records.get(ix);
+                xh.startElement("record")
+                        .attribute("id", ix)
+                        .attribute("category", record.getCategoryIndex())
+                        .attribute("secret", record.isSecret());
+                xh.writeNumbered("file", "records/", ix, 4, ".bin");
                 xh.endElement();
             }
-        }
 
-        xh.endElement();
+            xh.endElement();
 
-        xh.closeXmlWriter();
-        zos.closeEntry();
+            xh.closeXmlWriter();
+        }
     }
 
     /**
@@ -116,16 +133,15 @@ public class ZipExporter extends AbstractExporter<RawRecord, RawAppInfo> {
      *
      * @param database
      *            {@link PdbDatabase} to be written
-     * @param zos
-     *            {@link ZipOutputStream} to write to
+     * @param zw
+     *            {@link ZipWriter} to write to
+     * @param now
+     *            Modification time of the entry
      */
-    private void writeAppInfo(PdbDatabase<RawRecord, RawAppInfo> database, ZipOutputStream zos)
+    private void writeAppInfo(PdbDatabase<RawRecord, RawAppInfo> database, ZipWriter zw, long now)
     throws IOException {
         if (database.getAppInfo() != null) {
-            zos.putNextEntry(new ZipEntry("appinfo.bin"));
-            zos.write(database.getAppInfo().getRawAppInfo());
-            zos.flush();
-            zos.closeEntry();
+            zw.putEntry("appinfo.bin", now, database.getAppInfo().getRawAppInfo());
         }
     }
 
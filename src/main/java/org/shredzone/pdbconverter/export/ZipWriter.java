@@ -0,0 +1,751 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * Writes a ZIP file, deflating the entries in parallel.
+ * <p>
+ * Other than {@link java.util.zip.ZipOutputStream}, the entries are deflated into
+ * memory first. Data that is already compressed, like PNG images, or that does not
+ * shrink when deflated, is stored without compression. If more than one thread is
+ * used, this happens on a {@link ForkJoinPool}. The deflated entries are then written
+ * in the order they were added, with CRC and sizes already known, so no data
+ * descriptors are needed. Only a limited number of entries is kept in memory. ZIP64
+ * records are written if there are too many entries, or if the file gets too large
+ * for the standard ZIP format.
+ * <p>
+ * The entry data may also be produced on the same {@link ForkJoinPool}, so rendering
+ * and deflating an entry share the threads of the writer.
+ * <p>
+ * The writer is not thread-safe. Closing the writer also closes the underlying
+ * {@link OutputStream}.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT">ZIP
+ *      File Format Specification</a>
+ */
+public class ZipWriter implements Closeable {
+
+    private static final int LOCAL_HEADER = 0x04034B50;
+    private static final int CENTRAL_HEADER = 0x02014B50;
+    private static final int END_OF_CENTRAL_DIR = 0x06054B50;
+    private static final int ZIP64_END_OF_CENTRAL_DIR = 0x06064B50;
+    private static final int ZIP64_LOCATOR = 0x07064B50;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int SAMPLE_COUNT = 16;
+    private static final int SAMPLE_SIZE = 256;
+    private static final double MAX_ENTROPY = 7.5;
+
+    private static final byte[][] COMPRESSED_SIGNATURES = {
+        { (byte) 0x89, 'P', 'N', 'G' },             // PNG
+        { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF },  // JPEG
+        { 'G', 'I', 'F', '8' },                     // GIF
+        { 'P', 'K', 3, 4 },                         // ZIP
+        { 0x1F, (byte) 0x8B },                      // gzip
+    };
+
+    private final OutputStream out;
+    private final int threads;
+    private final ForkJoinPool pool;
+    private final Deque<Future<Entry>> pending = new ArrayDeque<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final byte[] header = new byte[64];
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private long position = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new {@link ZipWriter} that deflates the entries on the calling thread.
+     *
+     * @param out
+     *            {@link OutputStream} to write the ZIP file to
+     */
+    public ZipWriter(OutputStream out) {
+        this(out, 1);
+    }
+
+    /**
+     * Creates a new {@link ZipWriter}.
+     *
+     * @param out
+     *            {@link OutputStream} to write the ZIP file to
+     * @param threads
+     *            Number of threads deflating the entries. If 1, the entries are
+     *            deflated on the calling thread.
+     */
+    public ZipWriter(OutputStream out, int threads) {
+        this.out = out;
+        this.threads = Math.max(threads, 1);
+        this.pool = (this.threads > 1 ? new ForkJoinPool(this.threads) : null);
+    }
+
+    /**
+     * Sets the deflate level of the entries that are added afterwards. 0 stores all
+     * entries without compression.
+     *
+     * @param level
+     *            Deflate level, see {@link Deflater}
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Adds an entry. The data is compressed asynchronously, so it must not be modified
+     * afterwards. It is stored without compression if it is not worth to be deflated.
+     *
+     * @param name
+     *            Entry name
+     * @param time
+     *            Modification time of the entry, in milliseconds since epoch
+     * @param data
+     *            Uncompressed entry data
+     */
+    public void putEntry(String name, long time, byte[] data) throws IOException {
+        checkOpen();
+        submit(new EntryDeflater(new Entry(name, time), data, level));
+    }
+
+    /**
+     * Adds an entry, whose data is produced by a {@link Callable}. If more than one
+     * thread is used, the data is produced and deflated asynchronously, on the
+     * threads of this writer. Otherwise it is done on the calling thread. The entries
+     * are still written in the order they were added.
+     *
+     * @param name
+     *            Entry name
+     * @param time
+     *            Modification time of the entry, in milliseconds since epoch
+     * @param data
+     *            {@link Callable} returning the uncompressed entry data
+     */
+    public void putEntry(String name, long time, Callable<byte[]> data) throws IOException {
+        checkOpen();
+        submit(new EntryDeflater(new Entry(name, time), data, level));
+    }
+
+    /**
+     * Adds an entry, whose data is written to the returned {@link OutputStream}. The
+     * data is deflated on the calling thread while it is written. The entry is added
+     * when the stream is closed. No other entry must be added until then.
+     *
+     * @param name
+     *            Entry name
+     * @param time
+     *            Modification time of the entry, in milliseconds since epoch
+     * @return {@link OutputStream} to write the uncompressed entry data to
+     */
+    public OutputStream putEntry(String name, long time) throws IOException {
+        checkOpen();
+        return new EntryOutputStream(new Entry(name, time));
+    }
+
+    /**
+     * Waits for all entries to be deflated and written, writes the central directory,
+     * and closes the underlying {@link OutputStream}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            while (!pending.isEmpty()) {
+                writeEntry(pending.remove());
+            }
+            writeCentralDirectory();
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * Makes sure that the writer is still open.
+     */
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("ZipWriter is closed");
+        }
+    }
+
+    /**
+     * Runs an {@link EntryDeflater} on the pool, or on the calling thread if there is
+     * no pool, and queues the entry for writing.
+     *
+     * @param deflater
+     *            {@link EntryDeflater} to run
+     */
+    private void submit(EntryDeflater deflater) throws IOException {
+        if (pool != null) {
+            enqueue(pool.submit(deflater));
+        } else {
+            enqueue(runNow(deflater));
+        }
+    }
+
+    /**
+     * Runs a {@link Callable} on the calling thread.
+     *
+     * @param callable
+     *            {@link Callable} that returns the {@link Entry}
+     * @return Completed {@link Future} of the {@link Entry}
+     */
+    private static Future<Entry> runNow(Callable<Entry> callable) {
+        FutureTask<Entry> task = new FutureTask<>(callable);
+        task.run();
+        return task;
+    }
+
+    /**
+     * Queues an entry for writing. If too many entries are pending, the oldest
+     * entries are written.
+     *
+     * @param future
+     *            {@link Future} of the deflated {@link Entry}
+     */
+    private void enqueue(Future<Entry> future) throws IOException {
+        pending.add(future);
+
+        while (pending.size() > (pool != null ? threads * 4 : 0)) {
+            writeEntry(pending.remove());
+        }
+    }
+
+    /**
+     * Waits for an entry to be deflated, and writes its local header and data.
+     *
+     * @param future
+     *            {@link Future} of the deflated {@link Entry}
+     */
+    private void writeEntry(Future<Entry> future) throws IOException {
+        Entry entry;
+        try {
+            entry = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export was interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Could not write entry", cause);
+        }
+
+        entry.offset = position;
+
+        int pos = 0;
+        pos = int32(pos, LOCAL_HEADER);
+        pos = int16(pos, 20);
+        pos = int16(pos, entry.flags);
+        pos = int16(pos, entry.method);
+        pos = int32(pos, entry.dosTime);
+        pos = int32(pos, (int) entry.crc);
+        pos = int32(pos, (int) entry.compressedSize);
+        pos = int32(pos, (int) entry.size);
+        pos = int16(pos, entry.name.length);
+        pos = int16(pos, 0);
+        write(header, pos);
+        write(entry.name, entry.name.length);
+
+        write(entry.data, (int) entry.compressedSize);
+
+        // Only keep the central directory information
+        entry.data = null;
+        entries.add(entry);
+    }
+
+    /**
+     * Writes the central directory and the end of central directory record.
+     */
+    private void writeCentralDirectory() throws IOException {
+        long start = position;
+        boolean zip64 = entries.size() >= MAX_16;
+
+        for (Entry entry : entries) {
+            boolean largeOffset = entry.offset >= MAX_32;
+            zip64 |= largeOffset;
+
+            int pos = 0;
+            pos = int32(pos, CENTRAL_HEADER);
+            pos = int16(pos, largeOffset ? 45 : 20);
+            pos = int16(pos, largeOffset ? 45 : 20);
+            pos = int16(pos, entry.flags);
+            pos = int16(pos, entry.method);
+            pos = int32(pos, entry.dosTime);
+            pos = int32(pos, (int) entry.crc);
+            pos = int32(pos, (int) entry.compressedSize);
+            pos = int32(pos, (int) entry.size);
+            pos = int16(pos, entry.name.length);
+            pos = int16(pos, largeOffset ? 12 : 0);
+            pos = int16(pos, 0);                    // comment length
+            pos = int16(pos, 0);                    // disk number
+            pos = int16(pos, 0);                    // internal attributes
+            pos = int32(pos, 0);                    // external attributes
+            pos = int32(pos, (int) Math.min(entry.offset, MAX_32));
+            write(header, pos);
+            write(entry.name, entry.name.length);
+
+            if (largeOffset) {
+                pos = 0;
+                pos = int16(pos, 0x0001);           // ZIP64 extended information
+                pos = int16(pos, 8);
+                pos = int64(pos, entry.offset);
+                write(header, pos);
+            }
+        }
+
+        long size = position - start;
+        zip64 |= (start >= MAX_32 || size >= MAX_32);
+
+        if (zip64) {
+            long end = position;
+
+            int pos = 0;
+            pos = int32(pos, ZIP64_END_OF_CENTRAL_DIR);
+            pos = int64(pos, 44);                   // remaining record size
+            pos = int16(pos, 45);
+            pos = int16(pos, 45);
+            pos = int32(pos, 0);
+            pos = int32(pos, 0);
+            pos = int64(pos, entries.size());
+            pos = int64(pos, entries.size());
+            pos = int64(pos, size);
+            pos = int64(pos, start);
+            write(header, pos);
+
+            pos = 0;
+            pos = int32(pos, ZIP64_LOCATOR);
+            pos = int32(pos, 0);
+            pos = int64(pos, end);
+            pos = int32(pos, 1);
+            write(header, pos);
+        }
+
+        int pos = 0;
+        pos = int32(pos, END_OF_CENTRAL_DIR);
+        pos = int16(pos, 0);
+        pos = int16(pos, 0);
+        pos = int16(pos, Math.min(entries.size(), MAX_16));
+        pos = int16(pos, Math.min(entries.size(), MAX_16));
+        pos = int32(pos, (int) Math.min(size, MAX_32));
+        pos = int32(pos, (int) Math.min(start, MAX_32));
+        pos = int16(pos, 0);                        // comment length
+        write(header, pos);
+
+        out.flush();
+    }
+
+    /**
+     * Writes bytes to the {@link OutputStream}, and keeps track of the position.
+     */
+    private void write(byte[] b, int len) throws IOException {
+        out.write(b, 0, len);
+        position += len;
+    }
+
+    /**
+     * Puts a little endian 16 bit value into the header buffer.
+     */
+    private int int16(int pos, int value) {
+        header[pos] = (byte) value;
+        header[pos + 1] = (byte) (value >> 8);
+        return pos + 2;
+    }
+
+    /**
+     * Puts a little endian 32 bit value into the header buffer.
+     */
+    private int int32(int pos, int value) {
+        int16(pos, value);
+        int16(pos + 2, value >> 16);
+        return pos + 4;
+    }
+
+    /**
+     * Puts a little endian 64 bit value into the header buffer.
+     */
+    private int int64(int pos, long value) {
+        int32(pos, (int) value);
+        int32(pos + 4, (int) (value >> 32));
+        return pos + 8;
+    }
+
+    /**
+     * Converts a time to MS-DOS format, in the default time zone. Times before 1980
+     * are set to January 1st, 1980.
+     *
+     * @param time
+     *            Milliseconds since epoch
+     * @return MS-DOS date and time, with the date in the upper 16 bits
+     */
+    static int toDosTime(long time) {
+        long local = time + TimeZone.getDefault().getOffset(time);
+        int packed = DateMath.packedDate(DateMath.epochDayOf(local));
+        int second = DateMath.secondOfDayOf(local);
+
+        int year = DateMath.year(packed);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+
+        return ((year - 1980) << 25)
+                        | (DateMath.month(packed) << 21)
+                        | (DateMath.day(packed) << 16)
+                        | ((second / 3600) << 11)
+                        | (((second / 60) % 60) << 5)
+                        | ((second % 60) >> 1);
+    }
+
+    /**
+     * Checks if data is worth to be deflated. Data starting with the signature of a
+     * compressed format is not. Larger data is sampled, and considered incompressible
+     * if the byte entropy of the sample is close to 8 bits.
+     *
+     * @param data
+     *            Data to check
+     * @return {@code true} if the data should be deflated, {@code false} if it should
+     *         be stored
+     */
+    static boolean isCompressible(byte[] data) {
+        for (byte[] signature : COMPRESSED_SIGNATURES) {
+            if (startsWith(data, signature)) {
+                return false;
+            }
+        }
+
+        if (data.length < SAMPLE_COUNT * SAMPLE_SIZE * 2) {
+            // Small data is just deflated, and stored if it does not shrink
+            return true;
+        }
+
+        int[] histogram = new int[256];
+        long step = (data.length - SAMPLE_SIZE) / (SAMPLE_COUNT - 1);
+        for (int ix = 0; ix < SAMPLE_COUNT; ix++) {
+            int start = (int) (ix * step);
+            for (int jx = start; jx < start + SAMPLE_SIZE; jx++) {
+                histogram[data[jx] & 0xFF]++;
+            }
+        }
+
+        double total = SAMPLE_COUNT * SAMPLE_SIZE;
+        double entropy = 0.0;
+        for (int count : histogram) {
+            if (count > 0) {
+                double p = count / total;
+                entropy -= p * Math.log(p);
+            }
+        }
+
+        return entropy / Math.log(2.0) < MAX_ENTROPY;
+    }
+
+    /**
+     * Checks if the data starts with the given signature.
+     */
+    private static boolean startsWith(byte[] data, byte[] signature) {
+        if (data.length < signature.length) {
+            return false;
+        }
+        for (int ix = 0; ix < signature.length; ix++) {
+            if (data[ix] != signature[ix]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} that gives access to its buffer.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        public Buffer(int size) {
+            super(size);
+        }
+
+        public byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * A ZIP entry, with its data and central directory information.
+     */
+    private static class Entry {
+        private final byte[] name;
+        private final int flags;
+        private final int dosTime;
+        private int method;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private byte[] data;
+        private long offset;
+
+        /**
+         * Creates a new, empty {@link Entry}.
+         *
+         * @param name
+         *            Entry name
+         * @param time
+         *            Modification time, in milliseconds since epoch
+         */
+        public Entry(String name, long time) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.flags = (this.name.length != name.length() ? FLAG_UTF8 : 0);
+            this.dosTime = toDosTime(time);
+        }
+
+        /**
+         * Sets the entry data.
+         *
+         * @param method
+         *            Compression method of the data
+         * @param data
+         *            Data, as it is written to the ZIP file
+         * @param length
+         *            Length of the data
+         * @param crc
+         *            CRC32 of the uncompressed data
+         * @param size
+         *            Size of the uncompressed data
+         * @throws IOException
+         *             if the entry is too large
+         */
+        public void setData(int method, byte[] data, int length, long crc, long size)
+        throws IOException {
+            if (size >= MAX_32) {
+                throw new IOException("ZIP entry is too large");
+            }
+            this.method = method;
+            this.data = data;
+            this.compressedSize = length;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Compresses the data of an {@link Entry}, computing the CRC in the same pass. The
+     * data may be produced by a {@link Callable} first.
+     */
+    private static class EntryDeflater implements Callable<Entry> {
+        private final Entry entry;
+        private final byte[] bytes;
+        private final Callable<byte[]> source;
+        private final int level;
+
+        /**
+         * Creates a new {@link EntryDeflater}.
+         *
+         * @param entry
+         *            {@link Entry} to be compressed
+         * @param data
+         *            Uncompressed data
+         * @param level
+         *            Compression level, 0 stores the data
+         */
+        public EntryDeflater(Entry entry, byte[] data, int level) {
+            this.entry = entry;
+            this.bytes = data;
+            this.source = null;
+            this.level = level;
+        }
+
+        /**
+         * Creates a new {@link EntryDeflater} that produces its data first.
+         *
+         * @param entry
+         *            {@link Entry} to be compressed
+         * @param source
+         *            {@link Callable} returning the uncompressed data
+         * @param level
+         *            Compression level, 0 stores the data
+         */
+        public EntryDeflater(Entry entry, Callable<byte[]> source, int level) {
+            this.entry = entry;
+            this.bytes = null;
+            this.source = source;
+            this.level = level;
+        }
+
+        @Override
+        public Entry call() throws Exception {
+            byte[] data = (source != null ? source.call() : bytes);
+            CRC32 crc = new CRC32();
+
+            if (level == 0 || !isCompressible(data)) {
+                crc.update(data, 0, data.length);
+                entry.setData(METHOD_STORED, data, data.length, crc.getValue(), data.length);
+                return entry;
+            }
+
+            Buffer result = new Buffer(data.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+
+            Deflater deflater = new Deflater(level, true);
+            try {
+                for (int pos = 0; pos < data.length; pos += CHUNK_SIZE) {
+                    int len = Math.min(CHUNK_SIZE, data.length - pos);
+                    crc.update(data, pos, len);
+                    deflater.setInput(data, pos, len);
+                    while (!deflater.needsInput()) {
+                        int count = deflater.deflate(buffer, 0, buffer.length);
+                        result.write(buffer, 0, count);
+                    }
+                }
+
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer, 0, buffer.length);
+                    result.write(buffer, 0, count);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            if (result.size() >= data.length) {
+                // Deflating did not pay off
+                entry.setData(METHOD_STORED, data, data.length, crc.getValue(), data.length);
+            } else {
+                entry.setData(METHOD_DEFLATED, result.array(), result.size(), crc.getValue(), data.length);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * An {@link OutputStream} that deflates the data of an {@link Entry} into memory,
+     * and adds the entry when it is closed. At level 0, the data is stored.
+     */
+    private class EntryOutputStream extends OutputStream {
+        private final Entry entry;
+        private final Deflater deflater = (level != 0 ? new Deflater(level, true) : null);
+        private final CRC32 crc = new CRC32();
+        private final Buffer data = new Buffer(8192);
+        private final byte[] buffer = new byte[8192];
+        private long size = 0;
+        private boolean finished = false;
+
+        /**
+         * Creates a new {@link EntryOutputStream}.
+         *
+         * @param entry
+         *            {@link Entry} to write the data of
+         */
+        public EntryOutputStream(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Entry is closed");
+            }
+
+            crc.update(b, off, len);
+            size += len;
+
+            if (deflater == null) {
+                data.write(b, off, len);
+                return;
+            }
+
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                int count = deflater.deflate(buffer, 0, buffer.length);
+                data.write(buffer, 0, count);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+
+            if (deflater == null) {
+                entry.setData(METHOD_STORED, data.array(), data.size(), crc.getValue(), size);
+            } else {
+                try {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int count = deflater.deflate(buffer, 0, buffer.length);
+                        data.write(buffer, 0, count);
+                    }
+                } finally {
+                    deflater.end();
+                }
+
+                entry.setData(METHOD_DEFLATED, data.array(), data.size(), crc.getValue(), size);
+            }
+
+            enqueue(runNow(new Callable<Entry>() {
+                @Override
+                public Entry call() {
+                    return entry;
+                }
+            }));
+        }
+    }
+
+}
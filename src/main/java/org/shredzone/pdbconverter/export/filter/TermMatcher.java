@@ -0,0 +1,191 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Finds any of a set of terms in a text. All terms are compiled into a single
+ * Aho-Corasick automaton, so a text is scanned only once, regardless of the number of
+ * terms.
+ * <p>
+ * Instances are immutable after construction and can be shared between threads.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho-Corasick algorithm</a>
+ */
+public class TermMatcher {
+
+    private final boolean ignoreCase;
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    private final boolean[] terminal;
+
+    /**
+     * Creates a new {@link TermMatcher}.
+     *
+     * @param terms
+     *            Terms to search for. Empty terms are ignored.
+     * @param ignoreCase
+     *            {@code true} to match case insensitive
+     */
+    public TermMatcher(Collection<String> terms, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+
+        // Build the trie. Node 0 is the root.
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Boolean> out = new ArrayList<>();
+        trie.add(new TreeMap<Character, Integer>());
+        out.add(Boolean.FALSE);
+
+        for (String term : terms) {
+            if (term == null || term.isEmpty()) continue;
+
+            int node = 0;
+            for (int ix = 0; ix < term.length(); ix++) {
+                Character ch = fold(term.charAt(ix));
+                Integer next = trie.get(node).get(ch);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    out.add(Boolean.FALSE);
+                    trie.get(node).put(ch, next);
+                }
+                node = next;
+            }
+            out.set(node, Boolean.TRUE);
+        }
+
+        int size = trie.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        terminal = new boolean[size];
+        fail = new int[size];
+
+        for (int node = 0; node < size; node++) {
+            TreeMap<Character, Integer> edges = trie.get(node);
+            keys[node] = new char[edges.size()];
+            targets[node] = new int[edges.size()];
+            int ix = 0;
+            for (Character ch : edges.keySet()) {
+                keys[node][ix] = ch;
+                targets[node][ix] = edges.get(ch);
+                ix++;
+            }
+            terminal[node] = out.get(node);
+        }
+
+        // Compute the failure links in breadth-first order, so the failure link of
+        // each parent is known before its children are processed.
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+        for (int child : targets[0]) {
+            fail[child] = 0;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int ix = 0; ix < keys[node].length; ix++) {
+                char ch = keys[node][ix];
+                int child = targets[node][ix];
+
+                int f = fail[node];
+                int next;
+                while ((next = step(f, ch)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = (next >= 0 ? next : 0);
+
+                // A node also matches if any of its suffixes is a term.
+                terminal[child] |= terminal[fail[child]];
+
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Checks if the text contains at least one of the terms.
+     *
+     * @param text
+     *            Text to be scanned, may be {@code null}
+     * @return {@code true} if a term was found
+     */
+    public boolean matches(CharSequence text) {
+        if (text == null) return false;
+
+        int node = 0;
+        for (int ix = 0, len = text.length(); ix < len; ix++) {
+            char ch = fold(text.charAt(ix));
+
+            int next;
+            while ((next = step(node, ch)) < 0 && node != 0) {
+                node = fail[node];
+            }
+            node = (next >= 0 ? next : 0);
+
+            if (terminal[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the matcher contains any terms.
+     *
+     * @return {@code true} if no terms were given
+     */
+    public boolean isEmpty() {
+        return keys[0].length == 0;
+    }
+
+    /**
+     * Follows the transition of a node.
+     *
+     * @param node
+     *            Node to start from
+     * @param ch
+     *            Transition character
+     * @return Target node, or a negative number if there is no such transition
+     */
+    private int step(int node, char ch) {
+        int pos = Arrays.binarySearch(keys[node], ch);
+        return (pos >= 0 ? targets[node][pos] : -1);
+    }
+
+    /**
+     * Folds the case of a character, if case is to be ignored.
+     *
+     * @param ch
+     *            Character to fold
+     * @return Folded character
+     */
+    private char fold(char ch) {
+        if (!ignoreCase) return ch;
+        return Character.toLowerCase(Character.toUpperCase(ch));
+    }
+
+}
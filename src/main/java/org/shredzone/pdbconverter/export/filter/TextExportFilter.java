@@ -0,0 +1,103 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export.filter;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.shredzone.commons.pdb.record.AddressRecord;
+import org.shredzone.commons.pdb.record.AddressRecord.Field;
+import org.shredzone.commons.pdb.record.MemoRecord;
+import org.shredzone.commons.pdb.record.NotepadRecord;
+import org.shredzone.commons.pdb.record.Record;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.TodoRecord;
+
+/**
+ * An {@link ExportFilter} that only accepts {@link Record} containing at least one of
+ * the given terms in one of its text fields.
+ * <p>
+ * Memos, schedule descriptions, locations and notes, todo descriptions and notes, all
+ * address fields and notepad titles are searched. Records without any text are never
+ * accepted.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class TextExportFilter<T extends Record> implements ExportFilter<T> {
+
+    private static final Field[] ADDRESS_FIELDS = Field.values();
+
+    private final TermMatcher matcher;
+
+    /**
+     * Creates a new {@link TextExportFilter} for the given terms.
+     *
+     * @param terms
+     *            Terms to search for
+     * @param ignoreCase
+     *            {@code true} to search case insensitive
+     * @throws IOException
+     *             if no search terms were given
+     */
+    public TextExportFilter(Collection<String> terms, boolean ignoreCase)
+    throws IOException {
+        matcher = new TermMatcher(terms, ignoreCase);
+        if (matcher.isEmpty()) {
+            throw new IOException("No search terms set");
+        }
+    }
+
+    @Override
+    public boolean accepts(T record) {
+        if (record instanceof MemoRecord) {
+            return matcher.matches(((MemoRecord) record).getMemo());
+        }
+
+        if (record instanceof ScheduleRecord) {
+            ScheduleRecord schedule = (ScheduleRecord) record;
+            return matcher.matches(schedule.getDescription())
+                || matcher.matches(schedule.getLocation())
+                || matcher.matches(schedule.getNote());
+        }
+
+        if (record instanceof TodoRecord) {
+            TodoRecord todo = (TodoRecord) record;
+            return matcher.matches(todo.getDescription())
+                || matcher.matches(todo.getNote());
+        }
+
+        if (record instanceof AddressRecord) {
+            AddressRecord address = (AddressRecord) record;
+            for (Field field : ADDRESS_FIELDS) {
+                if (matcher.matches(address.getField(field))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (record instanceof NotepadRecord) {
+            return matcher.matches(((NotepadRecord) record).getTitle());
+        }
+
+        return false;
+    }
+
+}
@@ -22,22 +22,31 @@ package org.shredzone.pdbconverter.handler;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.shredzone.commons.pdb.PdbDatabase;
 import org.shredzone.commons.pdb.PdbFile;
 import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
 import org.shredzone.commons.pdb.appinfo.CategoryAppInfo.Category;
 import org.shredzone.commons.pdb.converter.Converter;
+import org.shredzone.commons.pdb.record.DatedRecord;
 import org.shredzone.commons.pdb.record.Record;
 import org.shredzone.pdbconverter.export.Exporter;
 import org.shredzone.pdbconverter.export.filter.CategoryExportFilter;
 import org.shredzone.pdbconverter.export.filter.ChainedExportFilter;
 import org.shredzone.pdbconverter.export.filter.DatedExportFilter;
 import org.shredzone.pdbconverter.export.filter.ExportFilter;
+import org.shredzone.pdbconverter.export.filter.TextExportFilter;
+import org.shredzone.pdbconverter.util.DateMath;
+import org.shredzone.pdbconverter.util.Occurrences;
 
 /**
  * Abstract superclass for {@link Category} exporters.
@@ -47,39 +56,222 @@ import org.shredzone.pdbconverter.export.filter.ExportFilter;
 public abstract class AbstractCategoryExportHandler<T extends Record, U extends CategoryAppInfo>
 implements ExportHandler {
 
-    @SuppressWarnings("unchecked")
     @Override
     public void export(File infile, File outfile, ExportOptions options) throws IOException {
         PdbDatabase<T, U> database = readDatabase(infile);
 
+        if (options.getMergeFiles() != null) {
+            // Categories are taken from the input file
+            for (File mergefile : options.getMergeFiles()) {
+                database.getRecords().addAll(readDatabase(mergefile).getRecords());
+            }
+        }
+
         ExportFilter<T> filter = createExportFilter(database, options);
 
+        Map<String, List<T>> periods = null;
+        if (options.getSplitPeriod() != null) {
+            periods = splitByPeriod(database, filter, options);
+        }
+
         if (options.isSplit()) {
             Set<String> catnameSet = new HashSet<>();
 
             List<Category> categories = database.getAppInfo().getCategories();
+            File[] catfiles = new File[categories.size()];
             for (int ix = 0; ix < categories.size(); ix++) {
                 Category cat = categories.get(ix);
                 if (cat == null) continue;
+                catfiles[ix] = computeFilename(outfile, cat, catnameSet);
+            }
+
+            if (periods != null) {
+                for (Map.Entry<String, List<T>> entry : periods.entrySet()) {
+                    List<List<T>> catRecords = splitByCategory(entry.getValue(), catfiles.length);
+                    for (int ix = 0; ix < catfiles.length; ix++) {
+                        if (catfiles[ix] == null || catRecords.get(ix).isEmpty()) continue;
 
-                ExportFilter<T> catFilter;
-                if (filter != null) {
-                    ExportFilter<T>[] filterChain = new ExportFilter[2];
-                    filterChain[0] = new CategoryExportFilter<>(ix);
-                    filterChain[1] = filter;
-                    catFilter = new ChainedExportFilter<>(filterChain);
-                } else {
-                    catFilter = new CategoryExportFilter<>(ix);
+                        File periodfile = appendFilename(catfiles[ix], entry.getKey());
+                        writeOutputFile(periodfile, createShard(database, catRecords.get(ix)), null, options);
+                    }
                 }
+            } else {
+                for (int ix = 0; ix < catfiles.length; ix++) {
+                    if (catfiles[ix] == null) continue;
 
-                File catfile = computeFilename(outfile, cat, catnameSet);
-                writeOutputFile(catfile, database, catFilter);
+                    ExportFilter<T> catFilter = chain(new CategoryExportFilter<T>(ix), filter);
+                    writeOutputFile(catfiles[ix], database, catFilter, options);
+                }
+            }
+
+        } else if (periods != null) {
+            for (Map.Entry<String, List<T>> entry : periods.entrySet()) {
+                File periodfile = appendFilename(outfile, entry.getKey());
+                writeOutputFile(periodfile, createShard(database, entry.getValue()), null, options);
             }
 
         } else {
-            writeOutputFile(outfile, database, filter);
+            writeOutputFile(outfile, database, filter, options);
+
+        }
+    }
+
+    /**
+     * Sorts all accepted records into periods of time, in a single pass. Records
+     * without a date are sorted into an "undated" period. Repeating records are
+     * sorted by their first occurrence, or into every period they occur in.
+     * Occurrences outside of the date range of the options are ignored.
+     * <p>
+     * If no end date is set, repeating records without end are sorted into all
+     * periods up to the period containing the latest first occurrence of all records.
+     *
+     * @param database
+     *            {@link PdbDatabase} to be split
+     * @param filter
+     *            {@link ExportFilter} to be used, or {@code null}
+     * @param options
+     *            {@link ExportOptions} with further parameters
+     * @return Map of period names and the records of that period, in chronological
+     *         order
+     */
+    private Map<String, List<T>> splitByPeriod(PdbDatabase<T, U> database,
+                ExportFilter<T> filter, ExportOptions options) {
+        SplitPeriod period = options.getSplitPeriod();
+        boolean allOccurrences = options.isSplitAllOccurrences();
+        List<T> records = database.getRecords();
+
+        int firstDay = Integer.MIN_VALUE;
+        if (options.getFrom() != null) {
+            firstDay = toEpochDay(options.getFrom());
+        }
+
+        List<T> accepted = new ArrayList<>(records.size());
+        for (T record : records) {
+            if (filter == null || filter.accepts(record)) {
+                accepted.add(record);
+            }
+        }
+
+        int lastDay = Integer.MAX_VALUE;
+        if (options.getUntil() != null) {
+            lastDay = toEpochDay(options.getUntil()) - 1;
+        } else if (allOccurrences) {
+            int latest = Integer.MIN_VALUE;
+            for (T record : accepted) {
+                Occurrences occurrences = getOccurrences(record, firstDay, Integer.MAX_VALUE);
+                if (occurrences != null && occurrences.hasNext()) {
+                    latest = Math.max(latest, occurrences.next());
+                }
+            }
+            if (latest != Integer.MIN_VALUE) {
+                lastDay = period.lastDay(period.key(latest));
+            }
+        }
+
+        Map<Integer, List<T>> periodMap = new TreeMap<>();
+        List<T> undated = null;
+
+        for (T record : accepted) {
+            Occurrences occurrences = getOccurrences(record, firstDay, lastDay);
+            if (occurrences == null) {
+                if (undated == null) {
+                    undated = new ArrayList<>();
+                }
+                undated.add(record);
+                continue;
+            }
 
+            int lastKey = Integer.MIN_VALUE;
+            while (occurrences.hasNext()) {
+                int key = period.key(occurrences.next());
+                if (key != lastKey) {
+                    List<T> periodRecords = periodMap.get(key);
+                    if (periodRecords == null) {
+                        periodRecords = new ArrayList<>();
+                        periodMap.put(key, periodRecords);
+                    }
+                    periodRecords.add(record);
+                    lastKey = key;
+                }
+                if (!allOccurrences) break;
+            }
         }
+
+        Map<String, List<T>> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<T>> entry : periodMap.entrySet()) {
+            result.put(period.name(entry.getKey()), entry.getValue());
+        }
+        if (undated != null) {
+            result.put("undated", undated);
+        }
+        return result;
+    }
+
+    /**
+     * Sorts records by their category, in a single pass.
+     *
+     * @param records
+     *            Records to be sorted
+     * @param count
+     *            Number of categories. Records of other categories are ignored.
+     * @return List of records for each category index
+     */
+    private List<List<T>> splitByCategory(List<T> records, int count) {
+        List<List<T>> result = new ArrayList<>(count);
+        for (int ix = 0; ix < count; ix++) {
+            result.add(new ArrayList<T>());
+        }
+        for (T record : records) {
+            int category = record.getCategoryIndex();
+            if (category >= 0 && category < count) {
+                result.get(category).add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a copy of the database that only contains the given records. The records
+     * are numbered within the copy.
+     *
+     * @param database
+     *            {@link PdbDatabase} to copy
+     * @param records
+     *            Records of the copy
+     * @return {@link PdbDatabase} containing the records
+     */
+    private PdbDatabase<T, U> createShard(PdbDatabase<T, U> database, List<T> records) {
+        PdbDatabase<T, U> result = new PdbDatabase<>();
+        result.setName(database.getName());
+        result.setType(database.getType());
+        result.setCreator(database.getCreator());
+        result.setCreationTime(database.getCreationTime());
+        result.setModificationTime(database.getModificationTime());
+        result.setBackupTime(database.getBackupTime());
+        result.setAppInfo(database.getAppInfo());
+        result.getRecords().addAll(records);
+        return result;
+    }
+
+    /**
+     * Chains two {@link ExportFilter}.
+     *
+     * @param filter1
+     *            First {@link ExportFilter}
+     * @param filter2
+     *            Second {@link ExportFilter}, or {@code null}
+     * @return {@link ExportFilter} accepting records accepted by both filters
+     */
+    @SuppressWarnings("unchecked")
+    private ExportFilter<T> chain(ExportFilter<T> filter1, ExportFilter<T> filter2) {
+        if (filter2 == null) {
+            return filter1;
+        }
+
+        ExportFilter<T>[] filterChain = new ExportFilter[2];
+        filterChain[0] = filter1;
+        filterChain[1] = filter2;
+        return new ChainedExportFilter<>(filterChain);
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -91,11 +283,13 @@ implements ExportHandler {
             filterList.add(new CategoryExportFilter<T>(database.getAppInfo(), options.getCategory()));
         }
 
-        if (options.getFrom() != null || options.getUntil() != null) {
-            // This is a little ugly since DatedExportFilter only accepts DatedRecords.
-            // Anyhow this cannot be checked at compile time in this generic class.
-            // We will rely on a ClassCastException at runtime.
-            filterList.add(new DatedExportFilter(options.getFrom(), options.getUntil()));
+        ExportFilter<T> dateFilter = createDateFilter(options);
+        if (dateFilter != null) {
+            filterList.add(dateFilter);
+        }
+
+        if (options.getGrepTerms() != null) {
+            filterList.add(new TextExportFilter<T>(options.getGrepTerms(), options.isIgnoreCase()));
         }
 
         if (filterList.isEmpty()) {
@@ -107,6 +301,27 @@ implements ExportHandler {
         }
     }
 
+    /**
+     * Creates the {@link ExportFilter} for the date range of the {@link ExportOptions}.
+     * By default, a {@link DatedExportFilter} is used.
+     *
+     * @param options
+     *            {@link ExportOptions} with the date range
+     * @return {@link ExportFilter}, or {@code null} if records are not to be filtered
+     *         by date
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected ExportFilter<T> createDateFilter(ExportOptions options) throws IOException {
+        if (options.getFrom() == null && options.getUntil() == null) {
+            return null;
+        }
+
+        // This is a little ugly since DatedExportFilter only accepts DatedRecords.
+        // Anyhow this cannot be checked at compile time in this generic class.
+        // We will rely on a ClassCastException at runtime.
+        return new DatedExportFilter(options.getFrom(), options.getUntil());
+    }
+
     /**
      * Computes a single file name for the split option. It appends the category name to
      * the file name, after escaping characters that should not occur in file names. If
@@ -122,21 +337,41 @@ implements ExportHandler {
      * @return File name for this category
      */
     private File computeFilename(File outfile, Category category, Set<String> catnameSet) {
-        File path = outfile.getParentFile();
-        String filename = outfile.getName();
-
         String catname = category.getName();
         catname = catname.replaceAll("(\\\\|\\/|\\.|\\:|\\$|\\s)+", "_");
         if (!catnameSet.add(catname)) {
             catname = catname + '-' + category.getKey();
         }
 
+        return appendFilename(outfile, catname);
+    }
+
+    /**
+     * Appends a name to the file name, in front of the suffix.
+     *
+     * @param outfile
+     *            Base output file name
+     * @param name
+     *            Name to append
+     * @return File name with the name appended
+     */
+    private File appendFilename(File outfile, String name) {
+        File path = outfile.getParentFile();
+        String filename = outfile.getName();
+
         int pos = filename.lastIndexOf('.');
+        if (pos > 0 && filename.endsWith(".gz")) {
+            // Keep the suffix of compressed files, like "export.ics.gz"
+            int innerPos = filename.lastIndexOf('.', pos - 1);
+            if (innerPos >= 0) {
+                pos = innerPos;
+            }
+        }
         if (pos >= 0) {
             String suffix = (pos + 1 < filename.length() ? filename.substring(pos + 1) : "");
-            filename = filename.substring(0, pos) + '-' + catname + '.' + suffix;
+            filename = filename.substring(0, pos) + '-' + name + '.' + suffix;
         } else {
-            filename = filename + '-' + catname;
+            filename = filename + '-' + name;
         }
 
         return new File(path, filename);
@@ -151,15 +386,42 @@ implements ExportHandler {
      *            {@link PdbDatabase} to be written
      * @param filter
      *            {@link ExportFilter} to be used
+     * @param options
+     *            {@link ExportOptions} with further parameters
      * @throws IOException
      *             if the file could not be written
      */
-    private void writeOutputFile(File outfile, PdbDatabase<T, U> database, ExportFilter<T> filter)
+    private void writeOutputFile(File outfile, PdbDatabase<T, U> database, ExportFilter<T> filter,
+                ExportOptions options)
     throws IOException {
-        try (FileOutputStream fos = new FileOutputStream(outfile)) {
-            Exporter<T, U> exporter = createExporter();
+        try (OutputStream out = openOutputFile(outfile, options)) {
+            Exporter<T, U> exporter = createExporter(options);
             exporter.setFilter(filter);
-            exporter.export(database, fos);
+            exporter.export(database, out);
+        }
+    }
+
+    /**
+     * Opens the output file for writing. If a compression is set, the returned
+     * stream compresses the data.
+     *
+     * @param outfile
+     *            output file to write to
+     * @param options
+     *            {@link ExportOptions} with further parameters
+     * @return {@link OutputStream} to write to
+     */
+    private OutputStream openOutputFile(File outfile, ExportOptions options) throws IOException {
+        FileOutputStream fos = new FileOutputStream(outfile);
+        if (options.getCompression() == null) {
+            return fos;
+        }
+
+        try {
+            return options.getCompression().wrap(fos, options.getCompressThreads(), options.getLevel());
+        } catch (IOException ex) {
+            fos.close();
+            throw ex;
         }
     }
 
@@ -176,6 +438,41 @@ implements ExportHandler {
         }
     }
 
+    /**
+     * Gets the days a record occurs on. This is used for splitting the output by
+     * periods of time. By default, the date of {@link DatedRecord} is returned.
+     *
+     * @param record
+     *            Record to get the occurrences of
+     * @param firstDay
+     *            First epoch day of interest. Earlier occurrences may be omitted.
+     * @param lastDay
+     *            Last epoch day of interest. Later occurrences may be omitted.
+     * @return {@link Occurrences} of the record, or {@code null} if the record has no
+     *         date
+     */
+    protected Occurrences getOccurrences(T record, int firstDay, int lastDay) {
+        if (record instanceof DatedRecord) {
+            Calendar date = ((DatedRecord) record).getRecordDate();
+            if (date != null) {
+                return new Occurrences(toEpochDay(date));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts a {@link Calendar} to an epoch day.
+     *
+     * @param cal
+     *            {@link Calendar} to convert
+     * @return Epoch day
+     */
+    private static int toEpochDay(Calendar cal) {
+        return DateMath.epochDay(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1,
+                        cal.get(Calendar.DAY_OF_MONTH));
+    }
+
     /**
      * Creates the {@link Converter} that converts the database file.
      *
@@ -190,4 +487,17 @@ implements ExportHandler {
      */
     protected abstract Exporter<T, U> createExporter();
 
+    /**
+     * Creates the {@link Exporter} that writes the output file, taking the given
+     * {@link ExportOptions} into account. By default, {@link #createExporter()} is
+     * invoked.
+     *
+     * @param options
+     *            {@link ExportOptions} with further parameters
+     * @return {@link Exporter}
+     */
+    protected Exporter<T, U> createExporter(ExportOptions options) {
+        return createExporter();
+    }
+
 }
@@ -0,0 +1,56 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.handler;
+
+import org.shredzone.commons.pdb.appinfo.AddressAppInfo;
+import org.shredzone.commons.pdb.record.AddressRecord;
+import org.shredzone.pdbconverter.export.AddressCsvExporter;
+import org.shredzone.pdbconverter.export.Exporter;
+
+/**
+ * {@link ExportHandler} that reads an Address pdb file and writes a CSV file.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class AddressCsvHandler extends AddressXmlHandler {
+
+    @Override
+    public String getName() {
+        return "address-csv";
+    }
+
+    @Override
+    public String getDescription() {
+        return "AddressDB to CSV";
+    }
+
+    @Override
+    protected Exporter<AddressRecord, AddressAppInfo> createExporter() {
+        return new AddressCsvExporter();
+    }
+
+    @Override
+    protected Exporter<AddressRecord, AddressAppInfo> createExporter(ExportOptions options) {
+        AddressCsvExporter exporter = new AddressCsvExporter();
+        exporter.setFields(options.getFields());
+        return exporter;
+    }
+
+}
@@ -53,4 +53,11 @@ public class AddressXmlHandler extends AbstractCategoryExportHandler<AddressReco
         return new AddressXmlExporter();
     }
 
+    @Override
+    protected Exporter<AddressRecord, AddressAppInfo> createExporter(ExportOptions options) {
+        AddressXmlExporter exporter = new AddressXmlExporter();
+        exporter.setDuplicateMode(options.getDuplicateMode());
+        return exporter;
+    }
+
 }
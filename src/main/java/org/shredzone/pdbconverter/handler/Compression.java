@@ -0,0 +1,70 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.handler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.shredzone.pdbconverter.util.ParallelGzipOutputStream;
+
+/**
+ * Compression formats of the output file.
+ *
+ * @author Richard "Shred" Körber
+ */
+public enum Compression {
+
+    /**
+     * gzip compression. Blocks are compressed in parallel if more than one thread
+     * is used.
+     */
+    GZIP {
+        @Override
+        public OutputStream wrap(OutputStream out, int threads, final int level)
+        throws IOException {
+            if (threads > 1) {
+                return new ParallelGzipOutputStream(out, threads, level);
+            }
+            return new GZIPOutputStream(out, 64 * 1024) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+    };
+
+    /**
+     * Wraps an {@link OutputStream}, so the data written to it is compressed. When
+     * the returned stream is closed, the compression is finished and the wrapped
+     * stream is closed as well.
+     *
+     * @param out
+     *            {@link OutputStream} to write the compressed data to
+     * @param threads
+     *            Number of threads to be used for compression
+     * @param level
+     *            Compression level, see {@link java.util.zip.Deflater}
+     * @return {@link OutputStream} to write the uncompressed data to
+     */
+    public abstract OutputStream wrap(OutputStream out, int threads, int level)
+    throws IOException;
+
+}
@@ -19,7 +19,13 @@
  */
 package org.shredzone.pdbconverter.handler;
 
+import java.io.File;
 import java.util.Calendar;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.shredzone.pdbconverter.export.AddressDeduplicator;
+import org.shredzone.pdbconverter.export.ImageEncoder;
 
 /**
  * Data transport object for export parameters.
@@ -29,9 +35,26 @@ import java.util.Calendar;
 public class ExportOptions {
 
     private boolean split;
+    private SplitPeriod splitPeriod;
+    private boolean splitAllOccurrences;
     private String category;
     private Calendar from;
     private Calendar until;
+    private List<String> grepTerms;
+    private boolean ignoreCase;
+    private boolean streaming;
+    private int threads = 1;
+    private int validationInterval = 1;
+    private boolean compact;
+    private List<String> birthdayFormats;
+    private List<File> mergeFiles;
+    private AddressDeduplicator.Mode duplicateMode;
+    private List<String> fields;
+    private Compression compression;
+    private int compressThreads = 1;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private ImageEncoder.Format imageFormat = ImageEncoder.Format.PNG;
+    private ImageEncoder.Filter pngFilter;
 
     /**
      * Write categories into separate files?
@@ -39,6 +62,20 @@ public class ExportOptions {
     public boolean isSplit()                { return split; }
     public void setSplit(boolean split)     { this.split = split; }
 
+    /**
+     * Period of time to write into separate files. {@code null} does not split by
+     * time.
+     */
+    public SplitPeriod getSplitPeriod()     { return splitPeriod; }
+    public void setSplitPeriod(SplitPeriod splitPeriod) { this.splitPeriod = splitPeriod; }
+
+    /**
+     * Write repeating records into every period they occur in, instead of the period
+     * of their first occurrence only?
+     */
+    public boolean isSplitAllOccurrences()  { return splitAllOccurrences; }
+    public void setSplitAllOccurrences(boolean splitAllOccurrences) { this.splitAllOccurrences = splitAllOccurrences; }
+
     /**
      * Category name to be exported only. {@code null} exports all categories.
      */
@@ -57,4 +94,101 @@ public class ExportOptions {
     public Calendar getUntil()              { return until; }
     public void setUntil(Calendar until)    { this.until = until; }
 
+    /**
+     * Only export records containing one of these terms. {@code null} exports all
+     * records.
+     */
+    public List<String> getGrepTerms()      { return grepTerms; }
+    public void setGrepTerms(List<String> grepTerms) { this.grepTerms = grepTerms; }
+
+    /**
+     * Ignore the case when searching for terms?
+     */
+    public boolean isIgnoreCase()           { return ignoreCase; }
+    public void setIgnoreCase(boolean ignoreCase) { this.ignoreCase = ignoreCase; }
+
+    /**
+     * Write the output directly, without building an object model first?
+     */
+    public boolean isStreaming()            { return streaming; }
+    public void setStreaming(boolean streaming) { this.streaming = streaming; }
+
+    /**
+     * Number of threads used for rendering the output. Default is 1.
+     */
+    public int getThreads()                 { return threads; }
+    public void setThreads(int threads)     { this.threads = threads; }
+
+    /**
+     * Validate every Nth record of the output. 1 validates all records, 0 disables
+     * validation. Default is 1.
+     */
+    public int getValidationInterval()      { return validationInterval; }
+    public void setValidationInterval(int validationInterval) { this.validationInterval = validationInterval; }
+
+    /**
+     * Write compact output, omitting redundant data?
+     */
+    public boolean isCompact()              { return compact; }
+    public void setCompact(boolean compact) { this.compact = compact; }
+
+    /**
+     * Date formats for detecting birthdays in free text fields. {@code null} does not
+     * detect birthdays.
+     */
+    public List<String> getBirthdayFormats() { return birthdayFormats; }
+    public void setBirthdayFormats(List<String> birthdayFormats) { this.birthdayFormats = birthdayFormats; }
+
+    /**
+     * Further input files of the same type, whose records are appended to the records
+     * of the input file. {@code null} if there are none.
+     */
+    public List<File> getMergeFiles()       { return mergeFiles; }
+    public void setMergeFiles(List<File> mergeFiles) { this.mergeFiles = mergeFiles; }
+
+    /**
+     * How to handle duplicate contacts. {@code null} does not look for duplicates.
+     */
+    public AddressDeduplicator.Mode getDuplicateMode() { return duplicateMode; }
+    public void setDuplicateMode(AddressDeduplicator.Mode duplicateMode) { this.duplicateMode = duplicateMode; }
+
+    /**
+     * Names of the columns to be written, in that order. {@code null} writes all
+     * columns.
+     */
+    public List<String> getFields()         { return fields; }
+    public void setFields(List<String> fields) { this.fields = fields; }
+
+    /**
+     * Compression of the output files. {@code null} writes uncompressed files.
+     */
+    public Compression getCompression()     { return compression; }
+    public void setCompression(Compression compression) { this.compression = compression; }
+
+    /**
+     * Number of threads used for compressing the output files. Default is 1.
+     */
+    public int getCompressThreads()         { return compressThreads; }
+    public void setCompressThreads(int compressThreads) { this.compressThreads = compressThreads; }
+
+    /**
+     * Deflate level of ZIP entries and compressed output files. 0 stores ZIP entries
+     * without compression.
+     */
+    public int getLevel()                   { return level; }
+    public void setLevel(int level)         { this.level = level; }
+
+    /**
+     * Format of Notepad images.
+     */
+    public ImageEncoder.Format getImageFormat() { return imageFormat; }
+    public void setImageFormat(ImageEncoder.Format imageFormat) { this.imageFormat = imageFormat; }
+
+    /**
+     * Filter strategy of encoded PNG images. {@code null} keeps the PNG images as
+     * delivered by the converter.
+     */
+    public ImageEncoder.Filter getPngFilter() { return pngFilter; }
+    public void setPngFilter(ImageEncoder.Filter pngFilter) { this.pngFilter = pngFilter; }
+
 }
@@ -0,0 +1,64 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.handler;
+
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.pdbconverter.export.Exporter;
+import org.shredzone.pdbconverter.export.FreeBusyExporter;
+import org.shredzone.pdbconverter.export.filter.ExportFilter;
+
+/**
+ * {@link ExportHandler} that reads Calendar pdb and writes the busy times as
+ * iCalendar VFREEBUSY. A date range is required.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class FreeBusyHandler extends ICalendarHandler {
+
+    @Override
+    public String getName() {
+        return "freebusy";
+    }
+
+    @Override
+    public String getDescription() {
+        return "CalendarDB to iCalendar free/busy times";
+    }
+
+    @Override
+    protected Exporter<ScheduleRecord, CategoryAppInfo> createExporter() {
+        return new FreeBusyExporter();
+    }
+
+    @Override
+    protected Exporter<ScheduleRecord, CategoryAppInfo> createExporter(ExportOptions options) {
+        FreeBusyExporter exporter = new FreeBusyExporter();
+        exporter.setRange(options.getFrom(), options.getUntil());
+        return exporter;
+    }
+
+    @Override
+    protected ExportFilter<ScheduleRecord> createDateFilter(ExportOptions options) {
+        // The occurrences are clipped to the date range by the exporter
+        return null;
+    }
+
+}
@@ -19,12 +19,19 @@
  */
 package org.shredzone.pdbconverter.handler;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
 import org.shredzone.commons.pdb.converter.Converter;
 import org.shredzone.commons.pdb.converter.ScheduleConverter;
 import org.shredzone.commons.pdb.record.ScheduleRecord;
 import org.shredzone.pdbconverter.export.Exporter;
 import org.shredzone.pdbconverter.export.ScheduleExporter;
+import org.shredzone.pdbconverter.export.StreamingScheduleExporter;
+import org.shredzone.pdbconverter.util.Occurrences;
 
 /**
  * {@link ExportHandler} that reads Calendar pdb and writes an iCalendar file.
@@ -33,6 +40,8 @@ import org.shredzone.pdbconverter.export.ScheduleExporter;
  */
 public class ICalendarHandler extends AbstractCategoryExportHandler<ScheduleRecord, CategoryAppInfo> {
 
+    private final List<ScheduleExporter> exporters = new ArrayList<>();
+
     @Override
     public String getName() {
         return "iCalendar";
@@ -43,6 +52,24 @@ public class ICalendarHandler extends AbstractCategoryExportHandler<ScheduleReco
         return "CalendarDB to iCalendar";
     }
 
+    @Override
+    public void export(File infile, File outfile, ExportOptions options) throws IOException {
+        exporters.clear();
+        super.export(infile, outfile, options);
+    }
+
+    /**
+     * Returns the time that was spent for validating the calendars on the last export,
+     * in milliseconds. Streamed calendars are not validated.
+     */
+    public long getValidationTime() {
+        long result = 0;
+        for (ScheduleExporter exporter : exporters) {
+            result += exporter.getValidationTime();
+        }
+        return result;
+    }
+
     @Override
     protected Converter<ScheduleRecord, CategoryAppInfo> createConverter() {
         return new ScheduleConverter();
@@ -53,4 +80,28 @@ public class ICalendarHandler extends AbstractCategoryExportHandler<ScheduleReco
         return new ScheduleExporter();
     }
 
+    @Override
+    protected Exporter<ScheduleRecord, CategoryAppInfo> createExporter(ExportOptions options) {
+        if (options.isStreaming() || options.getThreads() > 1) {
+            StreamingScheduleExporter exporter = new StreamingScheduleExporter();
+            exporter.setThreads(options.getThreads());
+            exporter.setCompact(options.isCompact());
+            return exporter;
+        }
+
+        ScheduleExporter exporter = new ScheduleExporter();
+        exporter.setValidationInterval(options.getValidationInterval());
+        exporter.setCompact(options.isCompact());
+        exporters.add(exporter);
+        return exporter;
+    }
+
+    @Override
+    protected Occurrences getOccurrences(ScheduleRecord record, int firstDay, int lastDay) {
+        if (record.getSchedule() == null) {
+            return null;
+        }
+        return new Occurrences(record, firstDay, lastDay);
+    }
+
 }
@@ -26,8 +26,6 @@ import org.shredzone.commons.pdb.PdbDatabase;
 import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
 import org.shredzone.commons.pdb.converter.Converter;
 import org.shredzone.commons.pdb.record.ScheduleRecord;
-import org.shredzone.pdbconverter.export.Exporter;
-import org.shredzone.pdbconverter.export.ScheduleExporter;
 import org.shredzone.pdbconverter.mdb.ScheduleMdbReader;
 
 /**
@@ -35,7 +33,7 @@ import org.shredzone.pdbconverter.mdb.ScheduleMdbReader;
  *
  * @author Richard "Shred" Körber
  */
-public class MdbICalendarHandler extends AbstractCategoryExportHandler<ScheduleRecord, CategoryAppInfo> {
+public class MdbICalendarHandler extends ICalendarHandler {
 
     @Override
     public String getName() {
@@ -61,9 +59,4 @@ public class MdbICalendarHandler extends AbstractCategoryExportHandler<ScheduleR
         return null;
     }
 
-    @Override
-    protected Exporter<ScheduleRecord, CategoryAppInfo> createExporter() {
-        return new ScheduleExporter();
-    }
-
 }
@@ -24,6 +24,7 @@ import org.shredzone.commons.pdb.converter.Converter;
 import org.shredzone.commons.pdb.converter.NotepadConverter;
 import org.shredzone.commons.pdb.record.NotepadRecord;
 import org.shredzone.pdbconverter.export.Exporter;
+import org.shredzone.pdbconverter.export.ImageEncoder;
 import org.shredzone.pdbconverter.export.NotepadExporter;
 
 /**
@@ -54,4 +55,18 @@ public class NotepadHandler extends AbstractCategoryExportHandler<NotepadRecord,
         return new NotepadExporter();
     }
 
+    @Override
+    protected Exporter<NotepadRecord, CategoryAppInfo> createExporter(ExportOptions options) {
+        NotepadExporter exporter = new NotepadExporter();
+        exporter.setThreads(options.getThreads());
+        exporter.setLevel(options.getLevel());
+
+        ImageEncoder encoder = new ImageEncoder();
+        encoder.setFormat(options.getImageFormat());
+        encoder.setFilter(options.getPngFilter());
+        encoder.setLevel(options.getLevel());
+        exporter.setImageEncoder(encoder);
+        return exporter;
+    }
+
 }
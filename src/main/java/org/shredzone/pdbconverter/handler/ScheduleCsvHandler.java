@@ -0,0 +1,56 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.handler;
+
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.pdbconverter.export.ScheduleCsvExporter;
+import org.shredzone.pdbconverter.export.Exporter;
+
+/**
+ * {@link ExportHandler} that reads a Calendar pdb file and writes a CSV file.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ScheduleCsvHandler extends ICalendarHandler {
+
+    @Override
+    public String getName() {
+        return "calendar-csv";
+    }
+
+    @Override
+    public String getDescription() {
+        return "CalendarDB to CSV";
+    }
+
+    @Override
+    protected Exporter<ScheduleRecord, CategoryAppInfo> createExporter() {
+        return new ScheduleCsvExporter();
+    }
+
+    @Override
+    protected Exporter<ScheduleRecord, CategoryAppInfo> createExporter(ExportOptions options) {
+        ScheduleCsvExporter exporter = new ScheduleCsvExporter();
+        exporter.setFields(options.getFields());
+        return exporter;
+    }
+
+}
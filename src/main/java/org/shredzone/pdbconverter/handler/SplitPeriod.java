@@ -0,0 +1,99 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.handler;
+
+import org.shredzone.pdbconverter.util.DateMath;
+
+/**
+ * Periods of time that records can be split into.
+ *
+ * @author Richard "Shred" Körber
+ */
+public enum SplitPeriod {
+
+    /**
+     * One file per year.
+     */
+    YEAR {
+        @Override
+        public int key(int epochDay) {
+            return DateMath.year(DateMath.packedDate(epochDay));
+        }
+
+        @Override
+        public int lastDay(int key) {
+            return DateMath.epochDay(key + 1, 1, 1) - 1;
+        }
+
+        @Override
+        public String name(int key) {
+            return String.format("%04d", key);
+        }
+    },
+
+    /**
+     * One file per month.
+     */
+    MONTH {
+        @Override
+        public int key(int epochDay) {
+            return DateMath.packedDate(epochDay) / 100;
+        }
+
+        @Override
+        public int lastDay(int key) {
+            return DateMath.epochDay(key / 100, key % 100 + 1, 1) - 1;
+        }
+
+        @Override
+        public String name(int key) {
+            return String.format("%04d-%02d", key / 100, key % 100);
+        }
+    };
+
+    /**
+     * Gets the key of the period containing the given day. Keys are in ascending
+     * order.
+     *
+     * @param epochDay
+     *            Epoch day
+     * @return Period key
+     */
+    public abstract int key(int epochDay);
+
+    /**
+     * Gets the last day of a period.
+     *
+     * @param key
+     *            Period key
+     * @return Epoch day of the last day of that period
+     */
+    public abstract int lastDay(int key);
+
+    /**
+     * Gets the name of a period, as used in file names.
+     *
+     * @param key
+     *            Period key
+     * @return Period name
+     */
+    public abstract String name(int key);
+
+}
@@ -0,0 +1,49 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.handler;
+
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.TodoRecord;
+import org.shredzone.pdbconverter.export.TodoNdJsonExporter;
+import org.shredzone.pdbconverter.export.Exporter;
+
+/**
+ * {@link ExportHandler} that reads a ToDo pdb file and writes a newline delimited JSON file.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class TodoNdJsonHandler extends TodoXmlHandler {
+
+    @Override
+    public String getName() {
+        return "todo-ndjson";
+    }
+
+    @Override
+    public String getDescription() {
+        return "ToDoDB to NDJSON";
+    }
+
+    @Override
+    protected Exporter<TodoRecord, CategoryAppInfo> createExporter() {
+        return new TodoNdJsonExporter();
+    }
+
+}
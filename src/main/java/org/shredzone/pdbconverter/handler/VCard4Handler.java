@@ -0,0 +1,59 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.handler;
+
+import org.shredzone.commons.pdb.appinfo.AddressAppInfo;
+import org.shredzone.commons.pdb.record.AddressRecord;
+import org.shredzone.pdbconverter.export.Exporter;
+import org.shredzone.pdbconverter.export.VCard4Exporter;
+
+/**
+ * {@link ExportHandler} that reads Address pdb and writes a vCard 4.0 file.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class VCard4Handler extends VCardHandler {
+
+    @Override
+    public String getName() {
+        return "vCard4";
+    }
+
+    @Override
+    public String getDescription() {
+        return "AddressDB to vCard 4.0";
+    }
+
+    @Override
+    protected Exporter<AddressRecord, AddressAppInfo> createExporter() {
+        return new VCard4Exporter();
+    }
+
+    @Override
+    protected Exporter<AddressRecord, AddressAppInfo> createExporter(ExportOptions options) {
+        VCard4Exporter exporter = new VCard4Exporter();
+        if (options.getBirthdayFormats() != null) {
+            exporter.setBirthdayFormats(options.getBirthdayFormats());
+        }
+        exporter.setDuplicateMode(options.getDuplicateMode());
+        return exporter;
+    }
+
+}
@@ -53,4 +53,14 @@ public class VCardHandler extends AbstractCategoryExportHandler<AddressRecord, A
         return new VCardExporter();
     }
 
+    @Override
+    protected Exporter<AddressRecord, AddressAppInfo> createExporter(ExportOptions options) {
+        VCardExporter exporter = new VCardExporter();
+        if (options.getBirthdayFormats() != null) {
+            exporter.setBirthdayFormats(options.getBirthdayFormats());
+        }
+        exporter.setDuplicateMode(options.getDuplicateMode());
+        return exporter;
+    }
+
 }
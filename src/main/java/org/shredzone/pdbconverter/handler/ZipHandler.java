@@ -64,6 +64,8 @@ public class ZipHandler implements ExportHandler {
         try {
             fos = new FileOutputStream(outfile);
             ZipExporter exporter = new ZipExporter();
+            exporter.setThreads(options.getThreads());
+            exporter.setLevel(options.getLevel());
             exporter.export(database, fos);
         } finally {
             if (fos != null) fos.close();
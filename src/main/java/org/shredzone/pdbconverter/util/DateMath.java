@@ -0,0 +1,274 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.util;
+
+import java.util.TimeZone;
+
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+
+/**
+ * Date arithmetics on primitive values, without allocating {@link java.util.Calendar}
+ * objects.
+ * <p>
+ * Dates are represented as epoch days, which is the number of days since January 1st,
+ * 1970. Times are represented as minute of day. All calculations use the proleptic
+ * Gregorian calendar.
+ *
+ * @author Richard "Shred" Körber
+ */
+public final class DateMath {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    public static final long MILLIS_PER_DAY = MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+
+    private DateMath() {
+        // Utility class without constructor
+    }
+
+    /**
+     * Converts a date to epoch days. Days exceeding the month are rolled over to the
+     * following month.
+     *
+     * @param year
+     *            Year
+     * @param month
+     *            Month, 1 = January, 13 = January of the following year
+     * @param day
+     *            Day of month, starting from 1
+     * @return Epoch day
+     */
+    public static int epochDay(int year, int month, int day) {
+        int y = (month <= 2 ? year - 1 : year);
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468 + day - 1;
+    }
+
+    /**
+     * Gets the number of days of a month.
+     *
+     * @param year
+     *            Year
+     * @param month
+     *            Month, 1 = January
+     * @return Number of days
+     */
+    public static int lengthOfMonth(int year, int month) {
+        return epochDay(year, month + 1, 1) - epochDay(year, month, 1);
+    }
+
+    /**
+     * Converts a {@link ShortDate} to epoch days.
+     *
+     * @param date
+     *            {@link ShortDate} to convert
+     * @return Epoch day
+     */
+    public static int epochDay(ShortDate date) {
+        return epochDay(date.getYear(), date.getMonth(), date.getDay());
+    }
+
+    /**
+     * Converts a {@link ShortTime} to minute of day.
+     *
+     * @param time
+     *            {@link ShortTime} to convert
+     * @return Minute of day
+     */
+    public static int minuteOfDay(ShortTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    /**
+     * Converts epoch days to a packed date. The packed date is a decimal number of
+     * the form yyyymmdd, so {@code 20091231} is December 31st, 2009.
+     *
+     * @param epochDay
+     *            Epoch day
+     * @return Packed date
+     */
+    public static int packedDate(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = z - era * 146097;
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = (mp < 10 ? mp + 3 : mp - 9);
+        int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return (year * 100 + month) * 100 + day;
+    }
+
+    /**
+     * Gets the year of a packed date.
+     *
+     * @param packed
+     *            Packed date
+     * @return Year
+     */
+    public static int year(int packed) {
+        return packed / 10000;
+    }
+
+    /**
+     * Gets the month of a packed date.
+     *
+     * @param packed
+     *            Packed date
+     * @return Month, 1 = January
+     */
+    public static int month(int packed) {
+        return (packed / 100) % 100;
+    }
+
+    /**
+     * Gets the day of month of a packed date.
+     *
+     * @param packed
+     *            Packed date
+     * @return Day of month, starting from 1
+     */
+    public static int day(int packed) {
+        return packed % 100;
+    }
+
+    /**
+     * Gets the day of week.
+     *
+     * @param epochDay
+     *            Epoch day
+     * @return Day of week, 0 = Sunday, 6 = Saturday
+     */
+    public static int dayOfWeek(int epochDay) {
+        // January 1st, 1970 was a Thursday
+        return floorMod(epochDay + 4, 7);
+    }
+
+    /**
+     * Gets the epoch day of an instant in UTC.
+     *
+     * @param millis
+     *            Milliseconds since epoch
+     * @return Epoch day
+     */
+    public static int epochDayOf(long millis) {
+        return (int) floorDiv(millis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Gets the second of day of an instant in UTC.
+     *
+     * @param millis
+     *            Milliseconds since epoch
+     * @return Second of day
+     */
+    public static int secondOfDayOf(long millis) {
+        return (int) (floorMod(millis, MILLIS_PER_DAY) / 1000L);
+    }
+
+    /**
+     * Formats an instant as RFC 3339 timestamp in UTC, like "2009-12-31T23:59:59Z".
+     * This method is thread-safe.
+     *
+     * @param millis
+     *            Milliseconds since epoch, must be within the years 0 to 9999
+     * @return Formatted timestamp
+     * @see <a href="http://www.ietf.org/rfc/rfc3339.txt">RFC 3339</a>
+     */
+    public static String formatTimestamp(long millis) {
+        int packed = packedDate(epochDayOf(millis));
+        int second = secondOfDayOf(millis);
+
+        char[] result = new char[20];
+        digits(result, 0, year(packed), 4);
+        result[4] = '-';
+        digits(result, 5, month(packed), 2);
+        result[7] = '-';
+        digits(result, 8, day(packed), 2);
+        result[10] = 'T';
+        digits(result, 11, second / 3600, 2);
+        result[13] = ':';
+        digits(result, 14, (second / 60) % 60, 2);
+        result[16] = ':';
+        digits(result, 17, second % 60, 2);
+        result[19] = 'Z';
+        return new String(result);
+    }
+
+    /**
+     * Converts a local date and time to an instant. Nonexisting and ambiguous local
+     * times at daylight saving transitions are resolved like {@link java.util.Calendar}
+     * does.
+     *
+     * @param epochDay
+     *            Local epoch day
+     * @param minuteOfDay
+     *            Local minute of day, may exceed a day
+     * @param tz
+     *            {@link TimeZone} of the local date and time
+     * @return Milliseconds since epoch
+     */
+    public static long toMillis(int epochDay, int minuteOfDay, TimeZone tz) {
+        long local = epochDay * MILLIS_PER_DAY + minuteOfDay * MILLIS_PER_MINUTE;
+        int offset = tz.getOffset(local - tz.getRawOffset());
+        long result = local - offset;
+        int actual = tz.getOffset(result);
+        return (actual == offset ? result : local - actual);
+    }
+
+    /**
+     * Writes a non-negative number with a fixed number of digits into a char array.
+     */
+    private static void digits(char[] target, int pos, int value, int width) {
+        int v = value;
+        for (int ix = pos + width - 1; ix >= pos; ix--) {
+            target[ix] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+    }
+
+    /**
+     * Floor division, rounding towards negative infinity.
+     */
+    private static long floorDiv(long x, long y) {
+        long r = x / y;
+        return ((x % y != 0) && ((x ^ y) < 0) ? r - 1 : r);
+    }
+
+    /**
+     * Floor modulus, always having the sign of the divisor.
+     */
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * Floor modulus, always having the sign of the divisor.
+     */
+    private static int floorMod(int x, int y) {
+        return (int) floorMod((long) x, (long) y);
+    }
+
+}
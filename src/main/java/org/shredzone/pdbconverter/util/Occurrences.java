@@ -0,0 +1,281 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+
+/**
+ * Iterates over the days a {@link ScheduleRecord} occurs on, in ascending order.
+ * <p>
+ * The days are computed lazily, as epoch days (see {@link DateMath}). Exceptions of
+ * repeating events are skipped. Days that do not exist in a month (like the 31st of a
+ * monthly event in April) are skipped as well, as RFC 5545 demands.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class Occurrences {
+
+    private static final int INVALID = Integer.MIN_VALUE;
+    private static final int MAX_DAY = DateMath.epochDay(9999, 12, 31);
+
+    private final Repeat repeat;
+    private final int start;
+    private final int first;
+    private final int startYear;
+    private final int startMonth;
+    private final int startDay;
+    private final int end;
+    private final int frequency;
+    private final int[] exceptions;
+    private final int[] weekdays;
+
+    private int period = 0;
+    private int slot = 0;
+    private int periodStart;
+    private int next;
+
+    /**
+     * Creates an {@link Occurrences} of a single day.
+     *
+     * @param day
+     *            Epoch day of the occurrence
+     */
+    public Occurrences(int day) {
+        this.repeat = null;
+        this.start = day;
+        this.first = day;
+        this.startYear = 0;
+        this.startMonth = 0;
+        this.startDay = 0;
+        this.end = day;
+        this.frequency = 1;
+        this.exceptions = new int[0];
+        this.weekdays = null;
+        advance();
+    }
+
+    /**
+     * Creates an {@link Occurrences} of a {@link ScheduleRecord}.
+     *
+     * @param schedule
+     *            {@link ScheduleRecord} to iterate over
+     * @param lastDay
+     *            Last epoch day to be returned, even if the schedule repeats beyond
+     *            that day
+     */
+    public Occurrences(ScheduleRecord schedule, int lastDay) {
+        this(schedule, Integer.MIN_VALUE, lastDay);
+    }
+
+    /**
+     * Creates an {@link Occurrences} of a {@link ScheduleRecord}, within a range of
+     * days.
+     *
+     * @param schedule
+     *            {@link ScheduleRecord} to iterate over
+     * @param firstDay
+     *            First epoch day to be returned, even if the schedule started before
+     *            that day
+     * @param lastDay
+     *            Last epoch day to be returned, even if the schedule repeats beyond
+     *            that day
+     */
+    public Occurrences(ScheduleRecord schedule, int firstDay, int lastDay) {
+        this.repeat = schedule.getRepeat();
+        this.start = DateMath.epochDay(schedule.getSchedule());
+        this.first = Math.max(start, firstDay);
+
+        int packed = DateMath.packedDate(start);
+        this.startYear = DateMath.year(packed);
+        this.startMonth = DateMath.month(packed);
+        this.startDay = DateMath.day(packed);
+
+        if (repeat != null) {
+            int last = Math.min(lastDay, MAX_DAY);
+            if (repeat.getUntil() != null) {
+                last = Math.min(last, DateMath.epochDay(repeat.getUntil()));
+            }
+            this.end = last;
+            this.frequency = Math.max(repeat.getFrequency(), 1);
+
+            List<ShortDate> exceptionList = schedule.getExceptions();
+            this.exceptions = new int[exceptionList.size()];
+            for (int ix = 0; ix < exceptions.length; ix++) {
+                exceptions[ix] = DateMath.epochDay(exceptionList.get(ix));
+            }
+            Arrays.sort(exceptions);
+
+            this.weekdays = (repeat.getMode() == Repeat.Mode.WEEKLY ? findWeekdays() : null);
+        } else {
+            this.end = Math.min(lastDay, start);
+            this.frequency = 1;
+            this.exceptions = new int[0];
+            this.weekdays = null;
+        }
+
+        advance();
+    }
+
+    /**
+     * Returns {@code true} if there are further occurrences.
+     */
+    public boolean hasNext() {
+        return next <= end;
+    }
+
+    /**
+     * Returns the epoch day of the next occurrence.
+     *
+     * @return Epoch day
+     * @throws NoSuchElementException
+     *             if there are no further occurrences
+     */
+    public int next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int result = next;
+        advance();
+        return result;
+    }
+
+    /**
+     * Finds the next occurrence.
+     */
+    private void advance() {
+        while (true) {
+            int day = candidate();
+            if (periodStart > end || day > end) {
+                next = Integer.MAX_VALUE;
+                return;
+            }
+            if (day != INVALID && day >= first && Arrays.binarySearch(exceptions, day) < 0) {
+                next = day;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Computes the next candidate day, and moves on to the next one. Candidates are
+     * computed in ascending order. {@link #periodStart} is set to the first day of the
+     * period of the candidate.
+     *
+     * @return Candidate epoch day, or {@link #INVALID} if the candidate day does not
+     *         exist
+     */
+    private int candidate() {
+        if (repeat == null) {
+            periodStart = (period++ == 0 ? start : Integer.MAX_VALUE);
+            return periodStart;
+        }
+
+        switch (repeat.getMode()) {
+            case DAILY: {
+                periodStart = start + period++ * frequency;
+                return periodStart;
+            }
+
+            case WEEKLY: {
+                periodStart = start - DateMath.dayOfWeek(start) + 7 * period * frequency;
+                int result = periodStart + weekdays[slot++];
+                if (slot == weekdays.length) {
+                    slot = 0;
+                    period++;
+                }
+                return result;
+            }
+
+            case MONTHLY: {
+                int monthIndex = startYear * 12 + startMonth - 1 + period++ * frequency;
+                int year = monthIndex / 12;
+                int month = monthIndex % 12 + 1;
+                periodStart = DateMath.epochDay(year, month, 1);
+                return (startDay <= DateMath.lengthOfMonth(year, month)
+                                ? periodStart + startDay - 1 : INVALID);
+            }
+
+            case MONTHLY_BY_DAY: {
+                int monthIndex = startYear * 12 + startMonth - 1 + period++ * frequency;
+                int year = monthIndex / 12;
+                int month = monthIndex % 12 + 1;
+                periodStart = DateMath.epochDay(year, month, 1);
+
+                int weekday = repeat.getMonthlyDay();
+                int week = repeat.getMonthlyWeek();
+                if (week == 4) {
+                    // Last week in month
+                    int last = periodStart + DateMath.lengthOfMonth(year, month) - 1;
+                    return last - (DateMath.dayOfWeek(last) - weekday + 7) % 7;
+                } else {
+                    // Any other week, starting from 0
+                    return periodStart + (weekday - DateMath.dayOfWeek(periodStart) + 7) % 7 + week * 7;
+                }
+            }
+
+            case YEARLY: {
+                int year = startYear + period++ * frequency;
+                periodStart = DateMath.epochDay(year, 1, 1);
+                return (startDay <= DateMath.lengthOfMonth(year, startMonth)
+                                ? DateMath.epochDay(year, startMonth, startDay) : INVALID);
+            }
+
+            default:
+                throw new IllegalStateException("unknown repeat mode " + repeat.getMode());
+        }
+    }
+
+    /**
+     * Finds the weekdays of a weekly repeating event, as offsets from sunday. If no
+     * weekday is set, the weekday of the start day is used.
+     *
+     * @return Weekday offsets, in ascending order
+     */
+    private int[] findWeekdays() {
+        boolean[] repeatWeekDays = repeat.getWeeklyDays();
+
+        int count = 0;
+        for (int ix = 0; repeatWeekDays != null && ix < repeatWeekDays.length; ix++) {
+            if (repeatWeekDays[ix]) {
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return new int[] { DateMath.dayOfWeek(start) };
+        }
+
+        int[] result = new int[count];
+        int pos = 0;
+        for (int ix = 0; ix < repeatWeekDays.length; ix++) {
+            if (repeatWeekDays[ix]) {
+                result[pos++] = ix;
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,277 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An {@link OutputStream} that writes gzip compressed data, compressing blocks of
+ * data in parallel.
+ * <p>
+ * Like pigz, the data is split into blocks that are deflated independently, using
+ * the last 32 KiB of the preceding block as dictionary. Each block is terminated by
+ * a sync flush, so the compressed blocks can simply be concatenated. The result is a
+ * single gzip member that can be read by any gzip decompressor. The CRC is computed
+ * on the writing thread. Only a limited number of blocks is kept in memory.
+ *
+ * @author Richard "Shred" Körber
+ * @see <a href="http://tools.ietf.org/html/rfc1952">RFC 1952</a>
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICT_SIZE = 32 * 1024;
+
+    private static final byte[] HEADER = {
+        0x1F, (byte) 0x8B,          // magic
+        Deflater.DEFLATED,          // compression method
+        0,                          // flags
+        0, 0, 0, 0,                 // modification time, not set
+        0,                          // extra flags
+        (byte) 0xFF,                // operating system, unknown
+    };
+
+    private final OutputStream out;
+    private final int threads;
+    private final int level;
+    private final ForkJoinPool pool;
+    private final Deque<Future<ByteArrayOutputStream>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int pos = 0;
+    private byte[] previous = null;
+    private long size = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new {@link ParallelGzipOutputStream} with default compression level.
+     *
+     * @param out
+     *            {@link OutputStream} to write the compressed data to
+     * @param threads
+     *            Number of threads compressing the blocks
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads) throws IOException {
+        this(out, threads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates a new {@link ParallelGzipOutputStream}.
+     *
+     * @param out
+     *            {@link OutputStream} to write the compressed data to
+     * @param threads
+     *            Number of threads compressing the blocks
+     * @param level
+     *            Compression level, see {@link Deflater}
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads, int level) throws IOException {
+        this.out = out;
+        this.threads = Math.max(threads, 1);
+        this.level = level;
+        out.write(HEADER);
+        this.pool = new ForkJoinPool(this.threads);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+
+        crc.update(b, off, len);
+        size += len;
+
+        int ix = off;
+        int remaining = len;
+        while (remaining > 0) {
+            int count = Math.min(remaining, block.length - pos);
+            System.arraycopy(b, ix, block, pos, count);
+            pos += count;
+            ix += count;
+            remaining -= count;
+
+            if (pos == block.length) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. Pending blocks are not compressed before they
+     * are complete, so this method does not write data that is buffered in this
+     * stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Compresses the remaining data, waits for all blocks to be compressed, and
+     * writes the gzip trailer. The underlying stream is closed as well.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            submit(true);
+            while (!pending.isEmpty()) {
+                writeBlock(pending.remove());
+            }
+
+            int crcValue = (int) crc.getValue();
+            int isize = (int) size;
+            out.write(new byte[] {
+                (byte) crcValue, (byte) (crcValue >> 8), (byte) (crcValue >> 16), (byte) (crcValue >> 24),
+                (byte) isize, (byte) (isize >> 8), (byte) (isize >> 16), (byte) (isize >> 24),
+            });
+        } finally {
+            closed = true;
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Submits the current block for compression, and starts a new block. If too many
+     * blocks are pending, the oldest block is written.
+     *
+     * @param last
+     *            {@code true} if this is the last block of the stream
+     */
+    private void submit(boolean last) throws IOException {
+        pending.add(pool.submit(new BlockCompressor(block, pos, previous, last)));
+        previous = block;
+        block = new byte[BLOCK_SIZE];
+        pos = 0;
+
+        while (pending.size() > threads * 2) {
+            writeBlock(pending.remove());
+        }
+    }
+
+    /**
+     * Waits for a block to be compressed, and writes it to the {@link OutputStream}.
+     *
+     * @param future
+     *            {@link Future} of the compressed block
+     */
+    private void writeBlock(Future<ByteArrayOutputStream> future) throws IOException {
+        try {
+            future.get().writeTo(out);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compression was interrupted");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Could not compress", cause);
+        }
+    }
+
+    /**
+     * Deflates a single block of data.
+     */
+    private class BlockCompressor implements Callable<ByteArrayOutputStream> {
+        private final byte[] data;
+        private final int length;
+        private final byte[] dictionary;
+        private final boolean last;
+
+        /**
+         * Creates a new {@link BlockCompressor}.
+         *
+         * @param data
+         *            Block data, must not be modified afterwards
+         * @param length
+         *            Length of the block data
+         * @param dictionary
+         *            Complete preceding block, or {@code null} if this is the first
+         *            block
+         * @param last
+         *            {@code true} if this is the last block of the stream
+         */
+        public BlockCompressor(byte[] data, int length, byte[] dictionary, boolean last) {
+            this.data = data;
+            this.length = length;
+            this.dictionary = dictionary;
+            this.last = last;
+        }
+
+        @Override
+        public ByteArrayOutputStream call() {
+            ByteArrayOutputStream result = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[16 * 1024];
+
+            Deflater deflater = new Deflater(level, true);
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary, dictionary.length - DICT_SIZE, DICT_SIZE);
+                }
+                deflater.setInput(data, 0, length);
+
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int count = deflater.deflate(buffer, 0, buffer.length);
+                        result.write(buffer, 0, count);
+                    }
+                } else {
+                    int count;
+                    do {
+                        count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        result.write(buffer, 0, count);
+                    } while (count == buffer.length || !deflater.needsInput());
+                }
+            } finally {
+                deflater.end();
+            }
+
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the AddressDeduplicator.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class AddressDeduplicatorTest {
+
+    @Test
+    public void normalizeTest() {
+        Assert.assertEquals("", AddressDeduplicator.normalize(null));
+        Assert.assertEquals("", AddressDeduplicator.normalize(" -- "));
+        Assert.assertEquals("korber", AddressDeduplicator.normalize(" Körber "));
+        Assert.assertEquals("o brien j r", AddressDeduplicator.normalize("O'Brien, J.R."));
+        Assert.assertEquals("john smith", AddressDeduplicator.sortWords("smith john"));
+        Assert.assertEquals("smith", AddressDeduplicator.sortWords("smith"));
+    }
+
+    @Test
+    public void keyTest() {
+        AddressDeduplicator dedup = new AddressDeduplicator();
+        dedup.add("Richard", "Körber", null, 3, "+49 123 456789");
+        dedup.add("richard", "Korber", null, 2, "(49) 123-456789");          // phone
+        dedup.add("Shred", null, null, 4, "SHRED@example.com");
+        dedup.add(null, "Shred", null, 1, "shred@example.com", "0123/456");  // email
+        dedup.add(null, null, "Example Corp", 2, "info@example.com");
+        dedup.add(null, null, "example corp.", 1, "INFO@example.com");      // company
+        dedup.add("Anna", "Smith", null, 1, "12345");                        // too short
+        dedup.add("Anna", "Smith", null, 1, "12345");
+        dedup.add(null, null, null, 5, "+49 123 456789");                    // no name
+
+        int[] groups = dedup.findGroups();
+        Assert.assertEquals(9, dedup.size());
+        Assert.assertArrayEquals(new int[] { 0, 0, 2, 2, 4, 4, 6, 7, 8 }, groups);
+    }
+
+    /**
+     * A shared key or a similar name alone must not join contacts.
+     */
+    @Test
+    public void singleSignalTest() {
+        AddressDeduplicator dedup = new AddressDeduplicator();
+        dedup.add("John", "Smith", "ACME", 1, "+1 555 100000");
+        dedup.add("Jane", "Doe", "ACME", 1, "+1 555 100000");                // switchboard
+        dedup.add("Jane", "Smith", null, 1, "family@example.com");
+        dedup.add("Joe", "Smith", null, 1, "family@example.com");            // family
+        dedup.add("John", "Smith", null, 1, "john@example.com");             // namesake
+        dedup.add("Jon", "Smith", null, 1, "+1 555 100000");
+
+        Assert.assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5 }, dedup.findGroups());
+    }
+
+    @Test
+    public void transitiveTest() {
+        AddressDeduplicator dedup = new AddressDeduplicator();
+        dedup.add("John", "Smith", null, 1, "111111");
+        dedup.add("John", "Smith", null, 1, "b@example.com");
+        dedup.add("Smith", "John", null, 5, "111-111", "B@Example.com");
+        dedup.add("Jane", "Smith", null, 9, "111111", "b@example.com");
+
+        Assert.assertArrayEquals(new int[] { 2, 2, 2, 3 }, dedup.findGroups());
+    }
+
+    @Test
+    public void similarTest() {
+        AddressDeduplicator dedup = new AddressDeduplicator();
+        dedup.add("John", "Smith", null, 1, "john@example.com");
+        dedup.add(null, "Smith, John", null, 2, "JOHN@example.com");
+        dedup.add("Jane", "Smith", null, 1, "john@example.com");
+        dedup.add("Maximilian", "Mustermann-Schulze", null, 1, "+49 555 123456");
+        dedup.add("Maximillian", "Mustermann Schulze", null, 1, "+49 555 123456");
+        dedup.add("Maximilian", "Mustermann-Schulze", null, 1);
+
+        Assert.assertArrayEquals(new int[] { 1, 1, 2, 3, 3, 5 }, dedup.findGroups());
+    }
+
+    @Test
+    public void flagTest() {
+        int[] duplicates = { 0, 0, -1, 3, 0 };
+        Assert.assertArrayEquals(new int[] { 1, 1, -1, -1, 1 },
+                        AddressDeduplicator.flagDuplicates(new int[] { 1, 1, -1, 3, 1 }));
+        Assert.assertArrayEquals(new int[] { 0, 0, -1, -1, 0 },
+                        AddressDeduplicator.flagDuplicates(duplicates));
+    }
+
+    @Test
+    public void largeTest() {
+        AddressDeduplicator dedup = new AddressDeduplicator();
+        Random rnd = new Random(42);
+        int count = 200000;
+        for (int ix = 0; ix < count; ix++) {
+            dedup.add(randomName(rnd, 6), randomName(rnd, 9),
+                            null, 1, "+1 555 " + (1000000 + ix), "user" + ix + "@example.com");
+        }
+        Random names = new Random(42);
+        for (int ix = 0; ix < count; ix++) {
+            String first = randomName(names, 6);
+            String last = randomName(names, 9);
+            if (ix % 1000 == 0) {
+                dedup.add(last, first, null, 2, "USER" + ix + "@EXAMPLE.COM");
+            }
+        }
+
+        int[] groups = dedup.findGroups();
+        int duplicates = 0;
+        for (int ix = 0; ix < count; ix++) {
+            if (groups[ix] != ix) {
+                duplicates++;
+            }
+        }
+        Assert.assertEquals(count / 1000, duplicates);
+        Assert.assertEquals(count, groups[count]);
+        Assert.assertEquals(count, groups[0]);
+    }
+
+    /**
+     * Creates a random name of the given length.
+     */
+    private static String randomName(Random rnd, int length) {
+        char[] name = new char[length];
+        for (int ix = 0; ix < length; ix++) {
+            name[ix] = (char) ('a' + rnd.nextInt(26));
+        }
+        return new String(name);
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the CsvWriter.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class CsvWriterTest {
+
+    @Test
+    public void fieldTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvWriter csv = new CsvWriter(out);
+        csv.field("id").field("name").field("note").endRecord();
+        csv.field(Long.MIN_VALUE).field("Doe, John").field("say \"hi\"").endRecord();
+        csv.field(-12).field((String) null).field("line\r\nbreak").endRecord();
+        csv.field(true).field("").field("M\u00FCller \u20AC \uD83D\uDE00 \ud800").endRecord();
+        csv.date(2009, 5, 3).time(7, 5).field(0).endRecord();
+        csv.flush();
+
+        Assert.assertEquals("id,name,note\r\n"
+                + "-9223372036854775808,\"Doe, John\",\"say \"\"hi\"\"\"\r\n"
+                + "-12,,\"line\r\nbreak\"\r\n"
+                + "true,,M\u00FCller \u20AC \uD83D\uDE00 \uFFFD\r\n"
+                + "2009-05-03,07:05,0\r\n",
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void longFieldTest() throws IOException {
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'x');
+        String plain = new String(chars);
+        chars[5000] = ',';
+        String special = new String(chars);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvWriter csv = new CsvWriter(out);
+        for (int ix = 0; ix < 5; ix++) {
+            csv.field(ix).field("a\"b").endRecord();
+        }
+        csv.field(special).field(plain).endRecord();
+        csv.flush();
+
+        StringBuilder expected = new StringBuilder();
+        for (int ix = 0; ix < 5; ix++) {
+            expected.append(ix).append(",\"a\"\"b\"\r\n");
+        }
+        expected.append('"').append(special).append("\",\"").append(plain).append("\"\r\n");
+
+        Assert.assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,148 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+
+/**
+ * Unit tests for the EventUidGenerator.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class EventUidGeneratorTest {
+
+    /**
+     * UIDs must be deterministic, and distinct for identical records.
+     */
+    @Test
+    public void deterministicTest() {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = createDatabase();
+        database.getRecords().add(createRecord("Event #1"));
+
+        List<String> first = generateUids(database);
+        List<String> second = generateUids(database);
+
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(first.size(), new HashSet<>(first).size());
+        for (String uid : first) {
+            Assert.assertTrue(uid.endsWith(EventUidGenerator.DOMAIN));
+        }
+    }
+
+    /**
+     * Deleting a record must not change the UIDs of the other records.
+     */
+    @Test
+    public void deleteTest() {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = createDatabase();
+        List<String> before = generateUids(database);
+
+        database.getRecords().remove(2);
+        List<String> after = generateUids(database);
+
+        List<String> expected = new ArrayList<>(before);
+        expected.remove(2);
+        Assert.assertEquals(expected, after);
+    }
+
+    /**
+     * Editing other fields than the identity of a record must not change its UID.
+     */
+    @Test
+    public void editTest() {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = createDatabase();
+        List<String> before = generateUids(database);
+
+        ScheduleRecord record = database.getRecords().get(2);
+        record.setNote("Bring the slides");
+        record.setLocation("Room 4");
+        record.setEndTime(new ShortTime(12, 0));
+        Assert.assertEquals(before, generateUids(database));
+
+        record.setDescription("Renamed event");
+        List<String> after = generateUids(database);
+        Assert.assertFalse(before.get(2).equals(after.get(2)));
+    }
+
+    /**
+     * The database name must be part of the UID.
+     */
+    @Test
+    public void databaseNameTest() {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = createDatabase();
+        List<String> before = generateUids(database);
+
+        database.setName("OtherDB");
+        List<String> after = generateUids(database);
+
+        for (String uid : after) {
+            Assert.assertFalse(before.contains(uid));
+        }
+    }
+
+    /**
+     * Creates a named database with a few records.
+     */
+    private PdbDatabase<ScheduleRecord, CategoryAppInfo> createDatabase() {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = new PdbDatabase<>();
+        database.setAppInfo(new CategoryAppInfo());
+        database.setName("DatebookDB");
+        database.setCreator("date");
+        for (int ix = 0; ix < 5; ix++) {
+            database.getRecords().add(createRecord("Event #" + ix));
+        }
+        return database;
+    }
+
+    /**
+     * Creates a {@link ScheduleRecord} with the given description.
+     */
+    private ScheduleRecord createRecord(String description) {
+        ScheduleRecord record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(2009, 5, 3));
+        record.setStartTime(new ShortTime(10, 30));
+        record.setEndTime(new ShortTime(11, 45));
+        record.setDescription(description);
+        return record;
+    }
+
+    /**
+     * Generates the UIDs of all records of the database.
+     */
+    private List<String> generateUids(PdbDatabase<ScheduleRecord, CategoryAppInfo> database) {
+        EventUidGenerator generator = new EventUidGenerator(database);
+        List<String> result = new ArrayList<>();
+        for (ScheduleRecord record : database.getRecords()) {
+            result.add(generator.generateUid(record));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.pdbconverter.export.FieldClassifier.Type;
+
+/**
+ * Unit tests for the FieldClassifier.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class FieldClassifierTest {
+
+    private static final Pattern EMAIL_PATTERN =
+            Pattern.compile("[^@]+\\@[0-9a-z.-]+", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern URL_PATTERN =
+            Pattern.compile("(ftp|https?)\\:\\/\\/.*", Pattern.CASE_INSENSITIVE);
+
+    @Test
+    public void classifyTest() {
+        FieldClassifier fc = new FieldClassifier();
+
+        Assert.assertEquals(Type.EMAIL, fc.classify("shred@example.com"));
+        Assert.assertEquals(Type.EMAIL, fc.classify("Richard Shred <shred@EXAMPLE.com"));
+        Assert.assertEquals(Type.OTHER, fc.classify("@example.com"));
+        Assert.assertEquals(Type.OTHER, fc.classify("shred@"));
+        Assert.assertEquals(Type.OTHER, fc.classify("shred@example.com>"));
+        Assert.assertEquals(Type.OTHER, fc.classify("shred@exa@mple.com"));
+
+        Assert.assertEquals(Type.URL, fc.classify("http://www.shredzone.org"));
+        Assert.assertEquals(Type.URL, fc.classify("HTTPS://www.shredzone.org/"));
+        Assert.assertEquals(Type.URL, fc.classify("ftp://"));
+        Assert.assertEquals(Type.OTHER, fc.classify("www.shredzone.org"));
+        Assert.assertEquals(Type.OTHER, fc.classify("http://www.shredzone.org\nfoo"));
+
+        Assert.assertEquals(Type.PHONE, fc.classify("+49 (0)123 / 456-789"));
+        Assert.assertEquals(Type.OTHER, fc.classify("123 ext. 4"));
+        Assert.assertEquals(Type.OTHER, fc.classify("- / -"));
+        Assert.assertEquals(Type.OTHER, fc.classify(""));
+
+        // no date formats set
+        Assert.assertEquals(Type.PHONE, fc.classify("1975-02-28"));
+    }
+
+    @Test
+    public void dateTest() {
+        FieldClassifier fc = new FieldClassifier();
+        fc.setDateFormats(Arrays.asList("dd.MM.yyyy", "yyyy-MM-dd", "M/d/yyyy"));
+
+        Assert.assertEquals(Type.DATE, fc.classify("28.02.1975"));
+        Assert.assertEquals(19750228, fc.getDate());
+        Assert.assertEquals(Type.DATE, fc.classify("1.2.2000"));
+        Assert.assertEquals(20000201, fc.getDate());
+        Assert.assertEquals(Type.DATE, fc.classify("2000-02-29"));
+        Assert.assertEquals(20000229, fc.getDate());
+        Assert.assertEquals(Type.DATE, fc.classify("12/31/1999"));
+        Assert.assertEquals(19991231, fc.getDate());
+
+        Assert.assertEquals(Type.PHONE, fc.classify("29.02.2001"));
+        Assert.assertEquals(Type.PHONE, fc.classify("1.13.2000"));
+        Assert.assertEquals(Type.PHONE, fc.classify("01.01.75"));
+        Assert.assertEquals(Type.PHONE, fc.classify("01.01.19750"));
+        Assert.assertEquals(Type.OTHER, fc.classify("01.01.1975 birthday"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badFormatTest() {
+        new FieldClassifier().setDateFormats(Arrays.asList("dd.MM.yy"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void incompleteFormatTest() {
+        new FieldClassifier().setDateFormats(Arrays.asList("MM/yyyy"));
+    }
+
+    /**
+     * Email and URL detection must give the same results as the former regular
+     * expressions.
+     */
+    @Test
+    public void regexEquivalenceTest() {
+        FieldClassifier fc = new FieldClassifier();
+        String alphabet = "aZ0@.-:/ hfHFtTpPsS\n\r äſ<";
+        String[] prefixes = { "", "http://", "HTTPS://", "ftp:/", "FtP://", "httſp://" };
+
+        Random rnd = new Random(42);
+        for (int ix = 0; ix < 100000; ix++) {
+            StringBuilder sb = new StringBuilder(prefixes[rnd.nextInt(prefixes.length)]);
+            int len = rnd.nextInt(8);
+            for (int jx = 0; jx < len; jx++) {
+                sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+            }
+            String value = sb.toString();
+
+            Type expected;
+            if (EMAIL_PATTERN.matcher(value).matches()) {
+                expected = Type.EMAIL;
+            } else if (URL_PATTERN.matcher(value).matches()) {
+                expected = Type.URL;
+            } else {
+                expected = null;
+            }
+
+            Type actual = fc.classify(value);
+            if (actual != Type.EMAIL && actual != Type.URL) {
+                actual = null;
+            }
+
+            Assert.assertEquals(value, expected, actual);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.shredzone.commons.pdb.CalendarFactory;
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat.Mode;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+
+/**
+ * Unit tests for the FreeBusyExporter.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class FreeBusyExporterTest {
+
+    private TimeZone defaultTz;
+    private TimeZone factoryTz;
+
+    @Before
+    public void setup() {
+        TimeZone tz = TimeZone.getTimeZone("Europe/Berlin");
+        defaultTz = TimeZone.getDefault();
+        factoryTz = CalendarFactory.getInstance().getTimeZone();
+        TimeZone.setDefault(tz);
+        CalendarFactory.getInstance().setTimeZone(tz);
+    }
+
+    @After
+    public void teardown() {
+        TimeZone.setDefault(defaultTz);
+        CalendarFactory.getInstance().setTimeZone(factoryTz);
+    }
+
+    /**
+     * Occurrences must be expanded, clipped to the date range, and merged.
+     */
+    @Test
+    public void busyTest() throws IOException {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = new PdbDatabase<>();
+        database.setAppInfo(new CategoryAppInfo());
+
+        // Daily, starting before the date range
+        database.getRecords().add(createRecord(new ShortDate(2008, 12, 30), 10, 0, 11, 0,
+                        new Repeat(Mode.DAILY, 1, new ShortDate(2009, 1, 3), null, 0, 0)));
+
+        // Overlapping with the daily event
+        database.getRecords().add(createRecord(new ShortDate(2009, 1, 2), 10, 30, 12, 0, null));
+
+        // Overnight, starting before the date range
+        database.getRecords().add(createRecord(new ShortDate(2008, 12, 31), 23, 0, 1, 0, null));
+
+        // Weekly on Mondays, with an exception
+        ScheduleRecord weekly = createRecord(new ShortDate(2009, 1, 5), 14, 0, 15, 0,
+                        new Repeat(Mode.WEEKLY, 1, null,
+                        new boolean[] { false, true, false, false, false, false, false }, 0, 0));
+        weekly.getExceptions().add(new ShortDate(2009, 1, 12));
+        database.getRecords().add(weekly);
+
+        // Untimed
+        ScheduleRecord untimed = new ScheduleRecord(0);
+        untimed.setSchedule(new ShortDate(2009, 1, 10));
+        database.getRecords().add(untimed);
+
+        // After the date range
+        database.getRecords().add(createRecord(new ShortDate(2009, 2, 1), 10, 0, 11, 0, null));
+
+        String result = export(database, 2009, Calendar.JANUARY, 2009, Calendar.FEBRUARY);
+
+        Assert.assertTrue(result.contains("\r\nDTSTART:20081231T230000Z\r\nDTEND:20090131T230000Z\r\n"));
+        Assert.assertTrue(result.contains("\r\nFREEBUSY;FBTYPE=BUSY:"
+                        + "20081231T230000Z/20090101T000000Z,"
+                        + "20090101T090000Z/20090101T100000Z,"
+                        + "20090102T090000Z/20090102T110000Z,"
+                        + "20090103T090000Z/20090103T100000Z,"
+                        + "20090105T130000Z/20090105T140000Z,"
+                        + "20090119T130000Z/20090119T140000Z,"
+                        + "20090126T130000Z/20090126T140000Z\r\n"));
+    }
+
+    /**
+     * Events repeating for decades must be expanded within the date range only.
+     */
+    @Test
+    public void decadesTest() throws IOException {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = new PdbDatabase<>();
+        database.setAppInfo(new CategoryAppInfo());
+        database.getRecords().add(createRecord(new ShortDate(1970, 1, 1), 6, 0, 7, 0,
+                        new Repeat(Mode.DAILY, 1, null, null, 0, 0)));
+
+        String result = export(database, 2009, Calendar.JANUARY, 2010, Calendar.JANUARY);
+
+        Assert.assertTrue(result.contains("FREEBUSY;FBTYPE=BUSY:20090101T050000Z/20090101T060000Z,"));
+        Assert.assertTrue(result.contains(",20090701T040000Z/20090701T050000Z,"));
+        Assert.assertTrue(result.contains(",20091231T050000Z/20091231T060000Z\r\n"));
+        Assert.assertEquals(365, result.split("/2009").length - 1);
+    }
+
+    /**
+     * A date range is required.
+     */
+    @Test(expected = IOException.class)
+    public void noRangeTest() throws IOException {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = new PdbDatabase<>();
+        database.setAppInfo(new CategoryAppInfo());
+        new FreeBusyExporter().export(database, new ByteArrayOutputStream());
+    }
+
+    /**
+     * Exports the database within the given date range, and returns the unfolded
+     * result.
+     */
+    private static String export(PdbDatabase<ScheduleRecord, CategoryAppInfo> database,
+            int fromYear, int fromMonth, int untilYear, int untilMonth) throws IOException {
+        Calendar from = CalendarFactory.getInstance().create();
+        from.clear();
+        from.set(fromYear, fromMonth, 1);
+
+        Calendar until = CalendarFactory.getInstance().create();
+        until.clear();
+        until.set(untilYear, untilMonth, 1);
+
+        FreeBusyExporter exporter = new FreeBusyExporter();
+        exporter.setRange(from, until);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(database, out);
+        return out.toString("UTF-8").replace("\r\n ", "");
+    }
+
+    /**
+     * Creates a {@link ScheduleRecord} with starting and ending time.
+     */
+    private static ScheduleRecord createRecord(ShortDate date, int startHour, int startMinute,
+            int endHour, int endMinute, Repeat repeat) {
+        ScheduleRecord record = new ScheduleRecord(0);
+        record.setSchedule(date);
+        record.setStartTime(new ShortTime(startHour, startMinute));
+        record.setEndTime(new ShortTime(endHour, endMinute));
+        record.setRepeat(repeat);
+        return record;
+    }
+
+}
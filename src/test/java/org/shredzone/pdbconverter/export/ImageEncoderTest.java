@@ -0,0 +1,154 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the ImageEncoder.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ImageEncoderTest {
+
+    @Test
+    public void passThroughTest() throws IOException {
+        byte[] png = toPng(createImage(false));
+        Assert.assertSame(png, new ImageEncoder().encode(png));
+    }
+
+    @Test
+    public void pngTest() throws IOException {
+        for (boolean color : new boolean[] { false, true }) {
+            BufferedImage image = createImage(color);
+            byte[] png = toPng(image);
+
+            for (ImageEncoder.Filter filter : ImageEncoder.Filter.values()) {
+                ImageEncoder encoder = new ImageEncoder();
+                encoder.setFilter(filter);
+                encoder.setLevel(9);
+
+                BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoder.encode(png)));
+                Assert.assertNotNull(decoded);
+                Assert.assertEquals(image.getWidth(), decoded.getWidth());
+                Assert.assertEquals(image.getHeight(), decoded.getHeight());
+                Assert.assertArrayEquals(filter.name(), pixels(image), pixels(decoded));
+            }
+        }
+    }
+
+    @Test
+    public void pbmTest() throws IOException {
+        BufferedImage image = new BufferedImage(10, 2, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 10; x++) {
+            image.setRGB(x, 0, 0xFFFFFF);
+            image.setRGB(x, 1, (x % 3 == 0 ? 0x000000 : 0xFFFFFF));
+        }
+        image.setRGB(9, 0, 0x404040);
+
+        ImageEncoder encoder = new ImageEncoder();
+        encoder.setFormat(ImageEncoder.Format.PBM);
+        byte[] pbm = encoder.encode(toPng(image));
+
+        byte[] header = "P4\n10 2\n".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertArrayEquals(header, Arrays.copyOf(pbm, header.length));
+        Assert.assertEquals(header.length + 4, pbm.length);
+        Assert.assertEquals(0x00, pbm[header.length] & 0xFF);
+        Assert.assertEquals(0x40, pbm[header.length + 1] & 0xFF);
+        Assert.assertEquals(0x92, pbm[header.length + 2] & 0xFF);
+        Assert.assertEquals(0x40, pbm[header.length + 3] & 0xFF);
+    }
+
+    @Test
+    public void tiffTest() throws IOException {
+        BufferedImage image = createImage(true);
+
+        ImageEncoder encoder = new ImageEncoder();
+        encoder.setFormat(ImageEncoder.Format.TIFF);
+        byte[] tiff = encoder.encode(toPng(image));
+
+        int dataLength = image.getWidth() * image.getHeight() * 3;
+        Assert.assertEquals('I', tiff[0]);
+        Assert.assertEquals('I', tiff[1]);
+        Assert.assertEquals(42, tiff[2]);
+        Assert.assertEquals(0, tiff[3]);
+
+        int dataOffset = tiff.length - dataLength;
+        int[] expected = pixels(image);
+        for (int ix = 0; ix < expected.length; ix++) {
+            int pos = dataOffset + ix * 3;
+            int rgb = ((tiff[pos] & 0xFF) << 16) | ((tiff[pos + 1] & 0xFF) << 8) | (tiff[pos + 2] & 0xFF);
+            Assert.assertEquals(expected[ix], rgb);
+        }
+    }
+
+    /**
+     * Creates a test image with an odd width. It is either black and white, or
+     * colored.
+     */
+    private BufferedImage createImage(boolean color) {
+        Random rnd = new Random(42);
+        BufferedImage image = new BufferedImage(37, 23, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb;
+                if (color) {
+                    rgb = rnd.nextInt(0x1000000);
+                } else {
+                    rgb = ((x + y) % 5 == 0 || rnd.nextInt(8) == 0 ? 0x000000 : 0xFFFFFF);
+                }
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Encodes an image as PNG.
+     */
+    private byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Gets the RGB values of all pixels of an image.
+     */
+    private int[] pixels(BufferedImage image) {
+        int[] result = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        for (int ix = 0; ix < result.length; ix++) {
+            result[ix] &= 0xFFFFFF;
+        }
+        return result;
+    }
+
+}
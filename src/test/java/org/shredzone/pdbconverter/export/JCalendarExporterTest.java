@@ -0,0 +1,121 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.shredzone.commons.pdb.CalendarFactory;
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+
+/**
+ * Unit tests for the JCalendarExporter.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class JCalendarExporterTest {
+
+    private TimeZone defaultTz;
+    private TimeZone factoryTz;
+
+    @Before
+    public void setup() {
+        TimeZone tz = TimeZone.getTimeZone("Europe/Berlin");
+        defaultTz = TimeZone.getDefault();
+        factoryTz = CalendarFactory.getInstance().getTimeZone();
+        TimeZone.setDefault(tz);
+        CalendarFactory.getInstance().setTimeZone(tz);
+    }
+
+    @After
+    public void teardown() {
+        TimeZone.setDefault(defaultTz);
+        CalendarFactory.getInstance().setTimeZone(factoryTz);
+    }
+
+    /**
+     * Events must be mapped like in the iCalendar exporters.
+     */
+    @Test
+    public void contentTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JCalendarExporter().export(StreamingScheduleExporterTest.createDatabase(), out);
+        String result = strip(out);
+
+        Assert.assertTrue(result.startsWith("[\"vcalendar\",[[\"prodid\",{},\"text\","));
+        Assert.assertTrue(result.endsWith("]]]]\n"));
+        Assert.assertTrue(result.contains(",[[\"vtimezone\",[[\"tzid\",{},\"text\",\"Europe/Berlin\"]"));
+        Assert.assertTrue(result.contains("[\"tzoffsetfrom\",{},\"utc-offset\",\"+01:00\"]"));
+        Assert.assertTrue(result.contains("{\"freq\":\"YEARLY\",\"bymonth\":10,\"byday\":\"-1SU\"}"));
+        Assert.assertTrue(result.contains("[\"dtstart\",{\"tzid\":\"Europe/Berlin\"},\"date-time\",\"2009-05-03T10:30:00\"]"));
+        Assert.assertTrue(result.contains("[\"dtend\",{\"tzid\":\"Europe/Berlin\"},\"date-time\",\"2011-01-01T01:30:00\"]"));
+        Assert.assertTrue(result.contains("[\"summary\",{},\"text\",\"Meeting; with, special\\\\characters\\nand a line break\"]"));
+        Assert.assertTrue(result.contains("[\"categories\",{},\"text\",\"Business\"]"));
+        Assert.assertTrue(result.contains("[\"class\",{},\"text\",\"PRIVATE\"]"));
+        Assert.assertTrue(result.contains("[[\"valarm\",[[\"trigger\",{},\"duration\",\"-PT15M\"]"));
+        Assert.assertTrue(result.contains("[\"dtstart\",{},\"date\",\"1975-02-28\"],[\"dtend\",{},\"date\",\"1975-03-01\"]"));
+        Assert.assertTrue(result.contains("[\"rrule\",{},\"recur\",{\"freq\":\"WEEKLY\",\"until\":\"2009-06-30T07:00:00Z\",\"interval\":2,\"byday\":[\"MO\",\"WE\",\"FR\"]}]"));
+        Assert.assertTrue(result.contains("[\"rrule\",{},\"recur\",{\"freq\":\"MONTHLY\",\"interval\":3,\"byday\":\"-1FR\"}]"));
+        Assert.assertTrue(result.contains("[\"exdate\",{},\"date\",\"2009-02-02\"],[\"exdate\",{},\"date\",\"2009-03-04\"]"));
+    }
+
+    /**
+     * Parallel rendering must generate the same output as sequential rendering.
+     */
+    @Test
+    public void parallelTest() throws IOException {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = StreamingScheduleExporterTest.createDatabase();
+        for (int ix = 0; ix < 1000; ix++) {
+            ScheduleRecord record = new ScheduleRecord(0);
+            record.setSchedule(new ShortDate(2000 + ix / 365, 1 + ix % 12, 1 + ix % 28));
+            record.setStartTime(new ShortTime(ix % 24, ix % 60));
+            record.setEndTime(new ShortTime((ix + 1) % 24, ix % 60));
+            record.setDescription("Event #" + ix);
+            database.getRecords().add(record);
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new JCalendarExporter().export(database, expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        JCalendarExporter exporter = new JCalendarExporter();
+        exporter.setThreads(4);
+        exporter.export(database, actual);
+
+        Assert.assertEquals(strip(expected), strip(actual));
+    }
+
+    /**
+     * Removes all DTSTAMP values.
+     */
+    private static String strip(ByteArrayOutputStream out) throws IOException {
+        return out.toString("UTF-8").replaceAll("\\[\"dtstamp\",\\{\\},\"date-time\",\"[^\"]*\"\\],", "");
+    }
+
+}
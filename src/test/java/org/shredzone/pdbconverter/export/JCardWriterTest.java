@@ -0,0 +1,129 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the JCardWriter.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class JCardWriterTest {
+
+    /**
+     * Cards must be written as well-formed jCard array.
+     */
+    @Test
+    public void cardTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JCardWriter w = new JCardWriter(out);
+        VCardWriterTest.writeCard(w);
+        String result = out.toString("UTF-8");
+
+        Assert.assertTrue(result.endsWith("]\n"));
+
+        List<?> cards = (List<?>) JsonReader.parse(result);
+        Assert.assertEquals(1, cards.size());
+
+        List<?> card = (List<?>) cards.get(0);
+        Assert.assertEquals(2, card.size());
+        Assert.assertEquals("vcard", card.get(0));
+
+        List<?> properties = (List<?>) card.get(1);
+        for (Object property : properties) {
+            List<?> prop = (List<?>) property;
+            Assert.assertEquals(4, prop.size());
+            Assert.assertTrue(prop.get(0) instanceof String);
+            Assert.assertTrue(prop.get(1) instanceof Map);
+            Assert.assertTrue(prop.get(2) instanceof String);
+        }
+
+        Map<String, Object> noParams = Collections.emptyMap();
+        Map<String, Object> prefParams = new LinkedHashMap<>();
+        prefParams.put("pref", "1");
+        Map<String, Object> workParams = new LinkedHashMap<>();
+        workParams.put("type", "work");
+        workParams.put("pref", "1");
+        Map<String, Object> cellParams = new LinkedHashMap<>();
+        cellParams.put("type", "cell");
+
+        Assert.assertEquals(Arrays.asList("version", noParams, "text", "4.0"), properties.get(0));
+        Assert.assertEquals(Arrays.asList("n", noParams, "text", Arrays.asList("Doe", "John")),
+                        properties.get(1));
+        Assert.assertEquals(Arrays.asList("fn", noParams, "text", "John Doe"), properties.get(2));
+        Assert.assertEquals(Arrays.asList("org", noParams, "text", "ACME, Inc."), properties.get(3));
+        Assert.assertEquals(Arrays.asList("adr", noParams, "text",
+                        Arrays.asList("", "", "Main Street 1", "Springfield", "", "12345", "USA")),
+                        properties.get(4));
+        Assert.assertEquals(Arrays.asList("tel", workParams, "text", "+1 555 1234"), properties.get(5));
+        Assert.assertEquals(Arrays.asList("tel", cellParams, "text", "+1 555 4321"), properties.get(6));
+        Assert.assertEquals(Arrays.asList("tel", noParams, "text", "+1 555 0000"), properties.get(7));
+        Assert.assertEquals(Arrays.asList("email", noParams, "text", "john@example.com"), properties.get(8));
+        Assert.assertEquals(Arrays.asList("email", prefParams, "text", "jd@example.com"), properties.get(9));
+        Assert.assertEquals(Arrays.asList("url", noParams, "uri", "http://example.com"), properties.get(10));
+        Assert.assertEquals(Arrays.asList("bday", noParams, "date", "0975-02-28"), properties.get(11));
+        Assert.assertEquals(Arrays.asList("categories", noParams, "text", "Business"), properties.get(12));
+        Assert.assertEquals("note", ((List<?>) properties.get(13)).get(0));
+        Assert.assertEquals(14, properties.size());
+    }
+
+    /**
+     * Multiple cards are written into a single array.
+     */
+    @Test
+    public void multipleTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JCardWriter w = new JCardWriter(out);
+        for (int ix = 0; ix < 3; ix++) {
+            w.begin();
+            w.text("FN", "Card " + ix);
+            w.end();
+        }
+        w.finish();
+
+        List<?> cards = (List<?>) JsonReader.parse(out.toString("UTF-8"));
+        Assert.assertEquals(3, cards.size());
+        for (int ix = 0; ix < 3; ix++) {
+            List<?> properties = (List<?>) ((List<?>) cards.get(ix)).get(1);
+            Assert.assertEquals("Card " + ix, ((List<?>) properties.get(1)).get(3));
+        }
+    }
+
+    /**
+     * An empty database gives an empty array.
+     */
+    @Test
+    public void emptyTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JCardWriter(out).finish();
+        Assert.assertEquals("[]\n", out.toString("UTF-8"));
+    }
+
+}
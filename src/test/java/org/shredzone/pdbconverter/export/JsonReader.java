@@ -0,0 +1,258 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A strict JSON parser for checking the output of the JSON exporters in unit tests.
+ * <p>
+ * Arrays are returned as {@link List}, objects as {@link Map} keeping the member
+ * order, numbers as {@link Long} or {@link Double}, and {@code null} for JSON null.
+ * Malformed JSON throws an {@link IllegalArgumentException}.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class JsonReader {
+
+    private final String json;
+    private int pos = 0;
+
+    /**
+     * Parses a JSON text containing exactly one value.
+     *
+     * @param json
+     *            JSON text
+     * @return Parsed value
+     */
+    public static Object parse(String json) {
+        JsonReader reader = new JsonReader(json);
+        reader.skipWhitespace();
+        Object result = reader.value();
+        reader.skipWhitespace();
+        if (reader.pos != json.length()) {
+            throw reader.error("trailing characters");
+        }
+        return result;
+    }
+
+    private JsonReader(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Parses a value.
+     */
+    private Object value() {
+        if (pos >= json.length()) {
+            throw error("unexpected end");
+        }
+
+        char ch = json.charAt(pos);
+        switch (ch) {
+            case '[':  return array();
+            case '{':  return object();
+            case '"':  return string();
+            case 't':  literal("true");  return Boolean.TRUE;
+            case 'f':  literal("false"); return Boolean.FALSE;
+            case 'n':  literal("null");  return null;
+            default:
+                if (ch == '-' || (ch >= '0' && ch <= '9')) {
+                    return number();
+                }
+                throw error("unexpected character");
+        }
+    }
+
+    /**
+     * Parses an array.
+     */
+    private List<Object> array() {
+        List<Object> result = new ArrayList<>();
+        expect('[');
+        skipWhitespace();
+        if (peek(']')) {
+            pos++;
+            return result;
+        }
+        while (true) {
+            skipWhitespace();
+            result.add(value());
+            skipWhitespace();
+            if (peek(']')) {
+                pos++;
+                return result;
+            }
+            expect(',');
+        }
+    }
+
+    /**
+     * Parses an object.
+     */
+    private Map<String, Object> object() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        expect('{');
+        skipWhitespace();
+        if (peek('}')) {
+            pos++;
+            return result;
+        }
+        while (true) {
+            skipWhitespace();
+            String name = string();
+            if (result.containsKey(name)) {
+                throw error("duplicate member " + name);
+            }
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            result.put(name, value());
+            skipWhitespace();
+            if (peek('}')) {
+                pos++;
+                return result;
+            }
+            expect(',');
+        }
+    }
+
+    /**
+     * Parses a string.
+     */
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        expect('"');
+        while (true) {
+            if (pos >= json.length()) {
+                throw error("unterminated string");
+            }
+            char ch = json.charAt(pos++);
+            if (ch == '"') {
+                return sb.toString();
+            } else if (ch < 0x20) {
+                throw error("unescaped control character");
+            } else if (ch == '\\') {
+                if (pos >= json.length()) {
+                    throw error("unterminated escape");
+                }
+                char esc = json.charAt(pos++);
+                switch (esc) {
+                    case '"':  sb.append('"');  break;
+                    case '\\': sb.append('\\'); break;
+                    case '/':  sb.append('/');  break;
+                    case 'b':  sb.append('\b'); break;
+                    case 'f':  sb.append('\f'); break;
+                    case 'n':  sb.append('\n'); break;
+                    case 'r':  sb.append('\r'); break;
+                    case 't':  sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > json.length()) {
+                            throw error("bad unicode escape");
+                        }
+                        sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("bad escape");
+                }
+            } else {
+                sb.append(ch);
+            }
+        }
+    }
+
+    /**
+     * Parses a number.
+     */
+    private Number number() {
+        int start = pos;
+        if (peek('-')) {
+            pos++;
+        }
+        boolean fraction = false;
+        while (pos < json.length()) {
+            char ch = json.charAt(pos);
+            if (ch == '.' || ch == 'e' || ch == 'E' || ch == '+' || (ch == '-' && pos > start)) {
+                fraction = true;
+            } else if (ch < '0' || ch > '9') {
+                break;
+            }
+            pos++;
+        }
+        String str = json.substring(start, pos);
+        try {
+            return (fraction ? (Number) Double.valueOf(str) : (Number) Long.valueOf(str));
+        } catch (NumberFormatException ex) {
+            throw error("bad number " + str);
+        }
+    }
+
+    /**
+     * Parses a literal.
+     */
+    private void literal(String literal) {
+        if (!json.startsWith(literal, pos)) {
+            throw error("unexpected literal");
+        }
+        pos += literal.length();
+    }
+
+    /**
+     * Checks if the current character is the given one.
+     */
+    private boolean peek(char ch) {
+        return pos < json.length() && json.charAt(pos) == ch;
+    }
+
+    /**
+     * Consumes the given character.
+     */
+    private void expect(char ch) {
+        if (!peek(ch)) {
+            throw error("expected '" + ch + "'");
+        }
+        pos++;
+    }
+
+    /**
+     * Skips whitespaces.
+     */
+    private void skipWhitespace() {
+        while (pos < json.length()) {
+            char ch = json.charAt(pos);
+            if (ch != ' ' && ch != '\t' && ch != '\n' && ch != '\r') {
+                break;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Creates an exception for a parse error at the current position.
+     */
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+
+}
@@ -0,0 +1,373 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.AddressAppInfo;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo.Category;
+import org.shredzone.commons.pdb.record.AbstractRecord;
+import org.shredzone.commons.pdb.record.AddressRecord;
+import org.shredzone.commons.pdb.record.AddressRecord.Field;
+import org.shredzone.commons.pdb.record.AddressRecord.Label;
+import org.shredzone.commons.pdb.record.MemoRecord;
+import org.shredzone.commons.pdb.record.Record;
+import org.shredzone.commons.pdb.record.TodoRecord;
+import org.shredzone.pdbconverter.export.filter.ExportFilter;
+
+/**
+ * Unit tests for the NDJSON exporters.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class NdJsonExporterTest {
+
+    /**
+     * The header line and all accepted addresses must be written, each line being a
+     * JSON object.
+     */
+    @Test
+    public void addressTest() throws IOException {
+        AddressNdJsonExporter exporter = new AddressNdJsonExporter();
+        exporter.setFilter(new NoSecretFilter<AddressRecord>());
+        List<Map<String, Object>> lines = export(exporter, createAddressDatabase());
+
+        Assert.assertEquals(4, lines.size());
+
+        Map<String, Object> header = lines.get(0);
+        assertDatabaseHeader(header);
+        Assert.assertEquals(0L, header.get("country"));
+        Map<?, ?> labels = (Map<?, ?>) header.get("labels");
+        Assert.assertEquals(Label.values().length, labels.size());
+        Assert.assertTrue(labels.containsKey("PHONE1"));
+
+        Assert.assertEquals(0L, lines.get(1).get("id"));
+        Assert.assertEquals(1L, lines.get(2).get("id"));
+        Assert.assertEquals(3L, lines.get(3).get("id"));
+
+        Map<String, Object> first = lines.get(1);
+        Assert.assertEquals(1L, first.get("category"));
+        Assert.assertEquals(Boolean.FALSE, first.get("secret"));
+        Assert.assertFalse(first.containsKey("duplicateGroup"));
+
+        List<?> fields = (List<?>) first.get("fields");
+        Assert.assertEquals(3, fields.size());
+        Map<?, ?> name = (Map<?, ?>) fields.get(0);
+        Assert.assertEquals("NAME", name.get("label"));
+        Assert.assertEquals("Smith", name.get("value"));
+        Assert.assertFalse(name.containsKey("preferred"));
+        Map<?, ?> phone = (Map<?, ?>) fields.get(2);
+        Assert.assertEquals("PHONE1", phone.get("label"));
+        Assert.assertEquals("+1 555 1234", phone.get("value"));
+        Assert.assertEquals(Boolean.TRUE, phone.get("preferred"));
+
+        for (Map<String, Object> line : lines.subList(1, lines.size())) {
+            Assert.assertNotEquals(2L, line.get("id"));
+        }
+    }
+
+    /**
+     * Flagged duplicates carry the duplicate group.
+     */
+    @Test
+    public void flagTest() throws IOException {
+        AddressNdJsonExporter exporter = new AddressNdJsonExporter();
+        exporter.setFilter(new NoSecretFilter<AddressRecord>());
+        exporter.setDuplicateMode(AddressDeduplicator.Mode.FLAG);
+        List<Map<String, Object>> lines = export(exporter, createAddressDatabase());
+
+        Assert.assertEquals(4, lines.size());
+        Assert.assertEquals(0L, lines.get(1).get("id"));
+        Assert.assertEquals(1L, lines.get(1).get("duplicateGroup"));
+        Assert.assertEquals(1L, lines.get(2).get("id"));
+        Assert.assertEquals(1L, lines.get(2).get("duplicateGroup"));
+        Assert.assertEquals(3L, lines.get(3).get("id"));
+        Assert.assertFalse(lines.get(3).containsKey("duplicateGroup"));
+    }
+
+    /**
+     * Memos are written with their text.
+     */
+    @Test
+    public void memoTest() throws IOException {
+        PdbDatabase<MemoRecord, CategoryAppInfo> database = new PdbDatabase<>();
+        setupDatabase(database, new CategoryAppInfo());
+        database.getRecords().add(new TestMemoRecord(0, "First memo\nwith \"quotes\""));
+        database.getRecords().add(new TestMemoRecord(AbstractRecord.ATTR_SECRET, "Secret memo"));
+        database.getRecords().add(new TestMemoRecord(0, "Third memo"));
+
+        MemoNdJsonExporter exporter = new MemoNdJsonExporter();
+        exporter.setFilter(new NoSecretFilter<MemoRecord>());
+        List<Map<String, Object>> lines = export(exporter, database);
+
+        Assert.assertEquals(3, lines.size());
+        assertDatabaseHeader(lines.get(0));
+        Assert.assertEquals(0L, lines.get(1).get("id"));
+        Assert.assertEquals("First memo\nwith \"quotes\"", lines.get(1).get("memo"));
+        Assert.assertEquals(2L, lines.get(2).get("id"));
+        Assert.assertEquals("Third memo", lines.get(2).get("memo"));
+    }
+
+    /**
+     * To-dos are written with all their properties.
+     */
+    @Test
+    public void todoTest() throws IOException {
+        PdbDatabase<TodoRecord, CategoryAppInfo> database = new PdbDatabase<>();
+        setupDatabase(database, new CategoryAppInfo());
+        database.getRecords().add(new TestTodoRecord(0, "Buy milk", null, utc(2009, 5, 3)));
+        database.getRecords().add(new TestTodoRecord(AbstractRecord.ATTR_SECRET, "Secret", null, null));
+        database.getRecords().add(new TestTodoRecord(0, "Call Bob", "Urgent", null));
+
+        TodoNdJsonExporter exporter = new TodoNdJsonExporter();
+        exporter.setFilter(new NoSecretFilter<TodoRecord>());
+        List<Map<String, Object>> lines = export(exporter, database);
+
+        Assert.assertEquals(3, lines.size());
+        assertDatabaseHeader(lines.get(0));
+
+        Map<String, Object> first = lines.get(1);
+        Assert.assertEquals(0L, first.get("id"));
+        Assert.assertEquals(Boolean.TRUE, first.get("completed"));
+        Assert.assertEquals(2L, first.get("priority"));
+        Assert.assertEquals("2009-05-03T00:00:00Z", first.get("date"));
+        Assert.assertEquals("Buy milk", first.get("description"));
+        Assert.assertFalse(first.containsKey("note"));
+
+        Map<String, Object> second = lines.get(2);
+        Assert.assertEquals(2L, second.get("id"));
+        Assert.assertFalse(second.containsKey("date"));
+        Assert.assertEquals("Urgent", second.get("note"));
+    }
+
+    /**
+     * Checks the common members of the header line.
+     */
+    private void assertDatabaseHeader(Map<String, Object> header) {
+        Map<?, ?> db = (Map<?, ?>) header.get("database");
+        Assert.assertEquals("TestDB", db.get("name"));
+        Assert.assertEquals("DATA", db.get("type"));
+        Assert.assertEquals("test", db.get("creator"));
+        Assert.assertEquals("2009-01-02T03:04:05Z", db.get("created"));
+        Assert.assertEquals("2009-01-02T03:04:05Z", db.get("modified"));
+        Assert.assertFalse(db.containsKey("backup"));
+
+        List<?> categories = (List<?>) header.get("categories");
+        Assert.assertEquals(2, categories.size());
+        Map<?, ?> category = (Map<?, ?>) categories.get(1);
+        Assert.assertEquals(1L, category.get("id"));
+        Assert.assertEquals(7L, category.get("key"));
+        Assert.assertEquals("Business", category.get("name"));
+    }
+
+    /**
+     * Exports the database, and parses each line of the output as JSON object.
+     */
+    private <T extends Record, U extends CategoryAppInfo> List<Map<String, Object>> export(
+                AbstractNdJsonExporter<T, U> exporter, PdbDatabase<T, U> database)
+    throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(database, out);
+        String result = out.toString("UTF-8");
+
+        Assert.assertTrue(result.endsWith("\n"));
+
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (String line : result.substring(0, result.length() - 1).split("\n", -1)) {
+            Object value = JsonReader.parse(line);
+            Assert.assertTrue(line, value instanceof Map);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> object = (Map<String, Object>) value;
+            lines.add(object);
+        }
+        return lines;
+    }
+
+    /**
+     * Creates an address database. Record 1 is a duplicate of record 0 with more
+     * fields, and record 2 is secret.
+     */
+    private PdbDatabase<AddressRecord, AddressAppInfo> createAddressDatabase() {
+        PdbDatabase<AddressRecord, AddressAppInfo> database = new PdbDatabase<>();
+        setupDatabase(database, new AddressAppInfo());
+
+        database.getRecords().add(new TestAddressRecord(0, 1,
+                        Field.NAME, "Smith", Field.FIRST_NAME, "John",
+                        Field.PHONE1, "+1 555 1234"));
+        database.getRecords().add(new TestAddressRecord(0, 0,
+                        Field.NAME, "Smith", Field.FIRST_NAME, "John",
+                        Field.PHONE1, "+1 555 1234", Field.PHONE2, "john@example.com",
+                        Field.CITY, "Springfield"));
+        database.getRecords().add(new TestAddressRecord(AbstractRecord.ATTR_SECRET, 0,
+                        Field.NAME, "Doe", Field.FIRST_NAME, "Jane"));
+        database.getRecords().add(new TestAddressRecord(0, 0,
+                        Field.NAME, "Mustermann", Field.FIRST_NAME, "Max",
+                        Field.PHONE1, "+49 555 9876"));
+
+        return database;
+    }
+
+    /**
+     * Sets the database information and categories.
+     */
+    private <T extends Record, U extends CategoryAppInfo> void setupDatabase(
+                PdbDatabase<T, U> database, U appInfo) {
+        database.setName("TestDB");
+        database.setType("DATA");
+        database.setCreator("test");
+        database.setCreationTime(utc(2009, 1, 2, 3, 4, 5));
+        database.setModificationTime(utc(2009, 1, 2, 3, 4, 5));
+
+        appInfo.getCategories().add(new Category("Unfiled", 0, false));
+        appInfo.getCategories().add(new Category("Business", 7, false));
+        database.setAppInfo(appInfo);
+    }
+
+    /**
+     * Creates a UTC {@link Calendar}.
+     */
+    private static Calendar utc(int... fields) {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(fields[0], fields[1] - 1, fields[2]);
+        if (fields.length > 3) {
+            cal.set(Calendar.HOUR_OF_DAY, fields[3]);
+            cal.set(Calendar.MINUTE, fields[4]);
+            cal.set(Calendar.SECOND, fields[5]);
+        }
+        return cal;
+    }
+
+    /**
+     * Accepts all records that are not secret.
+     */
+    private static class NoSecretFilter<T extends Record> implements ExportFilter<T> {
+        @Override
+        public boolean accepts(T record) {
+            return !record.isSecret();
+        }
+    }
+
+    /**
+     * An {@link AddressRecord} with the given fields.
+     */
+    private static class TestAddressRecord extends AddressRecord {
+        private final Map<Field, String> fields = new EnumMap<>(Field.class);
+        private final int category;
+
+        public TestAddressRecord(int attributes, int category, Object... fields) {
+            super(attributes);
+            this.category = category;
+            for (int ix = 0; ix + 1 < fields.length; ix += 2) {
+                this.fields.put((Field) fields[ix], (String) fields[ix + 1]);
+            }
+        }
+
+        @Override
+        public String getField(Field field) {
+            return fields.get(field);
+        }
+
+        @Override
+        public Label getLabel(Field field) {
+            return Label.valueOf(field.name());
+        }
+
+        @Override
+        public int getDisplayPhone() {
+            return 0;
+        }
+
+        @Override
+        public int getCategoryIndex() {
+            return category;
+        }
+    }
+
+    /**
+     * A {@link MemoRecord} with the given text.
+     */
+    private static class TestMemoRecord extends MemoRecord {
+        private final String memo;
+
+        public TestMemoRecord(int attributes, String memo) {
+            super(attributes);
+            this.memo = memo;
+        }
+
+        @Override
+        public String getMemo() {
+            return memo;
+        }
+    }
+
+    /**
+     * A completed {@link TodoRecord} of priority 2.
+     */
+    private static class TestTodoRecord extends TodoRecord {
+        private final String description;
+        private final String note;
+        private final Calendar date;
+
+        public TestTodoRecord(int attributes, String description, String note, Calendar date) {
+            super(attributes);
+            this.description = description;
+            this.note = note;
+            this.date = date;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return true;
+        }
+
+        @Override
+        public int getPriority() {
+            return 2;
+        }
+
+        @Override
+        public Calendar getDate() {
+            return date;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public String getNote() {
+            return note;
+        }
+    }
+
+}
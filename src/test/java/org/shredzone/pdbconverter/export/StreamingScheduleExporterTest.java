@@ -0,0 +1,215 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.shredzone.commons.pdb.CalendarFactory;
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.AbstractRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Alarm;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Alarm.Unit;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat.Mode;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+
+/**
+ * Unit tests for the StreamingScheduleExporter.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class StreamingScheduleExporterTest {
+
+    private TimeZone defaultTz;
+    private TimeZone factoryTz;
+
+    @Before
+    public void setup() {
+        TimeZone tz = TimeZone.getTimeZone("Europe/Berlin");
+        defaultTz = TimeZone.getDefault();
+        factoryTz = CalendarFactory.getInstance().getTimeZone();
+        TimeZone.setDefault(tz);
+        CalendarFactory.getInstance().setTimeZone(tz);
+    }
+
+    @After
+    public void teardown() {
+        TimeZone.setDefault(defaultTz);
+        CalendarFactory.getInstance().setTimeZone(factoryTz);
+    }
+
+    /**
+     * The streaming exporter must generate the same output as the ical4j based
+     * exporter. Time stamps are generated, and thus are not compared.
+     */
+    @Test
+    public void equivalenceTest() throws IOException {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = createDatabase();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new ScheduleExporter().export(database, expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new StreamingScheduleExporter().export(database, actual);
+
+        Assert.assertEquals(strip(expected), strip(actual));
+    }
+
+    /**
+     * The compact output must be equivalent as well.
+     */
+    @Test
+    public void compactTest() throws IOException {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = createDatabase();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ScheduleExporter exporter = new ScheduleExporter();
+        exporter.setCompact(true);
+        exporter.export(database, expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        StreamingScheduleExporter streamingExporter = new StreamingScheduleExporter();
+        streamingExporter.setCompact(true);
+        streamingExporter.export(database, actual);
+
+        String result = strip(actual);
+        Assert.assertEquals(strip(expected), result);
+        Assert.assertFalse(result.contains("CALSCALE"));
+        Assert.assertFalse(result.contains("TZURL"));
+        Assert.assertTrue(result.contains("\r\nEXDATE;VALUE=DATE:20090202,20090304\r\n"));
+    }
+
+    /**
+     * Parallel rendering must generate the same output as sequential rendering.
+     */
+    @Test
+    public void parallelTest() throws IOException {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = createDatabase();
+        for (int ix = 0; ix < 2000; ix++) {
+            ScheduleRecord record = new ScheduleRecord(0);
+            record.setSchedule(new ShortDate(2000 + ix / 365, 1 + ix % 12, 1 + ix % 28));
+            record.setStartTime(new ShortTime(ix % 24, ix % 60));
+            record.setEndTime(new ShortTime((ix + 1) % 24, ix % 60));
+            record.setDescription("Event #" + ix);
+            database.getRecords().add(record);
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new StreamingScheduleExporter().export(database, expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        StreamingScheduleExporter exporter = new StreamingScheduleExporter();
+        exporter.setThreads(4);
+        exporter.export(database, actual);
+
+        Assert.assertEquals(strip(expected), strip(actual));
+    }
+
+    /**
+     * Creates a database containing a set of typical schedules.
+     */
+    public static PdbDatabase<ScheduleRecord, CategoryAppInfo> createDatabase() {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = new PdbDatabase<>();
+        database.setAppInfo(new CategoryAppInfo());
+
+        ScheduleRecord record;
+
+        record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(2009, 5, 3));
+        record.setStartTime(new ShortTime(10, 30));
+        record.setEndTime(new ShortTime(11, 45));
+        record.setDescription("Meeting; with, special\\characters\nand a line break");
+        record.setLocation("Room 101");
+        record.setNote("A very long note that is certainly going to exceed the maximum line length of an iCalendar file");
+        record.setCategory("Business");
+        record.setAlarm(new Alarm(15, Unit.MINUTES));
+        database.getRecords().add(record);
+
+        record = new ScheduleRecord(AbstractRecord.ATTR_SECRET);
+        record.setSchedule(new ShortDate(2010, 12, 31));
+        record.setStartTime(new ShortTime(23, 0));
+        record.setEndTime(new ShortTime(1, 30));
+        record.setDescription("New Year's Party");
+        record.setAlarm(new Alarm(2, Unit.HOURS));
+        database.getRecords().add(record);
+
+        record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(1975, 2, 28));
+        record.setDescription("Birthday");
+        record.setAlarm(new Alarm(1, Unit.DAYS));
+        record.setRepeat(new Repeat(Mode.YEARLY, 1, null, null, 0, 0));
+        database.getRecords().add(record);
+
+        record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(2009, 1, 5));
+        record.setStartTime(new ShortTime(8, 0));
+        record.setEndTime(new ShortTime(9, 0));
+        record.setDescription("Weekly");
+        record.setRepeat(new Repeat(Mode.WEEKLY, 2, new ShortDate(2009, 6, 30),
+                new boolean[] { false, true, false, true, false, true, false }, 0, 0));
+        record.getExceptions().add(new ShortDate(2009, 2, 2));
+        record.getExceptions().add(new ShortDate(2009, 3, 4));
+        database.getRecords().add(record);
+
+        record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(2009, 1, 11));
+        record.setDescription("Monthly by day");
+        record.setRepeat(new Repeat(Mode.MONTHLY_BY_DAY, 1, new ShortDate(2011, 1, 1), null, 1, 0));
+        database.getRecords().add(record);
+
+        record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(2009, 1, 30));
+        record.setDescription("Last Friday");
+        record.setRepeat(new Repeat(Mode.MONTHLY_BY_DAY, 3, null, null, 4, 5));
+        database.getRecords().add(record);
+
+        record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(2009, 1, 15));
+        record.setStartTime(new ShortTime(12, 0));
+        record.setEndTime(new ShortTime(13, 0));
+        record.setRepeat(new Repeat(Mode.MONTHLY, 1, null, null, 0, 0));
+        database.getRecords().add(record);
+
+        record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(2009, 7, 1));
+        record.setDescription("Daily");
+        record.setRepeat(new Repeat(Mode.DAILY, 1, new ShortDate(2009, 7, 14), null, 0, 0));
+        database.getRecords().add(record);
+
+        return database;
+    }
+
+    /**
+     * Removes all DTSTAMP lines.
+     */
+    private static String strip(ByteArrayOutputStream out) throws IOException {
+        return out.toString("UTF-8").replaceAll("(?m)^DTSTAMP:.*\r\n", "");
+    }
+
+}
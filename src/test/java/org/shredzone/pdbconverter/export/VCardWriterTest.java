@@ -0,0 +1,233 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.pdbconverter.export.VCardExporter.PhoneType;
+
+/**
+ * Unit tests for the VCardWriter and VCard4Writer.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class VCardWriterTest {
+
+    private static final String NOTE = "A long note; with special, characters\\ and a line break\n"
+                    + "that is certainly going to exceed the maximum line length of a vCard file, "
+                    + "even more than once.";
+
+    /**
+     * The vCard 3.0 output must be the same as before the {@link CardWriter} was
+     * introduced. The expected lines are generated like the former exporter did.
+     */
+    @Test
+    public void vCard3Test() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeCard(new VCardWriter(out));
+
+        StringBuilder expected = new StringBuilder();
+        expected.append("BEGIN:VCARD\r\n");
+        expected.append("VERSION:3.0\r\n");
+        expected.append("CLASS:CONFIDENTIAL\r\n");
+        legacyLine(expected, "N", null, "Doe", "John");
+        legacyLine(expected, "FN", null, "John Doe");
+        legacyLine(expected, "ORG", null, "ACME, Inc.");
+        legacyLine(expected, "ADR", null, null, null, "Main Street 1", "Springfield", null, "12345", "USA");
+        legacyLine(expected, "TEL", "TYPE=WORK,PREF", "+1 555 1234");
+        legacyLine(expected, "TEL", "TYPE=CELL", "+1 555 4321");
+        legacyLine(expected, "TEL", null, "+1 555 0000");
+        legacyLine(expected, "EMAIL", "TYPE=INTERNET", "john@example.com");
+        legacyLine(expected, "EMAIL", "TYPE=INTERNET,PREF", "jd@example.com");
+        legacyLine(expected, "URL", null, "http://example.com");
+        legacyLine(expected, "BDAY", null, "0975-02-28");
+        legacyLine(expected, "CATEGORIES", null, "Business");
+        legacyLine(expected, "NOTE", null, NOTE);
+        expected.append("END:VCARD\r\n");
+
+        Assert.assertEquals(expected.toString(), out.toString("UTF-8"));
+    }
+
+    /**
+     * Lines must be folded like the former exporter did, at any line length.
+     */
+    @Test
+    public void foldTest() throws IOException {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        VCardWriter allWriter = new VCardWriter(all);
+        StringBuilder allExpected = new StringBuilder();
+
+        StringBuilder value = new StringBuilder();
+        for (int len = 1; len < 400; len++) {
+            value.append(len % 7 == 0 ? ';' : (char) ('a' + len % 26));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            VCardWriter w = new VCardWriter(out);
+            w.text("NOTE", value.toString());
+            w.finish();
+
+            StringBuilder expected = new StringBuilder();
+            legacyLine(expected, "NOTE", null, value.toString());
+            Assert.assertEquals("length " + len, expected.toString(), out.toString("UTF-8"));
+
+            // Also write all lines into a single writer, so the buffer is drained
+            // at arbitrary positions
+            allWriter.text("NOTE", value.toString());
+            allExpected.append(expected);
+        }
+
+        allWriter.finish();
+        Assert.assertEquals(allExpected.toString(), all.toString("UTF-8"));
+    }
+
+    /**
+     * Folding must also be correct if the internal buffer is drained right at the
+     * fold position.
+     */
+    @Test
+    public void bufferBoundaryTest() throws IOException {
+        StringBuilder note = new StringBuilder();
+        for (int ix = 0; ix < 140; ix++) {
+            note.append((char) ('a' + ix % 26));
+        }
+
+        for (int shift = 0; shift < 80; shift++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            VCardWriter w = new VCardWriter(out);
+            StringBuilder expected = new StringBuilder();
+
+            // 1012 lines of 8 octets each, just below the buffer size
+            for (int ix = 0; ix < 1012; ix++) {
+                w.text("A", "bcde");
+                legacyLine(expected, "A", null, "bcde");
+            }
+
+            StringBuilder pad = new StringBuilder();
+            for (int ix = 0; ix < shift; ix++) {
+                pad.append('p');
+            }
+            w.text("P", pad.toString());
+            legacyLine(expected, "P", null, pad.toString());
+
+            w.text("NOTE", note.toString());
+            legacyLine(expected, "NOTE", null, note.toString());
+            w.finish();
+
+            Assert.assertEquals("shift " + shift, expected.toString(), out.toString("UTF-8"));
+        }
+    }
+
+    /**
+     * vCard 4.0 output.
+     */
+    @Test
+    public void vCard4Test() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeCard(new VCard4Writer(out));
+        String result = out.toString("UTF-8");
+
+        Assert.assertTrue(result.startsWith("BEGIN:VCARD\r\nVERSION:4.0\r\nN:Doe;John\r\n"));
+        Assert.assertTrue(result.endsWith("\r\nEND:VCARD\r\n"));
+        Assert.assertFalse(result.contains("CLASS:"));
+        Assert.assertTrue(result.contains("\r\nTEL;TYPE=work;PREF=1:+1 555 1234\r\n"));
+        Assert.assertTrue(result.contains("\r\nTEL;TYPE=cell:+1 555 4321\r\n"));
+        Assert.assertTrue(result.contains("\r\nTEL:+1 555 0000\r\n"));
+        Assert.assertTrue(result.contains("\r\nEMAIL:john@example.com\r\n"));
+        Assert.assertTrue(result.contains("\r\nEMAIL;PREF=1:jd@example.com\r\n"));
+        Assert.assertTrue(result.contains("\r\nBDAY:09750228\r\n"));
+        Assert.assertTrue(result.contains("\r\nNOTE:A long note\\; with special\\, characters\\\\ and a line break\\n"));
+
+        for (String line : result.split("\r\n")) {
+            Assert.assertTrue(line, line.getBytes("UTF-8").length <= 75);
+        }
+    }
+
+    /**
+     * An empty database gives an empty output.
+     */
+    @Test
+    public void emptyTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new VCardWriter(out).finish();
+        Assert.assertEquals(0, out.size());
+
+        out = new ByteArrayOutputStream();
+        new VCard4Writer(out).finish();
+        Assert.assertEquals(0, out.size());
+    }
+
+    /**
+     * Writes a test card, like the {@link VCardExporter} would do.
+     */
+    static void writeCard(CardWriter w) throws IOException {
+        w.begin();
+        w.classification("CONFIDENTIAL");
+        w.structured("N", "Doe", "John");
+        w.text("FN", "John Doe");
+        w.text("ORG", "ACME, Inc.");
+        w.structured("ADR", null, null, "Main Street 1", "Springfield", null, "12345", "USA");
+        w.telephone(PhoneType.WORK, true, "+1 555 1234");
+        w.telephone(PhoneType.CELL, false, "+1 555 4321");
+        w.telephone(null, false, "+1 555 0000");
+        w.email("john@example.com", false);
+        w.email("jd@example.com", true);
+        w.uri("URL", "http://example.com");
+        w.date("BDAY", 9750228);
+        w.text("CATEGORIES", "Business");
+        w.text("NOTE", NOTE);
+        w.end();
+        w.finish();
+    }
+
+    /**
+     * Writes a line like the former {@link VCardExporter} did.
+     */
+    private static void legacyLine(StringBuilder out, String property, String parameter,
+                String... values) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(property);
+        if (parameter != null) {
+            sb.append(';').append(parameter);
+        }
+        sb.append(':');
+        for (int ix = 0; ix < values.length; ix++) {
+            if (ix > 0) sb.append(';');
+            if (values[ix] != null) {
+                sb.append(values[ix].replace("\\", "\\\\")
+                                    .replace(",", "\\,")
+                                    .replace(";", "\\;")
+                                    .replace("\n", "\\n"));
+            }
+        }
+
+        int pos = 73;
+        while (pos < sb.length()) {
+            sb.insert(pos - 1, "\r\n ");
+            pos += 73 + 1;
+        }
+
+        sb.append("\r\n");
+        out.append(sb);
+    }
+
+}
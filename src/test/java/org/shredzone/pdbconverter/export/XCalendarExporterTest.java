@@ -0,0 +1,113 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.TimeZone;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.shredzone.commons.pdb.CalendarFactory;
+import org.shredzone.commons.pdb.PdbDatabase;
+import org.shredzone.commons.pdb.appinfo.CategoryAppInfo;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortTime;
+import org.w3c.dom.Document;
+
+/**
+ * Unit tests for the XCalendarExporter.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class XCalendarExporterTest {
+
+    private static final String NAMESPACE = "urn:ietf:params:xml:ns:icalendar-2.0";
+
+    private TimeZone defaultTz;
+    private TimeZone factoryTz;
+
+    @Before
+    public void setup() {
+        TimeZone tz = TimeZone.getTimeZone("Europe/Berlin");
+        defaultTz = TimeZone.getDefault();
+        factoryTz = CalendarFactory.getInstance().getTimeZone();
+        TimeZone.setDefault(tz);
+        CalendarFactory.getInstance().setTimeZone(tz);
+    }
+
+    @After
+    public void teardown() {
+        TimeZone.setDefault(defaultTz);
+        CalendarFactory.getInstance().setTimeZone(factoryTz);
+    }
+
+    /**
+     * Parallel rendering must generate the same well-formed document as sequential
+     * rendering.
+     */
+    @Test
+    public void parallelTest() throws Exception {
+        PdbDatabase<ScheduleRecord, CategoryAppInfo> database = StreamingScheduleExporterTest.createDatabase();
+        for (int ix = 0; ix < 1000; ix++) {
+            ScheduleRecord record = new ScheduleRecord(0);
+            record.setSchedule(new ShortDate(2000 + ix / 365, 1 + ix % 12, 1 + ix % 28));
+            record.setStartTime(new ShortTime(ix % 24, ix % 60));
+            record.setEndTime(new ShortTime((ix + 1) % 24, ix % 60));
+            record.setDescription("Event #" + ix);
+            database.getRecords().add(record);
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new XCalendarExporter().export(database, expected);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        XCalendarExporter exporter = new XCalendarExporter();
+        exporter.setThreads(4);
+        exporter.export(database, actual);
+
+        Assert.assertEquals(strip(expected), strip(actual));
+
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document doc = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(actual.toByteArray()));
+
+        Assert.assertEquals("icalendar", doc.getDocumentElement().getLocalName());
+        Assert.assertEquals(NAMESPACE, doc.getDocumentElement().getNamespaceURI());
+        Assert.assertEquals(1, doc.getElementsByTagNameNS(NAMESPACE, "vcalendar").getLength());
+        Assert.assertEquals(1, doc.getElementsByTagNameNS(NAMESPACE, "vtimezone").getLength());
+        Assert.assertEquals(database.getRecords().size(),
+                        doc.getElementsByTagNameNS(NAMESPACE, "vevent").getLength());
+    }
+
+    /**
+     * Removes all DTSTAMP values.
+     */
+    private static String strip(ByteArrayOutputStream out) throws IOException {
+        return out.toString("UTF-8").replaceAll("<dtstamp>\\s*<date-time>[^<]*</date-time>\\s*</dtstamp>", "");
+    }
+
+}
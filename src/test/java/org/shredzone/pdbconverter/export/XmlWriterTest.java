@@ -0,0 +1,84 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the XmlWriter.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class XmlWriterTest {
+
+    @Test
+    public void documentTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlWriter xw = new XmlWriter(out);
+        xw.startDocument();
+        xw.startElement("db");
+        xw.startElement("record");
+        xw.attribute("id", 12);
+        xw.attribute("secret", false);
+        xw.attribute("name", "<\"Tom\" & Jerry>");
+        xw.startElement("file");
+        xw.writeContent("images/");
+        xw.writeDigits(7, 4);
+        xw.writeContent(".png");
+        xw.endElement();
+        xw.startElement("empty", "a", "1", "b", "2");
+        xw.endElement();
+        xw.endElement();
+        xw.startElement("value");
+        xw.writeContent(Long.MIN_VALUE);
+        xw.endElement();
+        xw.endElement();
+        xw.endDocument();
+        xw.flush();
+
+        Assert.assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<db>\n"
+                + "  <record id=\"12\" secret=\"false\" name=\"&lt;&quot;Tom&quot; &amp; Jerry&gt;\">\n"
+                + "    <file>images/0007.png</file>\n"
+                + "    <empty a=\"1\" b=\"2\"/>\n"
+                + "  </record>\n"
+                + "  <value>-9223372036854775808</value>\n"
+                + "</db>\n",
+                out.toString("UTF-8"));
+    }
+
+    @Test
+    public void encodingTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlWriter xw = new XmlWriter(out);
+        xw.startElement("t");
+        xw.writeContent("K\u00F6rber \u20AC \uD83D\uDE00\r\n\t\u0001\ud800\uFFFF");
+        xw.endElement();
+        xw.flush();
+
+        Assert.assertEquals("<t>K\u00F6rber \u20AC \uD83D\uDE00&#13;\n\t\uFFFD\uFFFD\uFFFD</t>",
+                out.toString("UTF-8"));
+    }
+
+}
@@ -0,0 +1,237 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the ZipWriter.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ZipWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sequentialTest() throws IOException {
+        roundTrip(1);
+    }
+
+    @Test
+    public void parallelTest() throws IOException {
+        roundTrip(4);
+    }
+
+    @Test
+    public void zip64Test() throws IOException {
+        File file = folder.newFile("zip64.zip");
+        try (ZipWriter zw = new ZipWriter(new FileOutputStream(file), 2)) {
+            for (int ix = 0; ix < 70000; ix++) {
+                zw.putEntry("e" + ix, 0L, new byte[] { (byte) ix });
+            }
+        }
+
+        try (ZipFile zf = new ZipFile(file)) {
+            Assert.assertEquals(70000, zf.size());
+            ZipEntry ze = zf.getEntry("e69999");
+            Assert.assertEquals(1, ze.getSize());
+            Assert.assertEquals((byte) 69999, (byte) zf.getInputStream(ze).read());
+        }
+    }
+
+    @Test
+    public void storedTest() throws IOException {
+        Random rnd = new Random(42);
+        byte[] random = new byte[20000];
+        rnd.nextBytes(random);
+        byte[] png = new byte[100];
+        png[0] = (byte) 0x89;
+        png[1] = 'P';
+        png[2] = 'N';
+        png[3] = 'G';
+        byte[] text = new byte[20000];
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipWriter zw = new ZipWriter(out, 2)) {
+            zw.putEntry("random.bin", 0L, random);
+            zw.putEntry("image.png", 0L, png);
+            zw.putEntry("text.txt", 0L, text);
+            zw.putEntry("tiny.txt", 0L, new byte[] { 'x' });
+            zw.setLevel(0);
+            zw.putEntry("text0.txt", 0L, text);
+            try (OutputStream eos = zw.putEntry("stream0.txt", 0L)) {
+                eos.write(text);
+            }
+        }
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry ze = zis.getNextEntry();
+            Assert.assertEquals(ZipEntry.STORED, ze.getMethod());
+            Assert.assertArrayEquals(random, readAll(zis));
+
+            ze = zis.getNextEntry();
+            Assert.assertEquals(ZipEntry.STORED, ze.getMethod());
+            Assert.assertArrayEquals(png, readAll(zis));
+
+            ze = zis.getNextEntry();
+            Assert.assertEquals(ZipEntry.DEFLATED, ze.getMethod());
+            Assert.assertArrayEquals(text, readAll(zis));
+
+            ze = zis.getNextEntry();
+            Assert.assertEquals(ZipEntry.STORED, ze.getMethod());
+            Assert.assertArrayEquals(new byte[] { 'x' }, readAll(zis));
+
+            ze = zis.getNextEntry();
+            Assert.assertEquals(ZipEntry.STORED, ze.getMethod());
+            Assert.assertArrayEquals(text, readAll(zis));
+
+            ze = zis.getNextEntry();
+            Assert.assertEquals("stream0.txt", ze.getName());
+            Assert.assertEquals(ZipEntry.STORED, ze.getMethod());
+            Assert.assertArrayEquals(text, readAll(zis));
+        }
+    }
+
+    @Test
+    public void compressibleTest() {
+        Random rnd = new Random(42);
+        byte[] random = new byte[100000];
+        rnd.nextBytes(random);
+        Assert.assertFalse(ZipWriter.isCompressible(random));
+
+        byte[] text = new byte[100000];
+        for (int ix = 0; ix < text.length; ix++) {
+            text[ix] = (byte) ('a' + rnd.nextInt(26));
+        }
+        Assert.assertTrue(ZipWriter.isCompressible(text));
+
+        text[0] = 0x1F;
+        text[1] = (byte) 0x8B;
+        Assert.assertFalse(ZipWriter.isCompressible(text));
+
+        Assert.assertTrue(ZipWriter.isCompressible(new byte[0]));
+        Assert.assertTrue(ZipWriter.isCompressible(new byte[] { 'P', 'K' }));
+    }
+
+    @Test
+    public void dosTimeTest() {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2009, Calendar.DECEMBER, 31, 23, 59, 58);
+        int dos = ZipWriter.toDosTime(cal.getTimeInMillis());
+        Assert.assertEquals((29 << 25) | (12 << 21) | (31 << 16) | (23 << 11) | (59 << 5) | 29, dos);
+
+        cal.set(1975, Calendar.FEBRUARY, 28, 12, 0, 0);
+        Assert.assertEquals((1 << 21) | (1 << 16), ZipWriter.toDosTime(cal.getTimeInMillis()));
+    }
+
+    /**
+     * Writes a ZIP file with the given number of threads, and reads it again.
+     */
+    private void roundTrip(int threads) throws IOException {
+        Random rnd = new Random(42);
+        byte[][] contents = new byte[50][];
+        for (int ix = 0; ix < contents.length; ix++) {
+            contents[ix] = new byte[rnd.nextInt(100000)];
+            for (int jx = 0; jx < contents[ix].length; jx++) {
+                contents[ix][jx] = (byte) ('a' + rnd.nextInt(4));
+            }
+        }
+
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2009, Calendar.MAY, 3, 10, 30, 0);
+        long time = cal.getTimeInMillis();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipWriter zw = new ZipWriter(out, threads)) {
+            try (OutputStream eos = zw.putEntry("index.txt", time)) {
+                eos.write("index".getBytes(StandardCharsets.UTF_8));
+            }
+            for (int ix = 0; ix < contents.length; ix++) {
+                final byte[] content = contents[ix];
+                if (ix % 2 == 0) {
+                    zw.putEntry(String.format("data/%04d.bin", ix), time, content);
+                } else {
+                    zw.putEntry(String.format("data/%04d.bin", ix), time, new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() {
+                            return content;
+                        }
+                    });
+                }
+            }
+            zw.putEntry("\u00FCmlaut.txt", time, new byte[0]);
+        }
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry ze = zis.getNextEntry();
+            Assert.assertEquals("index.txt", ze.getName());
+            Assert.assertEquals("index", new String(readAll(zis), StandardCharsets.UTF_8));
+            Assert.assertEquals(time, ze.getTime());
+
+            for (int ix = 0; ix < contents.length; ix++) {
+                ze = zis.getNextEntry();
+                Assert.assertEquals(String.format("data/%04d.bin", ix), ze.getName());
+                Assert.assertEquals(contents[ix].length, ze.getSize());
+                Assert.assertArrayEquals(contents[ix], readAll(zis));
+            }
+
+            ze = zis.getNextEntry();
+            Assert.assertEquals("\u00FCmlaut.txt", ze.getName());
+            Assert.assertEquals(0, readAll(zis).length);
+
+            Assert.assertNull(zis.getNextEntry());
+        }
+    }
+
+    /**
+     * Reads the current ZIP entry.
+     */
+    private static byte[] readAll(ZipInputStream zis) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = zis.read(buffer)) >= 0) {
+            result.write(buffer, 0, len);
+        }
+        return result.toByteArray();
+    }
+
+}
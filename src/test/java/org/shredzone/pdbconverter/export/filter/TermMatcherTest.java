@@ -0,0 +1,82 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.export.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the TermMatcher.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class TermMatcherTest {
+
+    @Test
+    public void matchTest() {
+        TermMatcher matcher = new TermMatcher(Arrays.asList("he", "she", "his", "hers"), false);
+
+        Assert.assertFalse(matcher.isEmpty());
+        Assert.assertTrue(matcher.matches("ushers"));
+        Assert.assertTrue(matcher.matches("this"));
+        Assert.assertTrue(matcher.matches("he"));
+        Assert.assertTrue(matcher.matches("ahishers"));
+        Assert.assertFalse(matcher.matches("hi"));
+        Assert.assertFalse(matcher.matches("HERS"));
+        Assert.assertFalse(matcher.matches(""));
+        Assert.assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    public void failureLinkTest() {
+        // "abcd" fails at 'x', must fall back to "bcx" without losing the prefix
+        TermMatcher matcher = new TermMatcher(Arrays.asList("abcd", "bcx", "c"), false);
+        Assert.assertTrue(matcher.matches("abcx"));
+        Assert.assertTrue(matcher.matches("xxcxx"));
+
+        matcher = new TermMatcher(Arrays.asList("abcd", "bcx"), false);
+        Assert.assertTrue(matcher.matches("abcx"));
+        Assert.assertTrue(matcher.matches("aabcd"));
+        Assert.assertFalse(matcher.matches("abcabc"));
+    }
+
+    @Test
+    public void ignoreCaseTest() {
+        TermMatcher matcher = new TermMatcher(Arrays.asList("PRJ-4711", "Müller"), true);
+
+        Assert.assertTrue(matcher.matches("Ticket prj-4711 is done"));
+        Assert.assertTrue(matcher.matches("Call MÜLLER"));
+        Assert.assertFalse(matcher.matches("prj-4712"));
+    }
+
+    @Test
+    public void emptyTest() {
+        TermMatcher matcher = new TermMatcher(Arrays.asList("", null), false);
+        Assert.assertTrue(matcher.isEmpty());
+        Assert.assertFalse(matcher.matches("anything"));
+
+        matcher = new TermMatcher(Collections.<String>emptyList(), true);
+        Assert.assertTrue(matcher.isEmpty());
+    }
+
+}
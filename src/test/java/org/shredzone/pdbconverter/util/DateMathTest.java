@@ -0,0 +1,124 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the DateMath.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class DateMathTest {
+
+    @Test
+    public void epochDayTest() {
+        Assert.assertEquals(0, DateMath.epochDay(1970, 1, 1));
+        Assert.assertEquals(-1, DateMath.epochDay(1969, 12, 31));
+        Assert.assertEquals(11016, DateMath.epochDay(2000, 2, 29));
+        Assert.assertEquals(DateMath.epochDay(2009, 3, 1), DateMath.epochDay(2009, 2, 29));
+
+        Assert.assertEquals(19700101, DateMath.packedDate(0));
+        Assert.assertEquals(19691231, DateMath.packedDate(-1));
+        Assert.assertEquals(20000229, DateMath.packedDate(11016));
+
+        Assert.assertEquals(2000, DateMath.year(20000229));
+        Assert.assertEquals(2, DateMath.month(20000229));
+        Assert.assertEquals(29, DateMath.day(20000229));
+    }
+
+    @Test
+    public void calendarTest() {
+        Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(1904, Calendar.JANUARY, 1);
+
+        for (int ix = 0; ix < 200 * 366; ix++) {
+            int year = cal.get(Calendar.YEAR);
+            int month = cal.get(Calendar.MONTH) + 1;
+            int day = cal.get(Calendar.DAY_OF_MONTH);
+            int epochDay = DateMath.epochDay(year, month, day);
+
+            Assert.assertEquals(cal.getTimeInMillis(), epochDay * DateMath.MILLIS_PER_DAY);
+            Assert.assertEquals((year * 100 + month) * 100 + day, DateMath.packedDate(epochDay));
+            Assert.assertEquals(cal.get(Calendar.DAY_OF_WEEK) - 1, DateMath.dayOfWeek(epochDay));
+
+            cal.add(Calendar.DATE, 1);
+        }
+    }
+
+    @Test
+    public void instantTest() {
+        long millis = -1000L;
+        Assert.assertEquals(-1, DateMath.epochDayOf(millis));
+        Assert.assertEquals(86399, DateMath.secondOfDayOf(millis));
+
+        millis = DateMath.epochDay(2009, 12, 31) * DateMath.MILLIS_PER_DAY + 45296000L;
+        Assert.assertEquals(20091231, DateMath.packedDate(DateMath.epochDayOf(millis)));
+        Assert.assertEquals(45296, DateMath.secondOfDayOf(millis));
+    }
+
+    @Test
+    public void formatTimestampTest() {
+        Assert.assertEquals("1970-01-01T00:00:00Z", DateMath.formatTimestamp(0L));
+        Assert.assertEquals("1969-12-31T23:59:59Z", DateMath.formatTimestamp(-1L));
+        Assert.assertEquals("0001-02-03T04:05:06Z", DateMath.formatTimestamp(
+                        DateMath.epochDay(1, 2, 3) * DateMath.MILLIS_PER_DAY + 14706000L));
+
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Random rnd = new Random(42);
+        for (int ix = 0; ix < 10000; ix++) {
+            long millis = (rnd.nextLong() % 4000000000000L) + 1000000000000L;
+            Assert.assertEquals(fmt.format(new Date(millis)), DateMath.formatTimestamp(millis));
+        }
+    }
+
+    @Test
+    public void toMillisTest() {
+        TimeZone tz = TimeZone.getTimeZone("Europe/Berlin");
+        Calendar cal = new GregorianCalendar(tz);
+
+        // All quarter hours of 2009, including both daylight saving transitions
+        int first = DateMath.epochDay(2009, 1, 1);
+        for (int day = first; day < first + 365; day++) {
+            int packed = DateMath.packedDate(day);
+            for (int minute = 0; minute < DateMath.MINUTES_PER_DAY; minute += 15) {
+                cal.clear();
+                cal.set(DateMath.year(packed), DateMath.month(packed) - 1, DateMath.day(packed),
+                                minute / 60, minute % 60);
+                Assert.assertEquals(cal.getTimeInMillis(), DateMath.toMillis(day, minute, tz));
+            }
+        }
+
+        // Minutes exceeding a day
+        Assert.assertEquals(DateMath.toMillis(first + 1, 90, tz),
+                        DateMath.toMillis(first, DateMath.MINUTES_PER_DAY + 90, tz));
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.util;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.shredzone.commons.pdb.record.ScheduleRecord;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat;
+import org.shredzone.commons.pdb.record.ScheduleRecord.Repeat.Mode;
+import org.shredzone.commons.pdb.record.ScheduleRecord.ShortDate;
+
+/**
+ * Unit tests for the Occurrences.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class OccurrencesTest {
+
+    private static final int MAX = Integer.MAX_VALUE;
+
+    @Test
+    public void singleTest() {
+        ScheduleRecord record = createRecord(2009, 5, 3, null);
+        assertOccurrences(new Occurrences(record, MAX), 20090503);
+        assertOccurrences(new Occurrences(record, DateMath.epochDay(2009, 5, 4), MAX));
+        assertOccurrences(new Occurrences(record, DateMath.epochDay(2009, 5, 2)));
+        assertOccurrences(new Occurrences(DateMath.epochDay(2010, 1, 1)), 20100101);
+    }
+
+    @Test
+    public void dailyTest() {
+        ScheduleRecord record = createRecord(2009, 2, 26,
+                new Repeat(Mode.DAILY, 2, new ShortDate(2009, 3, 8), null, 0, 0));
+        record.getExceptions().add(new ShortDate(2009, 3, 2));
+        assertOccurrences(new Occurrences(record, MAX),
+                20090226, 20090228, 20090304, 20090306, 20090308);
+        assertOccurrences(new Occurrences(record, DateMath.epochDay(2009, 3, 4)),
+                20090226, 20090228, 20090304);
+        assertOccurrences(new Occurrences(record, DateMath.epochDay(2009, 3, 3),
+                DateMath.epochDay(2009, 3, 7)), 20090304, 20090306);
+    }
+
+    @Test
+    public void weeklyTest() {
+        // Every other week on monday, wednesday and friday, starting on a wednesday
+        ScheduleRecord record = createRecord(2009, 1, 7,
+                new Repeat(Mode.WEEKLY, 2, new ShortDate(2009, 1, 26),
+                new boolean[] { false, true, false, true, false, true, false }, 0, 0));
+        assertOccurrences(new Occurrences(record, MAX),
+                20090107, 20090109, 20090119, 20090121, 20090123);
+    }
+
+    @Test
+    public void monthlyTest() {
+        ScheduleRecord record = createRecord(2009, 1, 31,
+                new Repeat(Mode.MONTHLY, 1, new ShortDate(2009, 6, 30), null, 0, 0));
+        assertOccurrences(new Occurrences(record, MAX),
+                20090131, 20090331, 20090531);
+    }
+
+    @Test
+    public void monthlyByDayTest() {
+        // Last friday of every third month
+        ScheduleRecord record = createRecord(2009, 1, 30,
+                new Repeat(Mode.MONTHLY_BY_DAY, 3, new ShortDate(2009, 12, 31), null, 4, 5));
+        assertOccurrences(new Occurrences(record, MAX),
+                20090130, 20090424, 20090731, 20091030);
+
+        // Second sunday of every month
+        record = createRecord(2009, 1, 11,
+                new Repeat(Mode.MONTHLY_BY_DAY, 1, new ShortDate(2009, 4, 1), null, 1, 0));
+        assertOccurrences(new Occurrences(record, MAX),
+                20090111, 20090208, 20090308);
+    }
+
+    @Test
+    public void yearlyTest() {
+        ScheduleRecord record = createRecord(2008, 2, 29,
+                new Repeat(Mode.YEARLY, 1, null, null, 0, 0));
+        assertOccurrences(new Occurrences(record, DateMath.epochDay(2017, 1, 1)),
+                20080229, 20120229, 20160229);
+    }
+
+    private static ScheduleRecord createRecord(int year, int month, int day, Repeat repeat) {
+        ScheduleRecord record = new ScheduleRecord(0);
+        record.setSchedule(new ShortDate(year, month, day));
+        record.setRepeat(repeat);
+        return record;
+    }
+
+    private static void assertOccurrences(Occurrences occurrences, int... expected) {
+        int[] actual = new int[expected.length + 1];
+        int count = 0;
+        while (occurrences.hasNext() && count < actual.length) {
+            actual[count++] = DateMath.packedDate(occurrences.next());
+        }
+        Assert.assertArrayEquals(expected, Arrays.copyOf(actual, count));
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * pdbconverter - Convert Palm PDB files into more common formats
+ *
+ * Copyright (C) 2009 Richard "Shred" Körber
+ *   http://pdbconverter.shredzone.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.shredzone.pdbconverter.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the ParallelGzipOutputStream.
+ *
+ * @author Richard "Shred" Körber
+ */
+public class ParallelGzipOutputStreamTest {
+
+    @Test
+    public void emptyTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(out, 4).close();
+        Assert.assertArrayEquals(new byte[0], gunzip(out.toByteArray()));
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        Random rnd = new Random(42);
+        byte[] data = new byte[1000000];
+        for (int ix = 0; ix < data.length; ix++) {
+            // Compressible, but not trivial data
+            data[ix] = (byte) ('a' + rnd.nextInt(8));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParallelGzipOutputStream gz = new ParallelGzipOutputStream(out, 3);
+        int pos = 0;
+        while (pos < data.length) {
+            gz.write(data[pos++]);
+            int len = Math.min(rnd.nextInt(70000), data.length - pos);
+            gz.write(data, pos, len);
+            pos += len;
+        }
+        gz.flush();
+        gz.close();
+
+        byte[] compressed = out.toByteArray();
+        Assert.assertTrue(compressed.length < data.length / 2);
+        Assert.assertArrayEquals(data, gunzip(compressed));
+    }
+
+    /**
+     * Decompresses gzip data.
+     */
+    private static byte[] gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                result.write(buffer, 0, len);
+            }
+        }
+        return result.toByteArray();
+    }
+
+}